@@ -0,0 +1,143 @@
+package org.jmmo.crawler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CorpusGenerator {
+    public static final String SITE_DIR = "site";
+    public static final String TEXT_DIR = "text";
+
+    protected static final String[] WORDS = {
+            "crawler", "vertx", "page", "link", "host", "queue", "index", "search", "server", "client",
+            "download", "parser", "robots", "delay", "journal", "frontier", "shard", "node", "cluster", "metrics",
+            "Привет", "мир", "страница", "ссылка", "поиск", "the", "a", "of", "and", "to", "in", "is", "it", "that", "for"};
+
+    protected final Random random;
+    protected final int hosts;
+    protected final int sections;
+
+    public CorpusGenerator(long seed, int hosts, int sections) {
+        this.random = new Random(seed);
+        this.hosts = hosts;
+        this.sections = sections;
+    }
+
+    public CorpusGenerator() {
+        this(42, 4, 8);
+    }
+
+    public String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    public String sentence(int words) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(word());
+        }
+        return builder.toString();
+    }
+
+    public String host(int host) {
+        return "host" + host + ".example.com";
+    }
+
+    public String pageUrl(int page) {
+        return "http://" + host(page % hosts) + "/section" + (page / hosts) % sections + "/page" + page + ".html";
+    }
+
+    public String href(int pages) {
+        final int page = random.nextInt(pages);
+        switch (random.nextInt(10)) {
+            case 0: return "//" + host(page % hosts) + "/section" + (page / hosts) % sections + "/page" + page + ".html";
+            case 1: return "/section" + (page / hosts) % sections + "/page" + page + ".html";
+            case 2: return "page" + page + ".html";
+            case 3: return "../section" + (page / hosts) % sections + "/page" + page + ".html?q=" + word() + "&amp;p=" + page;
+            case 4: return "page" + page + ".html#" + word();
+            default: return pageUrl(page);
+        }
+    }
+
+    public List<String> hrefs(int count, int pages) {
+        final List<String> hrefs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hrefs.add(href(pages));
+        }
+        return hrefs;
+    }
+
+    public String page(int page, int pages, int links, int paragraphs) {
+        final StringBuilder builder = new StringBuilder(1024 + paragraphs * 256 + links * 96)
+                .append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>").append(sentence(4)).append("</title>\n")
+                .append("<style>a > b { color: red; }</style>\n")
+                .append("<script>var links = '<a href=\"/script\">'; if (a < b) { links += '</a>'; }</script>\n")
+                .append("</head>\n<body>\n<h1>Page ").append(page).append("</h1>\n");
+
+        int link = 0;
+        for (int paragraph = 0; paragraph < paragraphs; paragraph++) {
+            builder.append("<p>").append(sentence(20 + random.nextInt(20)));
+            for (int i = 0; i < links / paragraphs || paragraph == paragraphs - 1 && link < links; i++, link++) {
+                builder.append(" <a href=\"").append(href(pages)).append("\"");
+                switch (random.nextInt(20)) {
+                    case 0: builder.append(" rel=\"nofollow\""); break;
+                    case 1: builder.append(" download"); break;
+                    case 2: builder.append(" class='external' title=\"").append(word()).append("\""); break;
+                }
+                builder.append(">").append(sentence(2)).append("</a>");
+            }
+            builder.append("</p>\n");
+            if (random.nextInt(8) == 0) {
+                builder.append("<!-- <a href=\"/commented\">hidden</a> -->\n");
+            }
+        }
+        builder.append("<a href=\"#top\">top</a> <a href=\"javascript:void(0)\">js</a>\n");
+
+        return builder.append("</body>\n</html>\n").toString();
+    }
+
+    public String text(int lines) {
+        final StringBuilder builder = new StringBuilder(lines * 64);
+        for (int line = 0; line < lines; line++) {
+            builder.append(sentence(5 + random.nextInt(10))).append('\n');
+        }
+        return builder.toString();
+    }
+
+    public void generateSite(Path dir, int pages, int links, int paragraphs) throws IOException {
+        for (int page = 0; page < pages; page++) {
+            final String url = pageUrl(page);
+            final Path path = dir.resolve(url.substring("http://".length()));
+            Files.createDirectories(path.getParent());
+            Files.write(path, page(page, pages, links, paragraphs).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public void generateText(Path dir, int files, int lines) throws IOException {
+        for (int file = 0; file < files; file++) {
+            final Path path = dir.resolve("dir" + file % sections).resolve("file" + file + ".txt");
+            Files.createDirectories(path.getParent());
+            Files.write(path, text(lines).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Path dir = Paths.get(args.length > 0 ? args[0] : "corpus");
+        final int pages = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        final int files = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        final CorpusGenerator generator = new CorpusGenerator();
+        generator.generateSite(dir.resolve(SITE_DIR), pages, 50, 10);
+        generator.generateText(dir.resolve(TEXT_DIR), files, 1000);
+
+        System.out.println("Generated " + pages + " pages and " + files + " text files at " + dir.toAbsolutePath());
+    }
+}
@@ -0,0 +1,155 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Launcher;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CrawlBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final JsonObject site = new JsonObject();
+        final List<String> crawlArgs = new ArrayList<>();
+        crawlArgs.add("crawl");
+
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                crawlArgs.add(arg);
+                continue;
+            }
+
+            final int equalsIndex = arg.indexOf('=');
+            if (equalsIndex == -1) {
+                System.err.println("Wrong argument " + arg + ", site parameters are name=value and crawl options are --name=value");
+                System.exit(1);
+            }
+            final String value = arg.substring(equalsIndex + 1);
+            site.put(arg.substring(0, equalsIndex), value.contains(".") ? (Object) Double.valueOf(value) : (Object) Integer.valueOf(value));
+        }
+
+        final int port = site.getInteger("port", 8080);
+        final int depth = site.getInteger("depth", 3);
+        addDefault(crawlArgs, "dir", Files.createTempDirectory("crawl-benchmark").toString());
+        addDefault(crawlArgs, "depth", String.valueOf(depth));
+        addDefault(crawlArgs, "delay", "0");
+        addDefault(crawlArgs, "statsInterval", "0");
+        crawlArgs.add("http://127.0.0.1:" + port + "/p0.html");
+
+        final Vertx siteVertx = Vertx.vertx();
+        final CompletableFuture<String> deployed = new CompletableFuture<>();
+        siteVertx.deployVerticle(SyntheticSiteVehicle.class.getName(), new DeploymentOptions().setConfig(site), ar -> {
+            if (ar.succeeded()) {
+                deployed.complete(ar.result());
+            } else {
+                deployed.completeExceptionally(ar.cause());
+            }
+        });
+        deployed.get();
+
+        System.gc();
+        final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        final long gcCountBefore = gcCount();
+        final long gcTimeBefore = gcTime();
+
+        final BenchmarkLauncher benchmark = new BenchmarkLauncher();
+        final long start = System.nanoTime();
+        benchmark.dispatch(crawlArgs.toArray(new String[crawlArgs.size()]));
+        final boolean finished = benchmark.done.await(site.getInteger("timeout", 600), TimeUnit.SECONDS);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        final long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        final long gcCount = gcCount() - gcCountBefore;
+        final long gcTime = gcTime() - gcTimeBefore;
+
+        final long[] latencies;
+        synchronized (benchmark.latencies) {
+            latencies = benchmark.latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+        final long pages = benchmark.metrics == null ? 0 : benchmark.metrics.value("crawler_downloaded_pages_total");
+        final long bytes = benchmark.metrics == null ? 0 : benchmark.metrics.value("crawler_downloaded_bytes_total");
+        final long failures = benchmark.metrics == null ? 0 : benchmark.metrics.value("crawler_download_failures_total");
+
+        System.out.println();
+        System.out.println("Site: " + SyntheticSiteVehicle.pagesOf(site.getInteger("fanOut", 10), depth) + " pages, " + site.encode());
+        System.out.println("Crawl: " + String.join(" ", crawlArgs) + (finished ? "" : " (timed out)"));
+        System.out.println(String.format("Pages: %d, failed: %d, bytes: %d, time: %.3f s", pages, failures, bytes, seconds));
+        System.out.println(String.format("Throughput: %.1f pages/s, %.1f KB/s", pages / seconds, bytes / seconds / 1024));
+        System.out.println(String.format("Page latency (queued and downloaded): p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                percentile(latencies, 0.5) / 1e6, percentile(latencies, 0.99) / 1e6, percentile(latencies, 1) / 1e6));
+        System.out.println(String.format("Peak heap: %.1f MB, GC: %d collections, %d ms", peakHeap / 1024.0 / 1024, gcCount, gcTime));
+
+        siteVertx.close();
+        System.exit(finished ? 0 : 1);
+    }
+
+    protected static void addDefault(List<String> crawlArgs, String option, String value) {
+        if (crawlArgs.stream().noneMatch(arg -> arg.startsWith("--" + option + "="))) {
+            crawlArgs.add("--" + option + "=" + value);
+        }
+    }
+
+    protected static long percentile(long[] values, double quantile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        return values[Math.max(0, (int) Math.ceil(quantile * values.length) - 1)];
+    }
+
+    protected static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    protected static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    protected static class BenchmarkLauncher extends Launcher {
+        protected final CountDownLatch done = new CountDownLatch(1);
+        protected final Map<String, Long> started = new ConcurrentHashMap<>();
+        protected final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        protected volatile CrawlMetrics metrics;
+
+        @Override
+        public void afterStartingVertx(Vertx vertx) {
+            super.afterStartingVertx(vertx);
+            metrics = CrawlMetrics.of(vertx);
+
+            // the latency of the page is counted from sending it to a loader till the result is sent back
+            vertx.eventBus().addInterceptor(sendContext -> {
+                final String address = sendContext.message().address();
+                final Object body = sendContext.message().body();
+                if (body instanceof JsonObject) {
+                    final String url = ((JsonObject) body).getString("url");
+                    if (address.startsWith(CrawlMessages.DOWNLOAD + ".")) {
+                        started.putIfAbsent(url, System.nanoTime());
+                    } else if (address.startsWith(CrawlMessages.DOWNLOADED + ".") || address.startsWith(CrawlMessages.DOWNLOAD_FAILED + ".")) {
+                        final Long start = started.remove(url);
+                        if (start != null) {
+                            latencies.add(System.nanoTime() - start);
+                        }
+                    }
+                }
+                sendContext.next();
+            });
+
+            vertx.eventBus().consumer(CrawlMessages.DONE, message -> done.countDown());
+        }
+    }
+}
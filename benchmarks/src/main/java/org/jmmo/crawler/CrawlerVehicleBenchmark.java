@@ -0,0 +1,83 @@
+package org.jmmo.crawler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrawlerVehicleBenchmark {
+    protected static final int SIZE = 1024;
+
+    protected CrawlerVehicle crawlerVehicle;
+    protected String baseUrl;
+    protected List<String> hrefs;
+    protected List<String> urls;
+    protected List<Path> paths;
+    protected List<String> files;
+    protected int index;
+
+    @Setup
+    public void setup() {
+        crawlerVehicle = new CrawlerVehicle();
+        crawlerVehicle.rootDir = Paths.get("output").toAbsolutePath();
+
+        final CorpusGenerator generator = new CorpusGenerator();
+        baseUrl = generator.pageUrl(1);
+        hrefs = generator.hrefs(SIZE, SIZE * 10);
+
+        urls = new ArrayList<>(SIZE);
+        paths = new ArrayList<>(SIZE);
+        files = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            urls.add(generator.pageUrl(i));
+            final Path path = crawlerVehicle.urlToPath(urls.get(i)).get();
+            paths.add(path);
+            files.add(path.toString());
+            // every second path is taken already so a new name must be generated for it
+            if (i % 2 == 0) {
+                crawlerVehicle.addFile(path.toString());
+            }
+        }
+    }
+
+    // generated names are counted per taken path, so every iteration starts from the same counters
+    @Setup(Level.Iteration)
+    public void resetNames() {
+        crawlerVehicle.names.clear();
+    }
+
+    protected int next() {
+        return index = (index + 1) & (SIZE - 1);
+    }
+
+    @Benchmark
+    public Optional<String> checkUrl() {
+        return crawlerVehicle.checkUrl(hrefs.get(next()), baseUrl);
+    }
+
+    @Benchmark
+    public Optional<Path> urlToPath() {
+        return crawlerVehicle.urlToPath(urls.get(next()));
+    }
+
+    @Benchmark
+    public Path checkPath() {
+        return crawlerVehicle.checkPath(paths.get(next()));
+    }
+
+    @Benchmark
+    public String fileToUrl() {
+        final int i = next();
+        return crawlerVehicle.fileToUrl(files.get(i), files.get((i + 1) & (SIZE - 1)));
+    }
+}
@@ -0,0 +1,60 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagesBenchmark {
+
+    protected LoaderVehicle loaderVehicle;
+    protected String url;
+    protected String file;
+    protected List<String> links;
+    protected JsonObject downloaded;
+
+    @Setup
+    public void setup() {
+        loaderVehicle = new LoaderVehicle();
+
+        final CorpusGenerator generator = new CorpusGenerator();
+        url = generator.pageUrl(1);
+        file = "/output/" + url.substring("http://".length());
+        links = generator.hrefs(50, 10000);
+        downloaded = downloaded();
+    }
+
+    protected JsonObject downloaded() {
+        return loaderVehicle.jsonResult(url, file, 0, Collections.emptyList())
+                .put("etag", "\"5e1f-3c2\"")
+                .put("lastModified", "Sun, 18 Oct 2026 07:49:32 GMT")
+                .put("hash", 0x5DEECE66DL)
+                .put("links", new JsonArray(links));
+    }
+
+    // local delivery copies json messages
+    @Benchmark
+    public JsonObject downloadTask() {
+        return new JsonObject().put("url", url).put("file", file).put("shard", 0).put("etag", "\"5e1f-3c2\"").copy();
+    }
+
+    @Benchmark
+    public JsonObject downloadedResult() {
+        return downloaded().copy();
+    }
+
+    // clustered delivery encodes json messages to the wire
+    @Benchmark
+    public JsonObject downloadedResultEncoded() {
+        return new JsonObject(downloaded.encode());
+    }
+}
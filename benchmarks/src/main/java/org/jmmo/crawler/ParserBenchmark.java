@@ -0,0 +1,66 @@
+package org.jmmo.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    protected static final int PAGES = 16;
+
+    @Param({"50", "500"})
+    public int links;
+
+    protected String[] pages;
+    protected byte[][] bytes;
+    protected String[] baseUrls;
+    protected Document[] documents;
+    protected int index;
+
+    @Setup
+    public void setup() {
+        final CorpusGenerator generator = new CorpusGenerator();
+        pages = new String[PAGES];
+        bytes = new byte[PAGES][];
+        baseUrls = new String[PAGES];
+        documents = new Document[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            pages[i] = generator.page(i, 10000, links, 10);
+            bytes[i] = pages[i].getBytes(StandardCharsets.UTF_8);
+            baseUrls[i] = generator.pageUrl(i);
+            documents[i] = Jsoup.parse(pages[i], baseUrls[i]);
+        }
+    }
+
+    protected int next() {
+        return index = (index + 1) % PAGES;
+    }
+
+    @Benchmark
+    public Elements parseAndSelect() {
+        final int i = next();
+        return Jsoup.parse(pages[i], baseUrls[i]).select(ParserVehicle.LINKS_SELECTOR);
+    }
+
+    @Benchmark
+    public Elements select() {
+        return documents[next()].select(ParserVehicle.LINKS_SELECTOR);
+    }
+
+    @Benchmark
+    public List<String> streamLinks() {
+        final LinkExtractor linkExtractor = new LinkExtractor();
+        linkExtractor.feed(bytes[next()]);
+        return linkExtractor.links();
+    }
+}
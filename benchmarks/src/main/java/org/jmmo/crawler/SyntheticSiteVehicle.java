@@ -0,0 +1,146 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SyntheticSiteVehicle extends AbstractVerticle {
+    private static final Logger log = LoggerFactory.getLogger(SyntheticSiteVehicle.class);
+
+    protected static final Pattern pagePattern = Pattern.compile("/(?:r(\\d+)/)?p(\\d+)\\.html");
+
+    protected int port;
+    protected int hosts;
+    protected int fanOut;
+    protected int pages;
+    protected double redirects;
+    protected int redirectChain;
+    protected int latency;
+    protected int slowHosts;
+    protected int slowLatency;
+    protected String filler;
+
+    public static int pagesOf(int fanOut, int depth) {
+        long pages = 1;
+        long level = 1;
+        for (int i = 0; i < depth; i++) {
+            level *= fanOut;
+            pages += level;
+        }
+        return (int) Math.min(pages, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void start(Future<Void> startFuture) throws Exception {
+        port = config().getInteger("port", 8080);
+        hosts = config().getInteger("hosts", 4);
+        fanOut = config().getInteger("fanOut", 10);
+        pages = pagesOf(fanOut, config().getInteger("depth", 3));
+        redirects = config().getDouble("redirects", 0.0);
+        redirectChain = config().getInteger("redirectChain", 1);
+        latency = config().getInteger("latency", 0);
+        slowHosts = config().getInteger("slowHosts", 0);
+        slowLatency = config().getInteger("slowLatency", 0);
+
+        final CorpusGenerator generator = new CorpusGenerator();
+        final StringBuilder builder = new StringBuilder();
+        final int pageSize = config().getInteger("pageSize", 16 * 1024);
+        while (builder.length() < pageSize) {
+            builder.append("<p>").append(generator.sentence(40)).append("</p>\n");
+        }
+        filler = builder.toString();
+
+        getVertx().createHttpServer().requestHandler(this::handle).listen(port, ar -> {
+            if (ar.succeeded()) {
+                log.info("Synthetic site of " + pages + " pages on " + hosts + " hosts is listening port " + port);
+                startFuture.complete();
+            } else {
+                startFuture.fail(ar.cause());
+            }
+        });
+    }
+
+    public String host(int host) {
+        return "127.0.0." + (host + 1) + ":" + port;
+    }
+
+    public String url(int page) {
+        return "http://" + host(page % hosts) + "/p" + page + ".html";
+    }
+
+    protected int hostOf(HttpServerRequest request) {
+        final String host = request.getHeader("Host");
+        if (host == null || !host.startsWith("127.0.0.")) {
+            return 0;
+        }
+
+        final int portIndex = host.indexOf(':');
+        try {
+            return Integer.parseInt(host.substring("127.0.0.".length(), portIndex > -1 ? portIndex : host.length())) - 1;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    protected void handle(HttpServerRequest request) {
+        final int delay = hostOf(request) < slowHosts ? slowLatency : latency;
+        if (delay > 0) {
+            getVertx().setTimer(delay, timerId -> respond(request));
+        } else {
+            respond(request);
+        }
+    }
+
+    protected void respond(HttpServerRequest request) {
+        final Matcher matcher = pagePattern.matcher(request.path());
+        if (!matcher.matches()) {
+            request.response().setStatusCode(404).end();
+            return;
+        }
+
+        final int page = Integer.parseInt(matcher.group(2));
+        if (page >= pages) {
+            request.response().setStatusCode(404).end();
+            return;
+        }
+
+        if (matcher.group(1) != null) {
+            final int chain = Integer.parseInt(matcher.group(1));
+            // like common servers the redirects have a small html body
+            request.response().setStatusCode(302).putHeader("Content-Type", "text/html")
+                    .putHeader("Location", chain > 1 ? "http://" + host(page % hosts) + "/r" + (chain - 1) + "/p" + page + ".html" : url(page))
+                    .end();
+            return;
+        }
+
+        request.response().putHeader("Content-Type", "text/html; charset=utf-8").end(Buffer.buffer(page(page).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    protected String page(int page) {
+        final StringBuilder builder = new StringBuilder(filler.length() + fanOut * 64 + 256)
+                .append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Page ").append(page).append("</title>\n</head>\n<body>\n");
+
+        for (int child = page * fanOut + 1; child <= page * fanOut + fanOut && child < pages; child++) {
+            builder.append("<a href=\"");
+            if (redirects > 0 && (child * 0x9E3779B9L & 0xFFFF) < redirects * 0x10000) {
+                builder.append("http://").append(host(child % hosts)).append("/r").append(redirectChain).append("/p").append(child).append(".html");
+            } else {
+                builder.append(url(child));
+            }
+            builder.append("\">Page ").append(child).append("</a>\n");
+        }
+        if (page > 0) {
+            builder.append("<a href=\"").append(url((page - 1) / fanOut)).append("\">Up</a>\n");
+            builder.append("<a href=\"").append(url(0)).append("\">Home</a>\n");
+        }
+
+        return builder.append(filler).append("</body>\n</html>\n").toString();
+    }
+}
@@ -0,0 +1,93 @@
+package org.jmmo.crawler.search;
+
+import org.jmmo.crawler.CorpusGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FinderBenchmark {
+    protected static final int FILES = 16;
+    protected static final List<String> WORDS = Arrays.asList(
+            "vertx", "page", "link", "host", "queue", "index", "search", "server", "parser", "мир", "страница", "поиск");
+
+    @Param({"crawler", "Привет"})
+    public String word;
+
+    @Param({"false", "true"})
+    public boolean sensitive;
+
+    @Param({"false", "true"})
+    public boolean whole;
+
+    protected FinderVehicle finderVehicle;
+    protected Path dir;
+    protected List<Path> files;
+    protected int index;
+    protected MultiWordMatcher multiMatcher;
+
+    @Setup
+    public void setup() throws IOException {
+        finderVehicle = new FinderVehicle();
+        dir = Files.createTempDirectory("finder-benchmark");
+        new CorpusGenerator().generateText(dir, FILES, 1000);
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        final List<String> words = new ArrayList<>(WORDS);
+        words.add(word);
+        multiMatcher = MultiWordMatcher.of(words, sensitive, whole);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(WordMatcher.BUFFER_SIZE);
+
+    @Benchmark
+    public int count() throws IOException {
+        index = (index + 1) % files.size();
+        return finderVehicle.count(files.get(index), finderVehicle.patternFor(word, sensitive, whole));
+    }
+
+    @Benchmark
+    public int countBytes() throws IOException {
+        index = (index + 1) % files.size();
+        // the case variants of different lengths are left to the automaton as the finder does
+        final Optional<WordMatcher> wordMatcherOpt = WordMatcher.of(word, sensitive, whole);
+        return wordMatcherOpt.isPresent() ? wordMatcherOpt.get().count(files.get(index), buffer)
+                : MultiWordMatcher.of(Collections.singletonList(word), sensitive, whole).count(files.get(index), buffer)[0];
+    }
+
+    // the finder builds the automaton once for all files as well
+    @Benchmark
+    public int[] countWords() throws IOException {
+        index = (index + 1) % files.size();
+        return multiMatcher.count(files.get(index), buffer);
+    }
+}
@@ -0,0 +1,34 @@
+package org.jmmo.crawler;
+
+public class BloomFilter {
+
+    protected final long[] bits;
+    protected final long size;
+    protected final int hashes;
+
+    public BloomFilter(long expected, double falsePositives) {
+        final long bitsCount = Math.max(64, (long) Math.ceil(-expected * Math.log(falsePositives) / (Math.log(2) * Math.log(2))));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (bitsCount + 63) >>> 6)];
+        this.size = bits.length * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) size / expected * Math.log(2)));
+    }
+
+    public void add(long fingerprint) {
+        final long hash2 = Fingerprint.mix(fingerprint);
+        for (int i = 0; i < hashes; i++) {
+            final long bit = Long.remainderUnsigned(fingerprint + i * hash2, size);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(long fingerprint) {
+        final long hash2 = Fingerprint.mix(fingerprint);
+        for (int i = 0; i < hashes; i++) {
+            final long bit = Long.remainderUnsigned(fingerprint + i * hash2, size);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
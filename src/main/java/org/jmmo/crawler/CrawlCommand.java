@@ -26,13 +26,38 @@ public class CrawlCommand extends BareCommand {
     private String configuration;
     private Integer loaders;
     private Integer parsers;
+    private Integer coordinators;
     private Integer downloads;
+    private Integer hostDownloads;
+    private Boolean adaptive;
+    private Integer poolSize;
+    private Integer idleTimeout;
+    private Boolean pipelining;
+    private Integer streams;
     private String directory;
     private Integer depth;
     private Integer delay;
     private Boolean resolveLinks;
     private Boolean linksToFiles;
     private Boolean storeOriginals;
+    private Boolean streamLinks;
+    private Boolean conditionalGet;
+    private Boolean compression;
+    private Boolean storeCompressed;
+    private Boolean dedup;
+    private Integer nearDuplicates;
+    private Integer statsInterval;
+    private Integer metricsPort;
+    private Boolean robots;
+    private String userAgent;
+    private Integer frontierWindow;
+    private String frontierOrder;
+    private boolean resume;
+    private boolean retryFailed;
+    private Integer maxAttempts;
+    private boolean cluster;
+    private Integer node;
+    private Integer nodes;
 
     @Argument(index = 0, argName = "url", required = false)
     @Description("Web site url for crawling.")
@@ -59,14 +84,58 @@ public class CrawlCommand extends BareCommand {
         this.loaders = loaders;
     }
 
+    @Option(longName = "coordinators", argName = "coordinators")
+    @Description("Specifies how many coordinators instances will be deployed, the hosts are divided between them. Defaults is 1.")
+    public void setCoordinators(int coordinators) {
+        this.coordinators = coordinators;
+    }
+
     @Option(longName = "downloads", argName = "downloads")
     @Description("Specifies how many simultaneous downloads can be started for one loader. Defaults is 10.")
     public void setDownloads(int downloads) {
         this.downloads = downloads;
     }
 
+    @Option(longName = "hostDownloads", argName = "hostDownloads")
+    @Description("Specifies how many simultaneous downloads can be started for one host by one loader. Defaults is downloads.")
+    public void setHostDownloads(int hostDownloads) {
+        this.hostDownloads = hostDownloads;
+    }
+
+    @Option(longName = "adaptive", argName = "adaptive")
+    @Description("Specifies would be simultaneous downloads of every host raised up to hostDownloads while its responses " +
+            "are as fast as before and lowered on 429 and 503 responses, timeouts and rising latency. Defaults is true.")
+    public void setAdaptive(String adaptive) {
+        this.adaptive = Boolean.valueOf(adaptive);
+    }
+
+    @Option(longName = "poolSize", argName = "poolSize")
+    @Description("Specifies how many keep-alive connections one loader can open to one host. Defaults is downloads.")
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    @Option(longName = "idleTimeout", argName = "idleTimeout")
+    @Description("Specifies how many seconds idle connections and http clients are kept open. Defaults is 30.")
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Option(longName = "pipelining", argName = "pipelining")
+    @Description("Specifies would be http requests pipelined over keep-alive connections. Defaults is false.")
+    public void setPipelining(String pipelining) {
+        this.pipelining = Boolean.valueOf(pipelining);
+    }
+
+    @Option(longName = "streams", argName = "streams")
+    @Description("Specifies how many requests are pipelined over one keep-alive connection, more than one turns pipelining on " +
+            "and divides poolSize by it. Defaults is 1.")
+    public void setStreams(int streams) {
+        this.streams = streams;
+    }
+
     @Option(longName = "delay", argName = "delay")
-    @Description("Specifies how many milliseconds must be delayed between requests. Defaults is 200.")
+    @Description("Specifies how many milliseconds must be delayed between requests to the same host. Defaults is 200.")
     public void setDelay(int delay) {
         this.delay = delay;
     }
@@ -78,7 +147,7 @@ public class CrawlCommand extends BareCommand {
     }
 
     @Option(longName = "depth", argName = "depth")
-    @Description("Specifies how deeply crawler must dig. Defaults is 5.")
+    @Description("Specifies how deeply crawler must dig, at most 127. Defaults is 5.")
     public void setDepth(int depth) {
         this.depth = depth;
     }
@@ -101,9 +170,120 @@ public class CrawlCommand extends BareCommand {
         this.storeOriginals = Boolean.valueOf(storeOriginals);
     }
 
+    @Option(longName = "streamLinks", argName = "streamLinks")
+    @Description("Specifies would be links extracted while pages are downloaded instead of parsing the saved files. Have effect only if resolveLinks is false. Defaults is true.")
+    public void setStreamLinks(String streamLinks) {
+        this.streamLinks = Boolean.valueOf(streamLinks);
+    }
+
+    @Option(longName = "conditionalGet", argName = "conditionalGet")
+    @Description("Specifies would be pages downloaded before requested with If-None-Match and If-Modified-Since headers and kept if they are not modified. Defaults is true.")
+    public void setConditionalGet(String conditionalGet) {
+        this.conditionalGet = Boolean.valueOf(conditionalGet);
+    }
+
+    @Option(longName = "compression", argName = "compression")
+    @Description("Specifies would be compressed transfer of pages (gzip or deflate) requested or not. Defaults is true.")
+    public void setCompression(String compression) {
+        this.compression = Boolean.valueOf(compression);
+    }
+
+    @Option(longName = "storeCompressed", argName = "storeCompressed")
+    @Description("Specifies would be downloaded pages stored compressed to .html.gz files or not. Defaults is false.")
+    public void setStoreCompressed(String storeCompressed) {
+        this.storeCompressed = Boolean.valueOf(storeCompressed);
+    }
+
+    @Option(longName = "dedup", argName = "dedup")
+    @Description("Specifies would be pages with the same content stored as hard links to the first one after it is rewritten and not parsed again. Defaults is true.")
+    public void setDedup(String dedup) {
+        this.dedup = Boolean.valueOf(dedup);
+    }
+
+    @Option(longName = "nearDuplicates", argName = "nearDuplicates")
+    @Description("Specifies how many bits (up to 3) SimHash of the page text can differ from the stored one to consider the page a duplicate. Zero disables it. Defaults is 0.")
+    public void setNearDuplicates(int nearDuplicates) {
+        this.nearDuplicates = nearDuplicates;
+    }
+
+    @Option(longName = "robots", argName = "robots")
+    @Description("Specifies would be robots.txt rules and Crawl-delay honoured or not. Defaults is true.")
+    public void setRobots(String robots) {
+        this.robots = Boolean.valueOf(robots);
+    }
+
+    @Option(longName = "userAgent", argName = "userAgent")
+    @Description("Specifies User-Agent header of requests and the name for robots.txt rules. Defaults is 'vertx-crawler'.")
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    @Option(longName = "frontierWindow", argName = "frontierWindow")
+    @Description("Specifies how many urls can be sent to loaders at once, the rest of them wait in the frontier. Defaults is 10000.")
+    public void setFrontierWindow(int frontierWindow) {
+        this.frontierWindow = frontierWindow;
+    }
+
+    @Option(longName = "frontierOrder", argName = "frontierOrder")
+    @Description("Specifies which urls of the frontier are sent to loaders first: bfs takes the next level after the previous one " +
+            "is finished, depth prefers lower levels, inlinks prefers urls found more times, host gives every host its turn. " +
+            "Defaults is depth.")
+    public void setFrontierOrder(String frontierOrder) {
+        this.frontierOrder = frontierOrder;
+    }
+
+    @Option(longName = "resume", argName = "resume", flag = true)
+    @Description("Continue the crawling stopped before from the state stored in the directory. Defaults is false.")
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    @Option(longName = "retryFailed", argName = "retryFailed", flag = true)
+    @Description("Download again the pages which failed before when the crawling is resumed. Defaults is false.")
+    public void setRetryFailed(boolean retryFailed) {
+        this.retryFailed = retryFailed;
+    }
+
+    @Option(longName = "maxAttempts", argName = "maxAttempts")
+    @Description("Specifies how many times a page is requested when it fails with a timeout, a reset connection, 5xx or 429 " +
+            "status code. Defaults is 3.")
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Option(longName = "cluster", argName = "cluster", flag = true)
+    @Description("Join the cluster of crawler nodes which share one crawling. Defaults is false.")
+    public void setCluster(boolean cluster) {
+        this.cluster = cluster;
+    }
+
+    @Option(longName = "node", argName = "node")
+    @Description("Specifies the number of this node in the cluster starting from 0. Defaults is 0.")
+    public void setNode(int node) {
+        this.node = node;
+    }
+
+    @Option(longName = "nodes", argName = "nodes")
+    @Description("Specifies how many nodes share the crawling, it starts when all of them joined the cluster. Defaults is 1.")
+    public void setNodes(int nodes) {
+        this.nodes = nodes;
+    }
+
+    @Option(longName = "statsInterval", argName = "statsInterval")
+    @Description("Specifies how many seconds are between logging of download queues and the metrics summary. Zero disables it. Defaults is 10.")
+    public void setStatsInterval(int statsInterval) {
+        this.statsInterval = statsInterval;
+    }
+
+    @Option(longName = "metricsPort", argName = "metricsPort")
+    @Description("Specifies the local port where metrics are served in Prometheus text format at /metrics. Zero disables it. Defaults is 0.")
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
     @Override
     public boolean isClustered() {
-        return false;
+        return cluster;
     }
 
     @Override
@@ -111,6 +291,8 @@ public class CrawlCommand extends BareCommand {
         return false;
     }
 
+    public static final String NODES_COUNTER = "crawler.nodes";
+
     private static final Logger log = LoggerFactory.getLogger(CrawlCommand.class);
 
     @Override
@@ -121,26 +303,90 @@ public class CrawlCommand extends BareCommand {
         putNotNull(conf, "url", url);
         putNotNull(conf, "dir", directory, "output");
         putNotNull(conf, "loaders", loaders, 1);
+        putNotNull(conf, "coordinators", coordinators, 1);
         putNotNull(conf, "downloads", downloads, 10);
+        putNotNull(conf, "hostDownloads", hostDownloads, conf.getInteger("downloads"));
+        putNotNull(conf, "adaptive", adaptive, true);
+        putNotNull(conf, "requestTimeout", null, 30);
+        putNotNull(conf, "poolSize", poolSize, conf.getInteger("downloads"));
+        putNotNull(conf, "idleTimeout", idleTimeout, 30);
+        putNotNull(conf, "pipelining", pipelining, false);
+        putNotNull(conf, "streams", streams, 1);
         putNotNull(conf, "delay", delay, 200);
         putNotNull(conf, "parsers", parsers, Runtime.getRuntime().availableProcessors());
         putNotNull(conf, "depth", depth, 5);
         putNotNull(conf, "resolveLinks", resolveLinks, true);
         putNotNull(conf, "linksToFiles", linksToFiles, false);
         putNotNull(conf, "storeOriginals", storeOriginals, false);
+        putNotNull(conf, "streamLinks", streamLinks, true);
+        putNotNull(conf, "conditionalGet", conditionalGet, true);
+        putNotNull(conf, "compression", compression, true);
+        putNotNull(conf, "storeCompressed", storeCompressed, false);
+        putNotNull(conf, "dedup", dedup, true);
+        putNotNull(conf, "nearDuplicates", nearDuplicates, 0);
+        putNotNull(conf, "statsInterval", statsInterval, 10);
+        putNotNull(conf, "metricsPort", metricsPort, 0);
+        putNotNull(conf, "metricsHost", null, "localhost");
+        putNotNull(conf, "metricsHosts", null, 100);
+        putNotNull(conf, "robots", robots, true);
+        putNotNull(conf, "userAgent", userAgent, "vertx-crawler");
+        putNotNull(conf, "robotsTtl", null, 3600);
+        putNotNull(conf, "robotsErrorTtl", null, 60);
+        putNotNull(conf, "robotsCacheSize", null, 1000);
+        putNotNull(conf, "dnsTtl", null, 300);
+        putNotNull(conf, "dnsNegativeTtl", null, 60);
+        putNotNull(conf, "dnsCacheSize", null, 10000);
+        putNotNull(conf, "frontierWindow", frontierWindow, 10000);
+        putNotNull(conf, "frontierOrder", frontierOrder, Frontier.DEPTH);
+        putNotNull(conf, "frontierMemory", null, 1000000);
+        putNotNull(conf, "journalSize", null, 64);
+        putNotNull(conf, "expectedUrls", null, 65536);
+        putNotNull(conf, "bloomFilter", null, 0);
+        putNotNull(conf, "urlCacheSize", null, 10000);
+        putNotNull(conf, "resume", resume ? true : null, false);
+        putNotNull(conf, "retryFailed", retryFailed ? true : null, false);
+        putNotNull(conf, "maxAttempts", maxAttempts, 3);
+        putNotNull(conf, "retryDelay", null, LoaderVehicle.RETRY_DELAY);
+        putNotNull(conf, "retryBudget", null, 0.1);
+        putNotNull(conf, "node", node, 0);
+        putNotNull(conf, "nodes", nodes, 1);
 
         log.info("Crawler parameters:");
         log.info("Configuration file: " + configuration);
         log.info("Url: " + conf.getString("url"));
         log.info("Directory: " + conf.getString("dir"));
         log.info("Loaders: " + conf.getInteger("loaders"));
+        log.info("Coordinators: " + conf.getInteger("coordinators"));
         log.info("Downloads: " + conf.getInteger("downloads"));
+        log.info("Host downloads: " + conf.getInteger("hostDownloads"));
+        log.info("Adaptive: " + conf.getBoolean("adaptive"));
+        log.info("Pool size: " + conf.getInteger("poolSize"));
+        log.info("Idle timeout: " + conf.getInteger("idleTimeout"));
+        log.info("Pipelining: " + conf.getBoolean("pipelining"));
+        log.info("Streams: " + conf.getInteger("streams"));
         log.info("Delay: " + conf.getInteger("delay"));
         log.info("Parsers: " + conf.getInteger("parsers"));
         log.info("Depth: " + conf.getInteger("depth"));
         log.info("Resolve links: " + conf.getBoolean("resolveLinks"));
         log.info("Links to files: " + conf.getBoolean("linksToFiles"));
         log.info("Store originals: " + conf.getBoolean("storeOriginals"));
+        log.info("Stream links: " + conf.getBoolean("streamLinks"));
+        log.info("Conditional get: " + conf.getBoolean("conditionalGet"));
+        log.info("Compression: " + conf.getBoolean("compression"));
+        log.info("Store compressed: " + conf.getBoolean("storeCompressed"));
+        log.info("Dedup: " + conf.getBoolean("dedup"));
+        log.info("Near duplicates: " + conf.getInteger("nearDuplicates"));
+        log.info("Stats interval: " + conf.getInteger("statsInterval"));
+        log.info("Metrics port: " + conf.getInteger("metricsPort"));
+        log.info("Robots: " + conf.getBoolean("robots"));
+        log.info("User agent: " + conf.getString("userAgent"));
+        log.info("Frontier window: " + conf.getInteger("frontierWindow"));
+        log.info("Frontier order: " + conf.getString("frontierOrder"));
+        log.info("Resume: " + conf.getBoolean("resume"));
+        log.info("Retry failed: " + conf.getBoolean("retryFailed"));
+        log.info("Max attempts: " + conf.getInteger("maxAttempts"));
+        log.info("Cluster: " + cluster);
+        log.info("Node: " + conf.getInteger("node") + " of " + conf.getInteger("nodes"));
 
         try {
             Files.createDirectories(Paths.get(conf.getString("dir")));
@@ -149,6 +395,23 @@ public class CrawlCommand extends BareCommand {
             return;
         }
 
+        if (conf.getInteger("node") < 0 || conf.getInteger("node") >= conf.getInteger("nodes")) {
+            log.error("Node must be from 0 to nodes - 1");
+            return;
+        }
+
+        if (conf.getInteger("depth") < 0 || conf.getInteger("depth") > Frontier.MAX_LEVEL) {
+            log.error("Depth must be from 0 to " + Frontier.MAX_LEVEL);
+            return;
+        }
+
+        try {
+            new Frontier(conf.getString("frontierOrder"));
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return;
+        }
+
         if (!conf.containsKey("url")) {
             log.error("Url is not found");
             return;
@@ -169,13 +432,47 @@ public class CrawlCommand extends BareCommand {
             vertx.close();
         });
 
-        vertx.deployVerticle(ParserVehicle.class.getName(), new DeploymentOptions().setConfig(conf).setInstances(conf.getInteger("parsers")).setWorker(true), ar1 -> {
-            vertx.deployVerticle(LoaderVehicle.class.getName(), new DeploymentOptions().setConfig(conf).setInstances(conf.getInteger("loaders")), ar2 -> {
-                vertx.deployVerticle(CrawlerVehicle.class.getName(), new DeploymentOptions().setConfig(conf));
+        vertx.deployVerticle(MetricsVehicle.class.getName(), new DeploymentOptions().setConfig(conf), ar0 -> {
+            if (ar0.failed()) {
+                log.error("Cannot deploy metrics", ar0.cause());
+                vertx.close();
+                return;
+            }
+
+            vertx.deployVerticle(ParserVehicle.class.getName(), new DeploymentOptions().setConfig(conf).setInstances(conf.getInteger("parsers")).setWorker(true), ar1 -> {
+                vertx.deployVerticle(LoaderVehicle.class.getName(), new DeploymentOptions().setConfig(conf).setInstances(conf.getInteger("loaders")), ar2 -> {
+                    deployCoordinators(conf);
+                });
             });
         });
     }
 
+    protected void deployCoordinators(JsonObject conf) {
+        final int coordinators = conf.getInteger("coordinators");
+        final int firstShard = conf.getInteger("node") * coordinators;
+        final int[] deployed = new int[1];
+
+        for (int shard = firstShard; shard < firstShard + coordinators; shard++) {
+            vertx.deployVerticle(CrawlerVehicle.class.getName(), new DeploymentOptions().setConfig(conf.copy().put("shard", shard)), ar -> {
+                if (ar.failed()) {
+                    log.error("Cannot deploy coordinator", ar.cause());
+                    vertx.close();
+                    return;
+                }
+
+                if (++deployed[0] == coordinators) {
+                    vertx.sharedData().getCounter(CrawlerVehicle.PROCESSED_COUNTER, processed -> processed.result().addAndGet(coordinators, added ->
+                            vertx.sharedData().getCounter(NODES_COUNTER, nodes -> nodes.result().incrementAndGet(joined -> {
+                                log.info("Node " + conf.getInteger("node") + " joined, " + joined.result() + " of " + conf.getInteger("nodes") + " nodes are ready");
+                                if (joined.result() == (long) conf.getInteger("nodes")) {
+                                    vertx.eventBus().publish(CrawlMessages.START, conf.getString("url"));
+                                }
+                            }))));
+                }
+            });
+        }
+    }
+
     protected JsonObject getConfiguration() {
         return Optional.ofNullable(configuration).map(this::readConfig).map(jsonString ->  {
             try {
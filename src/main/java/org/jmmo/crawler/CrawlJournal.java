@@ -0,0 +1,427 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class CrawlJournal implements Closeable {
+    public static final String SNAPSHOT = "snapshot.jsonl";
+    public static final String JOURNAL = "journal.jsonl";
+
+    public static final String QUEUED = "queued";
+    public static final String DOWNLOADED = "downloaded";
+    public static final String DONE = "done";
+
+    // the offset of a line keeps the number of the file it is read from in the upper bits
+    protected static final int SEGMENT_SHIFT = 48;
+
+    protected static final Pattern rotatedPattern = Pattern.compile("journal\\.(\\d+)\\.jsonl");
+
+    protected final Path dir;
+    protected final long rotateSize;
+    protected BufferedWriter writer;
+    protected long written;
+    protected int generation;
+
+    public CrawlJournal(Path dir, long rotateSize) {
+        this.dir = dir;
+        this.rotateSize = rotateSize;
+    }
+
+    public void open(boolean keep) throws IOException {
+        Files.createDirectories(dir);
+
+        if (!keep) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : paths.filter(path -> !path.equals(dir)).sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+
+        generation = rotated(dir).stream().mapToInt(CrawlJournal::generationOf).max().orElse(0);
+        writer = Files.newBufferedWriter(dir.resolve(JOURNAL), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public boolean append(JsonObject record) throws IOException {
+        final String line = record.encode();
+        writer.write(line);
+        writer.newLine();
+        written += line.length() + 1;
+
+        return written >= rotateSize;
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    public void rotate() throws IOException {
+        writer.close();
+        Files.move(dir.resolve(JOURNAL), dir.resolve("journal." + ++generation + ".jsonl"));
+        writer = Files.newBufferedWriter(dir.resolve(JOURNAL), StandardCharsets.UTF_8);
+        written = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    public static JsonObject queued(String url, String file, int level) {
+        return new JsonObject().put("type", QUEUED).put("url", url).put("file", file).put("level", level);
+    }
+
+    public static JsonObject retry(String file) {
+        return new JsonObject().put("type", "retry").put("file", file);
+    }
+
+    public static JsonObject redirect(String url, String file) {
+        return new JsonObject().put("type", "redirect").put("url", url).put("file", file);
+    }
+
+    public static JsonObject level(String file, int level, boolean parse) {
+        return new JsonObject().put("type", "level").put("file", file).put("level", level).put("parse", parse);
+    }
+
+    public static JsonObject downloaded(String file, String baseUrl) {
+        return new JsonObject().put("type", DOWNLOADED).put("file", file).put("base", baseUrl);
+    }
+
+    public static JsonObject downloaded(String file, String baseUrl, Long hash, Long simHash) {
+        return downloaded(file, baseUrl).put("hash", hash).put("simHash", simHash);
+    }
+
+    public static JsonObject done(String file) {
+        return new JsonObject().put("type", DONE).put("file", file);
+    }
+
+    // the snapshot and the journals are replayed record by record without keeping the whole state in memory
+    public static void load(Path dir, Replay replay) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        read(dir.resolve(SNAPSHOT), (state, position) -> restore(state, replay));
+        for (Path journal : rotated(dir)) {
+            read(journal, (record, position) -> replay(record, replay));
+        }
+        read(dir.resolve(JOURNAL), (record, position) -> replay(record, replay));
+    }
+
+    public static void compact(Path dir) throws IOException {
+        final List<Path> journals = rotated(dir);
+        if (journals.isEmpty()) {
+            return;
+        }
+
+        // only the offsets of the lines which make up the states are kept, the states are read back from them one by one
+        final Compaction compaction = new Compaction();
+        read(dir.resolve(SNAPSHOT), (state, position) -> compaction.state(state, position));
+        for (int i = 0; i < journals.size(); i++) {
+            final long segment = (long) (i + 1) << SEGMENT_SHIFT;
+            read(journals.get(i), (record, position) -> compaction.record(record, segment | position));
+        }
+
+        final Path temp = dir.resolve(SNAPSHOT + ".tmp");
+        final RandomAccessFile[] segments = new RandomAccessFile[journals.size() + 1];
+        try (BufferedWriter snapshotWriter = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            if (Files.exists(dir.resolve(SNAPSHOT))) {
+                segments[0] = new RandomAccessFile(dir.resolve(SNAPSHOT).toFile(), "r");
+            }
+            for (int i = 0; i < journals.size(); i++) {
+                segments[i + 1] = new RandomAccessFile(journals.get(i).toFile(), "r");
+            }
+
+            for (int i = 0; i < compaction.size; i++) {
+                snapshotWriter.write(compaction.state(i, segments).encode());
+                snapshotWriter.newLine();
+            }
+        } finally {
+            for (RandomAccessFile segment : segments) {
+                if (segment != null) {
+                    segment.close();
+                }
+            }
+        }
+        Files.move(temp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path journal : journals) {
+            Files.delete(journal);
+        }
+    }
+
+    protected static void replay(JsonObject record, Replay replay) throws IOException {
+        final String file = record.getString("file");
+
+        switch (record.getString("type")) {
+            case QUEUED:
+                replay.queued(file, record.getString("url"), record.getInteger("level"));
+                break;
+            case "redirect":
+                replay.redirect(file, record.getString("url"));
+                break;
+            case "retry":
+                replay.retry(file);
+                break;
+            case "level":
+                replay.level(file, record.getInteger("level"), record.getBoolean("parse", false));
+                break;
+            case DOWNLOADED:
+                replay.downloaded(file, record.getString("base"), record.getLong("hash"), record.getLong("simHash"));
+                break;
+            case DONE:
+                replay.done(file);
+                break;
+        }
+    }
+
+    // a state of the snapshot is replayed as the records which lead to it
+    protected static void restore(JsonObject state, Replay replay) throws IOException {
+        final String file = state.getString("file");
+        final JsonArray urls = state.getJsonArray("urls");
+
+        replay.queued(file, urls.getString(0), state.getInteger("level"));
+        for (int i = 1; i < urls.size(); i++) {
+            replay.redirect(file, urls.getString(i));
+        }
+        if (state.getString("base") != null) {
+            replay.downloaded(file, state.getString("base"), state.getLong("hash"), state.getLong("simHash"));
+            if (!DOWNLOADED.equals(state.getString("state"))) {
+                replay.done(file);
+            }
+            if (QUEUED.equals(state.getString("state"))) {
+                replay.retry(file);
+            }
+        } else if (DONE.equals(state.getString("state"))) {
+            replay.done(file);
+        }
+    }
+
+    protected static void read(Path path, RecordHandler handler) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (InputStream input = Files.newInputStream(path)) {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[64 * 1024];
+            long position = 0;
+            long lineStart = 0;
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                int from = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        line.write(buffer, from, i - from);
+                        if (!handle(line, lineStart, handler)) {
+                            return;
+                        }
+                        line.reset();
+                        from = i + 1;
+                        lineStart = position + from;
+                    }
+                }
+                line.write(buffer, from, read - from);
+                position += read;
+            }
+            handle(line, lineStart, handler);
+        }
+    }
+
+    protected static boolean handle(ByteArrayOutputStream line, long position, RecordHandler handler) throws IOException {
+        final String text = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (text.isEmpty()) {
+            return true;
+        }
+
+        final JsonObject record;
+        try {
+            record = new JsonObject(text);
+        } catch (RuntimeException e) {
+            // the tail of the journal may be truncated by a crash
+            return false;
+        }
+        handler.handle(record, position);
+        return true;
+    }
+
+    protected static JsonObject readAt(RandomAccessFile file, long position) throws IOException {
+        file.seek(position);
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = file.read(buffer)) > 0) {
+            int end = 0;
+            while (end < read && buffer[end] != '\n') {
+                end++;
+            }
+            line.write(buffer, 0, end);
+            if (end < read) {
+                break;
+            }
+        }
+        return new JsonObject(new String(line.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    protected static List<Path> rotated(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.filter(path -> rotatedPattern.matcher(path.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingInt(CrawlJournal::generationOf))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    protected static int generationOf(Path path) {
+        final Matcher matcher = rotatedPattern.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    protected interface RecordHandler {
+        void handle(JsonObject record, long position) throws IOException;
+    }
+
+    public interface Replay {
+        void queued(String file, String url, int level) throws IOException;
+
+        void redirect(String file, String url);
+
+        void retry(String file);
+
+        void level(String file, int level, boolean parse);
+
+        void downloaded(String file, String baseUrl, Long hash, Long simHash) throws IOException;
+
+        void done(String file);
+    }
+
+    // a file takes about 40 bytes: the offsets of its queued and downloaded lines, the last redirect, the level and the state
+    protected static class Compaction {
+        static final String[] STATES = {null, QUEUED, DOWNLOADED, DONE};
+
+        protected final LongLongHashMap indexes = new LongLongHashMap();
+        protected int size;
+        protected long[] starts = new long[1024];
+        protected long[] downloads = new long[1024];
+        protected int[] lastRedirects = new int[1024];
+        protected byte[] levels = new byte[1024];
+        protected byte[] states = new byte[1024];
+        protected long[] redirects = new long[1024];
+        protected int[] previousRedirects = new int[1024];
+        protected int redirectsSize;
+
+        // the state of the snapshot starts the file as its queued record does
+        void state(JsonObject state, long offset) {
+            final int index = start(state.getString("file"), offset, state.getInteger("level"));
+            states[index] = (byte) Arrays.asList(STATES).indexOf(state.getString("state"));
+            if (state.getString("base") != null) {
+                downloads[index] = offset;
+            }
+        }
+
+        void record(JsonObject record, long offset) {
+            final String type = record.getString("type");
+            if (QUEUED.equals(type)) {
+                start(record.getString("file"), offset, record.getInteger("level"));
+                return;
+            }
+
+            final int index = (int) indexes.get(Fingerprint.of(record.getString("file")), -1);
+            if (index < 0) {
+                return;
+            }
+
+            switch (type) {
+                case "redirect":
+                    if (redirectsSize == redirects.length) {
+                        redirects = Arrays.copyOf(redirects, redirectsSize + (redirectsSize >> 1));
+                        previousRedirects = Arrays.copyOf(previousRedirects, redirects.length);
+                    }
+                    redirects[redirectsSize] = offset;
+                    previousRedirects[redirectsSize] = lastRedirects[index];
+                    lastRedirects[index] = redirectsSize++;
+                    break;
+                case "retry":
+                    if (states[index] == CrawlState.DONE) {
+                        states[index] = CrawlState.QUEUED;
+                    }
+                    break;
+                case "level":
+                    levels[index] = (byte) (int) record.getInteger("level");
+                    if (record.getBoolean("parse", false) && states[index] == CrawlState.DONE) {
+                        states[index] = CrawlState.DOWNLOADED;
+                    }
+                    break;
+                case DOWNLOADED:
+                    downloads[index] = offset;
+                    states[index] = CrawlState.DOWNLOADED;
+                    break;
+                case DONE:
+                    states[index] = CrawlState.DONE;
+                    break;
+            }
+        }
+
+        protected int start(String file, long offset, int level) {
+            final long fingerprint = Fingerprint.of(file);
+            int index = (int) indexes.get(fingerprint, -1);
+            if (index < 0) {
+                if (size == starts.length) {
+                    final int capacity = size + (size >> 1);
+                    starts = Arrays.copyOf(starts, capacity);
+                    downloads = Arrays.copyOf(downloads, capacity);
+                    lastRedirects = Arrays.copyOf(lastRedirects, capacity);
+                    levels = Arrays.copyOf(levels, capacity);
+                    states = Arrays.copyOf(states, capacity);
+                }
+                index = size++;
+                indexes.put(fingerprint, index);
+            }
+
+            starts[index] = offset;
+            downloads[index] = -1;
+            lastRedirects[index] = -1;
+            levels[index] = (byte) level;
+            states[index] = CrawlState.QUEUED;
+            return index;
+        }
+
+        JsonObject state(int index, RandomAccessFile[] segments) throws IOException {
+            final JsonObject start = read(starts[index], segments);
+            final JsonArray urls = start.containsKey("type") ? new JsonArray().add(start.getString("url")) : start.getJsonArray("urls");
+
+            final Deque<Long> redirectOffsets = new ArrayDeque<>();
+            for (int redirect = lastRedirects[index]; redirect >= 0; redirect = previousRedirects[redirect]) {
+                redirectOffsets.addFirst(redirects[redirect]);
+            }
+            for (long offset : redirectOffsets) {
+                urls.add(read(offset, segments).getString("url"));
+            }
+
+            final JsonObject state = new JsonObject().put("file", start.getString("file")).put("level", (int) levels[index])
+                    .put("state", STATES[states[index]]).put("urls", urls);
+            if (downloads[index] >= 0) {
+                final JsonObject downloaded = read(downloads[index], segments);
+                state.put("base", downloaded.getString("base")).put("hash", downloaded.getLong("hash")).put("simHash", downloaded.getLong("simHash"));
+            }
+            return state;
+        }
+
+        protected JsonObject read(long offset, RandomAccessFile[] segments) throws IOException {
+            return readAt(segments[(int) (offset >>> SEGMENT_SHIFT)], offset & ((1L << SEGMENT_SHIFT) - 1));
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package org.jmmo.crawler;
 
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+
 public class CrawlMessages {
+    // the resolver of the JVM retries the lookup on its own timeouts
+    public static final long RESOLVE_TIMEOUT = 30000;
+    public static final long REPLY_MARGIN = 10000;
 
     public static final String DOWNLOAD = "crawler.download";
 
@@ -16,5 +22,34 @@ public class CrawlMessages {
 
     public static final String URL_FOUND = "crawler.link_found";
 
+    public static final String URLS_FOUND = "crawler.links_found";
+
+    public static final String ROBOTS = "crawler.robots";
+
+    public static final String RESOLVE = "crawler.resolve";
+
+    public static final String HOST_DELAY = "crawler.host_delay";
+
+    public static final String START = "crawler.start";
+
     public static final String DONE = "crawler.done";
+
+    public static String shard(String address, int shard) {
+        return address + "." + shard;
+    }
+
+    public static String node(String address, int node) {
+        return address + ".node" + node;
+    }
+
+    // robots.txt may be redirected and every request of it waits for the request timeout after its host is resolved
+    public static DeliveryOptions robotsOptions(JsonObject config) {
+        return new DeliveryOptions().setSendTimeout(
+                (LoaderVehicle.MAX_ROBOTS_REDIRECTS + 1) * config.getInteger("requestTimeout", 30) * 1000L + RESOLVE_TIMEOUT);
+    }
+
+    // the found urls are replied when robots.txt of their hosts are got, so the reply waits for them
+    public static DeliveryOptions foundOptions(JsonObject config) {
+        return new DeliveryOptions().setSendTimeout(robotsOptions(config).getSendTimeout() + REPLY_MARGIN);
+    }
 }
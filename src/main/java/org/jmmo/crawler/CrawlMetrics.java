@@ -0,0 +1,243 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class CrawlMetrics implements Shareable {
+    public static final String NAME = "crawler.metrics";
+    public static final String OTHER_HOSTS = "other";
+    public static final double[] BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    public static final long SNAPSHOT_INTERVAL = 1000;
+
+    protected final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+    protected final Set<String> hosts = ConcurrentHashMap.newKeySet();
+    protected volatile int hostsLimit = 100;
+
+    public static CrawlMetrics of(Vertx vertx) {
+        final LocalMap<String, CrawlMetrics> map = vertx.sharedData().getLocalMap(NAME);
+        final CrawlMetrics metrics = map.get(NAME);
+        if (metrics != null) {
+            return metrics;
+        }
+
+        final CrawlMetrics newMetrics = new CrawlMetrics();
+        final CrawlMetrics existing = map.putIfAbsent(NAME, newMetrics);
+        return existing != null ? existing : newMetrics;
+    }
+
+    public void setHostsLimit(int hostsLimit) {
+        this.hostsLimit = hostsLimit;
+    }
+
+    public String host(String host) {
+        if (hosts.contains(host)) {
+            return host;
+        }
+
+        if (hosts.size() < hostsLimit) {
+            hosts.add(host);
+            return host;
+        }
+
+        return OTHER_HOSTS;
+    }
+
+    public Counter counter(String name, String... labels) {
+        return (Counter) metrics.computeIfAbsent(key(name, labels), key -> new Counter());
+    }
+
+    public Histogram histogram(String name, String... labels) {
+        return (Histogram) metrics.computeIfAbsent(key(name, labels), key -> new Histogram());
+    }
+
+    public void gauge(String name, LongSupplier supplier, String... labels) {
+        ((Gauge) metrics.computeIfAbsent(key(name, labels), key -> new Gauge())).suppliers.add(supplier);
+    }
+
+    // the state of a verticle is read on its own event loop and only the published value is seen by other threads
+    public Snapshot snapshot(String name, LongSupplier supplier, String... labels) {
+        final Snapshot snapshot = new Snapshot(supplier);
+        gauge(name, snapshot, labels);
+        return snapshot;
+    }
+
+    public long value(String name) {
+        long value = 0;
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            if (nameOf(entry.getKey()).equals(name)) {
+                final Object metric = entry.getValue();
+                value += metric instanceof Counter ? ((Counter) metric).get()
+                        : metric instanceof Gauge ? ((Gauge) metric).get() : ((Histogram) metric).count.sum();
+            }
+        }
+        return value;
+    }
+
+    public double quantile(String name, double quantile) {
+        final long[] buckets = new long[BUCKETS.length + 1];
+        metrics.forEach((key, metric) -> {
+            if (metric instanceof Histogram && nameOf(key).equals(name)) {
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] += ((Histogram) metric).buckets[i].sum();
+                }
+            }
+        });
+
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            cumulative += buckets[i];
+            if (cumulative >= quantile * count) {
+                return BUCKETS[i];
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    public String prometheus() {
+        final StringBuilder builder = new StringBuilder();
+
+        String lastName = null;
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            final String name = nameOf(entry.getKey());
+            final String labels = entry.getKey().substring(name.length());
+            final Object metric = entry.getValue();
+
+            if (!name.equals(lastName)) {
+                builder.append("# TYPE ").append(name).append(' ')
+                        .append(metric instanceof Counter ? "counter" : metric instanceof Gauge ? "gauge" : "histogram").append('\n');
+                lastName = name;
+            }
+
+            if (metric instanceof Counter) {
+                builder.append(entry.getKey()).append(' ').append(((Counter) metric).get()).append('\n');
+            } else if (metric instanceof Gauge) {
+                builder.append(entry.getKey()).append(' ').append(((Gauge) metric).get()).append('\n');
+            } else {
+                final Histogram histogram = (Histogram) metric;
+                long cumulative = 0;
+                for (int i = 0; i <= BUCKETS.length; i++) {
+                    cumulative += histogram.buckets[i].sum();
+                    builder.append(name).append("_bucket").append(withLabel(labels, "le", i < BUCKETS.length ? String.valueOf(BUCKETS[i]) : "+Inf"))
+                            .append(' ').append(cumulative).append('\n');
+                }
+                builder.append(name).append("_sum").append(labels).append(' ').append(histogram.sum.sum()).append('\n');
+                builder.append(name).append("_count").append(labels).append(' ').append(histogram.count.sum()).append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    protected static String key(String name, String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+
+        final StringBuilder builder = new StringBuilder(name).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append("=\"").append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    protected static String nameOf(String key) {
+        final int labelsIndex = key.indexOf('{');
+        return labelsIndex == -1 ? key : key.substring(0, labelsIndex);
+    }
+
+    protected static String withLabel(String labels, String label, String value) {
+        final String pair = label + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + pair + "}" : labels.substring(0, labels.length() - 1) + "," + pair + "}";
+    }
+
+    public static class Counter {
+        protected final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long delta) {
+            value.add(delta);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    public static class Gauge {
+        protected final List<LongSupplier> suppliers = new CopyOnWriteArrayList<>();
+
+        public long get() {
+            return suppliers.stream().mapToLong(LongSupplier::getAsLong).sum();
+        }
+    }
+
+    public static class Snapshot implements LongSupplier {
+        protected final LongSupplier supplier;
+        protected volatile long value;
+
+        public Snapshot(LongSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        public void update() {
+            value = supplier.getAsLong();
+        }
+
+        @Override
+        public long getAsLong() {
+            return value;
+        }
+    }
+
+    public static class Histogram {
+        protected final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        protected final DoubleAdder sum = new DoubleAdder();
+        protected final LongAdder count = new LongAdder();
+
+        public Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double seconds) {
+            int bucket = 0;
+            while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sum.add(seconds);
+            count.increment();
+        }
+
+        public void observeNanos(long nanos) {
+            observe(nanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.jmmo.crawler;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// the state of the previous crawling is restored right into the url store, only a few bytes per url are kept aside
+public class CrawlState implements CrawlJournal.Replay {
+    public static final byte QUEUED = 1;
+    public static final byte DOWNLOADED = 2;
+    public static final byte DONE = 3;
+
+    protected final UrlStore urls;
+    protected final LongHashSet files;
+    protected final LongLongHashMap records = new LongLongHashMap();
+    protected byte[] states = new byte[1024];
+    protected long[] hashes = new long[1024];
+    protected long[] simHashes = new long[1024];
+    protected final BitSet hashed = new BitSet();
+    protected final BitSet simHashed = new BitSet();
+    protected final BitSet retries = new BitSet();
+
+    public CrawlState(UrlStore urls, LongHashSet files) {
+        this.urls = urls;
+        this.files = files;
+    }
+
+    @Override
+    public void queued(String file, String url, int level) throws IOException {
+        final long fingerprint = Fingerprint.of(file);
+        final int record = (int) records.get(fingerprint, -1);
+        if (record >= 0) {
+            urls.alias(url, record);
+            urls.setLevel(record, level);
+            states[record] = QUEUED;
+            hashed.clear(record);
+            simHashed.clear(record);
+            return;
+        }
+
+        final int newRecord = urls.add(url, file, level);
+        if (newRecord == states.length) {
+            final int capacity = newRecord + (newRecord >> 1);
+            states = Arrays.copyOf(states, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            simHashes = Arrays.copyOf(simHashes, capacity);
+        }
+        states[newRecord] = QUEUED;
+        records.put(fingerprint, newRecord);
+        files.add(fingerprint);
+    }
+
+    @Override
+    public void redirect(String file, String url) {
+        final int record = find(file);
+        if (record >= 0) {
+            urls.alias(url, record);
+        }
+    }
+
+    @Override
+    public void retry(String file) {
+        final int record = find(file);
+        if (record >= 0 && states[record] == DONE) {
+            states[record] = QUEUED;
+        }
+    }
+
+    @Override
+    public void level(String file, int level, boolean parse) {
+        final int record = find(file);
+        if (record >= 0) {
+            urls.setLevel(record, level);
+            if (parse && states[record] == DONE) {
+                states[record] = DOWNLOADED;
+            }
+        }
+    }
+
+    @Override
+    public void downloaded(String file, String baseUrl, Long hash, Long simHash) throws IOException {
+        final int record = find(file);
+        if (record < 0) {
+            return;
+        }
+
+        urls.setBase(record, baseUrl);
+        states[record] = DOWNLOADED;
+        hashed.set(record, hash != null);
+        hashes[record] = hash != null ? hash : 0;
+        simHashed.set(record, simHash != null);
+        simHashes[record] = simHash != null ? simHash : 0;
+    }
+
+    @Override
+    public void done(String file) {
+        final int record = find(file);
+        if (record >= 0) {
+            states[record] = DONE;
+        }
+    }
+
+    // the finished page is downloaded again and its retry is recorded to the journal
+    public boolean retryFailed(String file) {
+        final int record = find(file);
+        if (record < 0 || states[record] != DONE) {
+            return false;
+        }
+
+        states[record] = QUEUED;
+        retries.set(record);
+        return true;
+    }
+
+    public int find(String file) {
+        return (int) records.get(Fingerprint.of(file), -1);
+    }
+
+    public byte state(int record) {
+        return states[record];
+    }
+
+    public boolean isRetry(int record) {
+        return retries.get(record);
+    }
+
+    public Long hash(int record) {
+        return hashed.get(record) ? hashes[record] : null;
+    }
+
+    public Long simHash(int record) {
+        return simHashed.get(record) ? simHashes[record] : null;
+    }
+
+    public int size() {
+        return urls.records();
+    }
+}
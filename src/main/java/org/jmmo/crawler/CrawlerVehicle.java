@@ -1,143 +1,762 @@
 package org.jmmo.crawler;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Counter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
 import java.util.regex.Pattern;
 
 public class CrawlerVehicle extends AbstractVerticle {
     public static final String HTML_EXTENSION = ".html";
+    public static final String STATE_DIR = ".crawl";
+    public static final String URLS = "urls.dat";
+    public static final String FAILURES = "failures.jsonl";
+    public static final String FRONTIER_DIR = "frontier";
+    public static final String VALIDATORS_DIR = ".validators";
+    public static final String PROCESSED_COUNTER = "crawler.processed";
 
     private static final Logger log = LoggerFactory.getLogger(CrawlerVehicle.class);
 
-    protected Map<String, String> urls = new HashMap<>();
-    protected Map<String, String> baseUrls = new HashMap<>();
-    protected Map<String, Integer> files = new HashMap<>();
+    protected UrlStore urls;
+    protected LongHashSet files = new LongHashSet();
     protected Map<String, Integer> names = new HashMap<>();
+    protected Map<String, List<Handler<RobotsRules>>> robotsWaiters = new HashMap<>();
 
     protected String rootUrl;
     protected Path rootDir;
     protected int depth;
     protected boolean linksToFiles;
-
+    protected boolean storeCompressed;
+    protected boolean robots;
+    protected String userAgent;
+    protected RobotsCache robotsCache;
+    protected long robotsErrorTtl;
+    protected DeliveryOptions robotsOptions;
+    protected DeliveryOptions foundOptions;
+    protected final Set<String> hosts = new HashSet<>();
+
+    protected Path stateDir;
+    protected CrawlJournal journal;
+    protected BufferedWriter failures;
+    protected Frontier frontier;
+    // downloaded pages wait here until their levels cannot be lowered anymore
+    protected final Map<Integer, Runnable> deferred = new LinkedHashMap<>();
+    protected int deferredLevel = -1;
+    protected final Map<String, Integer> parsing = new HashMap<>();
+    // duplicates are linked only after their originals are rewritten
+    protected final Map<Integer, List<Runnable>> linking = new HashMap<>();
+    protected ValidatorStore validators;
+    protected LongLongHashMap hashes;
+    protected SimHashIndex simHashes;
+    protected int nearDuplicates;
+    protected int frontierWindow;
+    protected int downloading;
+    protected boolean compacting;
+
+    protected int node;
+    protected int shard;
+    protected int shards;
+    protected Counter processedCounter;
     protected int processed;
+    protected int acquired;
 
     @Override
-    public void start() throws Exception {
+    public void start(Future<Void> startFuture) throws Exception {
         log.info("Crawl started");
 
         rootUrl = config().getString("url");
         rootDir = Paths.get(config().getString("dir")).toAbsolutePath();
         depth = config().getInteger("depth");
         linksToFiles = config().getBoolean("linksToFiles");
-
-        getVertx().eventBus().consumer(CrawlMessages.DOWNLOADED, message -> {
+        storeCompressed = config().getBoolean("storeCompressed", false);
+        hashes = config().getBoolean("dedup", true) ? new LongLongHashMap() : null;
+        nearDuplicates = Math.min(config().getInteger("nearDuplicates", 0), SimHashIndex.MAX_DISTANCE);
+        simHashes = nearDuplicates > 0 ? new SimHashIndex() : null;
+        robots = config().getBoolean("robots", true);
+        userAgent = config().getString("userAgent", "vertx-crawler");
+        robotsCache = new RobotsCache(config().getInteger("robotsCacheSize", 1000), config().getInteger("robotsTtl", 3600) * 1000L);
+        robotsErrorTtl = config().getInteger("robotsErrorTtl", 60) * 1000L;
+        robotsOptions = CrawlMessages.robotsOptions(config());
+        foundOptions = CrawlMessages.foundOptions(config());
+        node = config().getInteger("node", 0);
+        shard = config().getInteger("shard", 0);
+        shards = config().getInteger("coordinators", 1) * config().getInteger("nodes", 1);
+        stateDir = shards > 1 ? rootDir.resolve(STATE_DIR).resolve(String.valueOf(shard)) : rootDir.resolve(STATE_DIR);
+        frontierWindow = config().getInteger("frontierWindow", 10000);
+        frontier = new Frontier(config().getString("frontierOrder", Frontier.DEPTH), stateDir.resolve(FRONTIER_DIR),
+                config().getInteger("frontierMemory", 1000000));
+        final Path validatorsDir = shards > 1 ? rootDir.resolve(VALIDATORS_DIR).resolve(String.valueOf(shard)) : rootDir.resolve(VALIDATORS_DIR);
+
+        final CrawlMetrics metrics = CrawlMetrics.of(getVertx());
+        final List<CrawlMetrics.Snapshot> gauges = Arrays.asList(
+                metrics.snapshot("crawler_backlog", () -> processed, "shard", String.valueOf(shard)),
+                metrics.snapshot("crawler_downloading", () -> downloading, "shard", String.valueOf(shard)),
+                metrics.snapshot("crawler_frontier_queued", () -> frontier.size(), "shard", String.valueOf(shard)),
+                metrics.snapshot("crawler_urls", () -> urls != null ? urls.urls() : 0, "shard", String.valueOf(shard)));
+        getVertx().setPeriodic(CrawlMetrics.SNAPSHOT_INTERVAL, timerId -> gauges.forEach(CrawlMetrics.Snapshot::update));
+
+        getVertx().eventBus().consumer(CrawlMessages.shard(CrawlMessages.DOWNLOADED, shard), message -> {
             final JsonObject messageJson = (JsonObject) message.body();
 
             log.info("Downloaded " + messageJson.getString("url") + " to " + messageJson.getString("file") + " with redirects " + messageJson.getJsonArray("redirects"));
 
+            downloadFinished();
+
             final String file = messageJson.getString("file");
-            final Integer level = files.get(file);
-            if (level == null) {
+            final int urlRecord = urls.find(messageJson.getString("url"));
+            if (urlRecord < 0) {
                 log.warn("Downloaded file " + file + " is not found");
                 return;
             }
+            final int level = urls.level(urlRecord);
 
             final String fromUrl;
             final JsonArray redirects = messageJson.getJsonArray("redirects");
             if (redirects != null && !redirects.isEmpty()) {
-                redirects.forEach(redirect -> urls.put((String) redirect, file));
+                redirects.forEach(redirect -> {
+                    urls.alias((String) redirect, urlRecord);
+                    record(CrawlJournal.redirect((String) redirect, file));
+                });
                 fromUrl = redirects.getString(redirects.size() - 1);
             } else {
                 fromUrl = messageJson.getString("url");
             }
 
-            baseUrls.put(file, fromUrl);
+            try {
+                urls.setBase(urlRecord, fromUrl);
+            } catch (IOException e) {
+                log.error("Cannot store base url of " + file, e);
+                processedUrl(file, urlRecord);
+                return;
+            }
+            final boolean notModified = messageJson.getBoolean("notModified", false);
+            final Long hash = notModified ? storedHash(messageJson.getString("url")) : messageJson.getLong("hash");
+            final Long simHash = messageJson.getLong("simHash");
+            record(CrawlJournal.downloaded(file, fromUrl, hash, simHash));
+
+            if (notModified) {
+                log.debug("Not modified " + messageJson.getString("url") + " is kept at " + file);
+            } else if (validators != null && messageJson.getLong("hash") != null) {
+                try {
+                    validators.put(messageJson.getString("url"), new ValidatorStore.Validator(file,
+                            messageJson.getString("etag"), messageJson.getString("lastModified"), messageJson.getLong("hash")));
+                } catch (IOException e) {
+                    log.error("Cannot store validators of " + file, e);
+                }
+            }
 
-            if (level < depth) {
-                getVertx().eventBus().send(CrawlMessages.PARSE, new JsonObject().put("file", file).put("url", fromUrl).put("level", level + 1));
-            } else {
+            final int duplicateRecord = duplicateOf(urlRecord, hash, simHash);
+            if (duplicateRecord >= 0 && urls.level(duplicateRecord) <= level) {
+                try {
+                    linkDuplicate(urlRecord, file, duplicateRecord, urls.file(duplicateRecord));
+                } catch (IOException e) {
+                    log.error("Cannot access stored url of " + file, e);
+                    processedUrl(file, urlRecord);
+                }
+                return;
+            }
+
+            if (level >= depth) {
                 log.debug(messageJson.getString("url") + " reach level " + level + " and will not to be parsed");
-                processedUrl();
+                processedUrl(file, urlRecord);
+                return;
             }
+
+            final JsonArray links = messageJson.getJsonArray("links");
+            expand(urlRecord, () -> {
+                // the level could be lowered while the page was waiting
+                final int finalLevel = urls.level(urlRecord);
+                if (links != null) {
+                    log.trace("Found " + links.size() + " urls in " + file + " during download");
+                    findUrls(links, fromUrl, file, finalLevel + 1, results -> processedUrl(file, urlRecord));
+                } else {
+                    parse(urlRecord, file, fromUrl, finalLevel, !notModified);
+                }
+            });
         });
 
-        getVertx().eventBus().consumer(CrawlMessages.URL_FOUND, message -> {
+        final Future<Void> urlFoundRegistered = Future.future();
+        getVertx().eventBus().consumer(CrawlMessages.shard(CrawlMessages.URL_FOUND, shard), message -> {
             log.trace("Found url " + message.body());
 
             final JsonObject messageJson = (JsonObject) message.body();
-            final String baseUrl = messageJson.getString("baseUrl");
-            final String baseFile = messageJson.getString("file");
-            final Optional<String> urlOpt = checkUrl(messageJson.getString("url"), baseUrl);
-
-            urlOpt.ifPresent(url -> {
-                final int level = messageJson.getInteger("level");
-                final String storedFile = urls.get(url);
-                if (storedFile != null) {
-                    final Integer storedLevel = files.get(storedFile);
-                    if (level < storedLevel) {
-                        files.put(storedFile, level);
-                        if (storedLevel >= depth && level < depth) {
-                            processed++;
-                            getVertx().eventBus().send(CrawlMessages.PARSE, new JsonObject()
-                                    .put("file", storedFile).put("url", baseUrls.get(storedFile)).put("level", level + 1));
-                        }
-                    }
+            findUrls(new JsonArray().add(messageJson.getString("url")), messageJson.getString("baseUrl"), messageJson.getString("file"),
+                    messageJson.getInteger("level"), results -> flushAcquired(flushed -> message.reply(results.getString(0))));
+        }).completionHandler(urlFoundRegistered.completer());
 
-                    message.reply(linksToFiles ? fileToUrl(storedFile, baseFile) : url);
-                } else {
-
-                    urlToPath(url).map(Path::toString).ifPresent(file -> {
-                        urls.put(url, file);
-                        files.put(file, level);
+        final Future<Void> urlsFoundRegistered = Future.future();
+        getVertx().eventBus().consumer(CrawlMessages.shard(CrawlMessages.URLS_FOUND, shard), message -> {
+            final JsonObject messageJson = (JsonObject) message.body();
+            final JsonArray foundUrls = messageJson.getJsonArray("urls");
 
-                        message.reply(linksToFiles ? fileToUrl(file, baseFile) : url);
-                        processed++;
-                        getVertx().eventBus().send(CrawlMessages.DOWNLOAD, new JsonObject().put("url", url).put("file", file));
-                    });
-                }
-            });
+            log.trace("Found " + foundUrls.size() + " urls in " + messageJson.getString("file"));
 
-            if (!urlOpt.isPresent()) {
-                message.reply(null);
-            }
-        });
+            findUrls(foundUrls, messageJson.getString("baseUrl"), messageJson.getString("file"), messageJson.getInteger("level"),
+                    results -> flushAcquired(flushed -> message.reply(results)));
+        }).completionHandler(urlsFoundRegistered.completer());
 
-        getVertx().eventBus().consumer(CrawlMessages.PARSED, message -> {
+        getVertx().eventBus().consumer(CrawlMessages.shard(CrawlMessages.PARSED, shard), message -> {
             log.trace("Parsed " + message.body());
-            processedUrl();
+            parsed((String) message.body());
         });
 
-        getVertx().eventBus().consumer(CrawlMessages.DOWNLOAD_FAILED, message -> {
+        getVertx().eventBus().consumer(CrawlMessages.shard(CrawlMessages.DOWNLOAD_FAILED, shard), message -> {
             log.trace("Download fail " + message.body());
-            processedUrl();
+            downloadFinished();
+            final JsonObject messageJson = (JsonObject) message.body();
+            recordFailure(messageJson);
+            processedUrl(messageJson.getString("file"), urls.find(messageJson.getString("url")));
         });
 
-        getVertx().eventBus().consumer(CrawlMessages.PARSE_FAILED, message -> {
+        getVertx().eventBus().consumer(CrawlMessages.shard(CrawlMessages.PARSE_FAILED, shard), message -> {
             log.trace("Parse fail " + message.body());
-            processedUrl();
+            parsed((String) message.body());
         });
 
-        getVertx().eventBus().send(CrawlMessages.URL_FOUND, new JsonObject().put("url", rootUrl).put("level", 0));
+        final boolean resume = config().getBoolean("resume", false);
+        final boolean retryFailed = resume && config().getBoolean("retryFailed", false);
+        getVertx().<CrawlState>executeBlocking(future -> {
+            try {
+                // the new crawling clears the state dir, so the url store is opened after that
+                journal = new CrawlJournal(stateDir, config().getInteger("journalSize", 64) * 1024L * 1024L);
+                journal.open(resume);
+                urls = new UrlStore(stateDir.resolve(URLS), config().getInteger("expectedUrls", 65536),
+                        config().getInteger("bloomFilter", 0), config().getInteger("urlCacheSize", 10000));
+                final CrawlState state = new CrawlState(urls, files);
+                if (resume) {
+                    CrawlJournal.load(stateDir, state);
+                }
+                if (retryFailed) {
+                    retryFailed(state);
+                }
+                // the failures of the previous runs are kept for re-running them later
+                failures = Files.newBufferedWriter(stateDir.resolve(FAILURES), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, resume && !retryFailed ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+                if (config().getBoolean("conditionalGet", true)) {
+                    validators = new ValidatorStore(validatorsDir);
+                    validators.open();
+                }
+                future.complete(state);
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, ar -> {
+            if (ar.failed()) {
+                log.error("Cannot open crawl state at " + stateDir, ar.cause());
+                getVertx().eventBus().publish(CrawlMessages.DONE, rootUrl);
+                startFuture.complete();
+                return;
+            }
+
+            getVertx().setPeriodic(1000, timerId -> flushJournal());
+
+            getVertx().sharedData().getCounter(PROCESSED_COUNTER, counter -> {
+                if (counter.failed()) {
+                    startFuture.fail(counter.cause());
+                    return;
+                }
+                processedCounter = counter.result();
+
+                // every coordinator holds one processing in the counter until it starts
+                final Future<Void> startRegistered = Future.future();
+                getVertx().eventBus().consumer(CrawlMessages.START, message -> {
+                    if (ar.result().size() == 0) {
+                        crawl();
+                    } else {
+                        resume(ar.result());
+                        processedUrl(null);
+                    }
+                }).completionHandler(startRegistered.completer());
+
+                // other nodes of the cluster must see the coordinator before the crawling starts
+                CompositeFuture.all(urlFoundRegistered, urlsFoundRegistered, startRegistered).setHandler(registered -> startFuture.complete());
+            });
+        });
     }
 
     @Override
     public void stop() throws Exception {
+        if (journal != null) {
+            journal.close();
+        }
+        frontier.close();
+        if (failures != null) {
+            failures.close();
+        }
+        if (validators != null) {
+            validators.close();
+        }
+        if (urls != null) {
+            urls.close();
+        }
+
         log.debug("stopped");
     }
 
+    protected void crawl() {
+        if (shardOf(rootUrl) != shard) {
+            processedUrl(null);
+            return;
+        }
+
+        getVertx().eventBus().send(CrawlMessages.shard(CrawlMessages.URL_FOUND, shard), new JsonObject().put("url", rootUrl).put("level", 0), foundOptions, reply -> {
+            if (reply.failed() || reply.result().body() == null) {
+                log.error("Url " + rootUrl + " cannot be crawled");
+            }
+            processedUrl(null);
+        });
+    }
+
+    protected void resume(CrawlState state) {
+        for (int record = 0; record < state.size(); record++) {
+            final int urlRecord = record;
+            if (state.hash(urlRecord) != null || state.simHash(urlRecord) != null) {
+                duplicateOf(urlRecord, state.hash(urlRecord), state.simHash(urlRecord));
+            }
+            if (state.state(urlRecord) == CrawlState.DONE) {
+                continue;
+            }
+
+            try {
+                final String file = urls.file(urlRecord);
+                if (state.isRetry(urlRecord)) {
+                    record(CrawlJournal.retry(file));
+                }
+
+                if (state.state(urlRecord) == CrawlState.QUEUED) {
+                    acquire(urlRecord);
+                    queue(urlRecord, urls.url(urlRecord));
+                } else if (urls.level(urlRecord) < depth) {
+                    final String baseUrl = urls.base(urlRecord);
+                    acquire(urlRecord);
+                    deferred.put(urlRecord, () -> parse(urlRecord, file, baseUrl, urls.level(urlRecord), true));
+                }
+            } catch (IOException e) {
+                log.error("Cannot restore url " + urlRecord, e);
+            }
+        }
+
+        // the levels of all restored urls are known only now
+        expandDeferred();
+        dispatch();
+
+        log.info("Resumed crawling of " + state.size() + " files, " + processed + " of them are not completed");
+    }
+
+    // the pages failed before are downloaded again
+    protected void retryFailed(CrawlState state) throws IOException {
+        final Path failuresFile = stateDir.resolve(FAILURES);
+        if (!Files.exists(failuresFile)) {
+            return;
+        }
+
+        int retried = 0;
+        try (BufferedReader reader = Files.newBufferedReader(failuresFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && state.retryFailed(new JsonObject(line).getString("file"))) {
+                    retried++;
+                }
+            }
+        }
+        log.info("Retry " + retried + " failed pages");
+    }
+
+    protected Long storedHash(String url) {
+        final ValidatorStore.Validator validator = validators != null ? validators.get(url) : null;
+        return validator != null ? validator.getHash() : null;
+    }
+
+    protected int duplicateOf(int urlRecord, Long hash, Long simHash) {
+        if (hashes != null && hash != null) {
+            final int hashRecord = (int) hashes.get(hash, -1);
+            if (hashRecord >= 0 && hashRecord != urlRecord) {
+                return hashRecord;
+            }
+            hashes.put(hash, urlRecord);
+        }
+
+        if (simHashes != null && simHash != null) {
+            final int simHashRecord = simHashes.find(simHash, nearDuplicates);
+            if (simHashRecord >= 0 && simHashRecord != urlRecord) {
+                return simHashRecord;
+            }
+            simHashes.add(simHash, urlRecord);
+        }
+
+        return -1;
+    }
+
+    protected void linkDuplicate(int urlRecord, String file, int originalRecord, String originalFile) {
+        if (deferred.containsKey(originalRecord) || parsing.containsKey(originalFile)) {
+            linking.computeIfAbsent(originalRecord, k -> new ArrayList<>()).add(() -> linkDuplicate(urlRecord, file, originalRecord, originalFile));
+            return;
+        }
+
+        log.info("Page " + file + " is a duplicate of " + originalFile + " and will not be parsed");
+
+        getVertx().executeBlocking(future -> {
+            try {
+                final Path path = Paths.get(file);
+                final Path temp = path.resolveSibling(path.getFileName() + ".link");
+                Files.deleteIfExists(temp);
+                Files.createLink(temp, Paths.get(originalFile));
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                future.complete();
+            } catch (IOException | UnsupportedOperationException e) {
+                future.fail(e);
+            }
+        }, ar -> {
+            if (ar.failed()) {
+                log.warn("Cannot link " + file + " to " + originalFile + ", the copy is kept", ar.cause());
+            }
+            processedUrl(file, urlRecord);
+        });
+    }
+
+    protected void parse(int urlRecord, String file, String baseUrl, int level, boolean rewrite) {
+        parsing.put(file, urlRecord);
+        getVertx().eventBus().send(CrawlMessages.node(CrawlMessages.PARSE, node), new JsonObject()
+                .put("file", file).put("url", baseUrl).put("level", level + 1).put("shard", shard).put("rewrite", rewrite));
+    }
+
+    protected void parsed(String file) {
+        final Integer urlRecord = parsing.remove(file);
+        processedUrl(file, urlRecord != null ? urlRecord : -1);
+    }
+
+    // links of the page are looked for when no page of the level above the previous one can find it again
+    protected void expand(int urlRecord, Runnable expansion) {
+        if (frontier.isFinal(urls.level(urlRecord))) {
+            expansion.run();
+        } else {
+            deferred.put(urlRecord, expansion);
+        }
+    }
+
+    protected void expandDeferred() {
+        final int lowestLevel = frontier.lowestOpenLevel();
+        if (deferred.isEmpty() || lowestLevel == deferredLevel) {
+            return;
+        }
+        deferredLevel = lowestLevel;
+
+        final List<Runnable> expansions = new ArrayList<>();
+        final Iterator<Map.Entry<Integer, Runnable>> iterator = deferred.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Integer, Runnable> entry = iterator.next();
+            if (frontier.isFinal(urls.level(entry.getKey()))) {
+                expansions.add(entry.getValue());
+                iterator.remove();
+            }
+        }
+        expansions.forEach(Runnable::run);
+    }
+
+    protected void queue(int urlRecord, String url) {
+        String host;
+        try {
+            host = new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            host = "";
+        }
+        frontier.add(urlRecord, urls.level(urlRecord), host);
+
+        // the host is resolved while its first url waits in the frontier
+        if (hosts.add(host) && !host.isEmpty()) {
+            getVertx().eventBus().send(CrawlMessages.node(CrawlMessages.RESOLVE, node), host);
+        }
+    }
+
+    protected void dispatch() {
+        int urlRecord;
+        while (downloading < frontierWindow && (urlRecord = frontier.poll()) >= 0) {
+            final String url;
+            final String file;
+            try {
+                url = urls.url(urlRecord);
+                file = urls.file(urlRecord);
+            } catch (IOException e) {
+                log.error("Cannot access stored url of the record " + urlRecord, e);
+                frontier.close(urlRecord, urls.level(urlRecord));
+                processed--;
+                processedUrl(null);
+                continue;
+            }
+
+            final JsonObject task = new JsonObject().put("url", url).put("file", file).put("shard", shard);
+            final ValidatorStore.Validator validator = validators != null ? validators.get(url) : null;
+            if (validator != null && file.equals(validator.getFile())) {
+                task.put("etag", validator.getEtag()).put("lastModified", validator.getLastModified());
+            }
+
+            downloading++;
+            getVertx().eventBus().send(CrawlMessages.node(CrawlMessages.DOWNLOAD, node), task);
+        }
+    }
+
+    protected void downloadFinished() {
+        downloading--;
+        dispatch();
+    }
+
+    protected void record(JsonObject record) {
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            if (journal.append(record)) {
+                journal.rotate();
+                compactJournal();
+            }
+        } catch (IOException e) {
+            log.error("Cannot write to the crawl journal", e);
+        }
+    }
+
+    protected void recordFailure(JsonObject result) {
+        if (failures == null) {
+            return;
+        }
+
+        final JsonObject failure = result.copy().put("time", System.currentTimeMillis());
+        failure.remove("shard");
+        try {
+            failures.write(failure.encode());
+            failures.newLine();
+        } catch (IOException e) {
+            log.error("Cannot write to the failure log", e);
+        }
+    }
+
+    protected void compactJournal() {
+        if (compacting) {
+            return;
+        }
+
+        compacting = true;
+        getVertx().executeBlocking(future -> {
+            try {
+                CrawlJournal.compact(stateDir);
+                future.complete();
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, ar -> {
+            compacting = false;
+            if (ar.failed()) {
+                log.error("Cannot compact the crawl journal", ar.cause());
+            }
+        });
+    }
+
+    protected void flushJournal() {
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            journal.flush();
+            failures.flush();
+            if (validators != null) {
+                validators.flush();
+            }
+        } catch (IOException e) {
+            log.error("Cannot flush the crawl journal", e);
+        }
+    }
+
+    protected void findUrls(JsonArray foundUrls, String baseUrl, String baseFile, int level, Handler<JsonArray> handler) {
+        if (foundUrls.isEmpty()) {
+            handler.handle(new JsonArray());
+            return;
+        }
+
+        final String[] results = new String[foundUrls.size()];
+        final int[] counter = new int[1];
+        final Handler<Void> completed = v -> {
+            if (++counter[0] == results.length) {
+                handler.handle(new JsonArray(Arrays.asList((Object[]) results)));
+            }
+        };
+
+        final String[] checkedUrls = new String[foundUrls.size()];
+        final Map<Integer, List<Integer>> foreignUrls = new HashMap<>();
+        for (int i = 0; i < foundUrls.size(); i++) {
+            final int index = i;
+            final Optional<String> urlOpt = checkUrl(foundUrls.getString(i), baseUrl);
+            if (!urlOpt.isPresent()) {
+                completed.handle(null);
+                continue;
+            }
+
+            checkedUrls[i] = urlOpt.get();
+            final int urlShard = shardOf(checkedUrls[i]);
+            if (urlShard == shard) {
+                findUrl(checkedUrls[i], baseFile, level, result -> {
+                    results[index] = result;
+                    completed.handle(null);
+                });
+            } else {
+                foreignUrls.computeIfAbsent(urlShard, key -> new ArrayList<>()).add(index);
+            }
+        }
+
+        foreignUrls.forEach((urlShard, indexes) -> {
+            final JsonArray shardUrls = new JsonArray();
+            indexes.forEach(index -> shardUrls.add(checkedUrls[index]));
+
+            getVertx().eventBus().send(CrawlMessages.shard(CrawlMessages.URLS_FOUND, urlShard), new JsonObject()
+                    .put("urls", shardUrls).put("baseUrl", baseUrl).put("file", baseFile).put("level", level), foundOptions, ar -> {
+                if (ar.failed()) {
+                    log.error("Cannot pass " + shardUrls.size() + " urls to the coordinator " + urlShard, ar.cause());
+                }
+
+                for (int i = 0; i < indexes.size(); i++) {
+                    results[indexes.get(i)] = ar.succeeded() ? ((JsonArray) ar.result().body()).getString(i) : null;
+                    completed.handle(null);
+                }
+            });
+        });
+    }
+
+    protected void findUrl(String url, String baseFile, int level, Handler<String> handler) {
+        checkRobots(url, allowed -> {
+            if (allowed) {
+                handler.handle(urlFound(url, baseFile, level));
+            } else {
+                log.debug("Url " + url + " is disallowed by robots.txt");
+                handler.handle(null);
+            }
+        });
+    }
+
+    protected int shardOf(String url) {
+        try {
+            return Math.floorMod(new URL(url).getHost().hashCode(), shards);
+        } catch (MalformedURLException e) {
+            return shard;
+        }
+    }
+
+    protected String urlFound(String url, String baseFile, int level) {
+        try {
+            final int urlRecord = urls.find(url);
+            if (urlRecord >= 0) {
+                frontier.linked(urlRecord);
+                final int storedLevel = urls.level(urlRecord);
+                if (level < storedLevel) {
+                    urls.setLevel(urlRecord, level);
+                    frontier.setLevel(urlRecord, storedLevel, level);
+                    final String storedFile = urls.file(urlRecord);
+                    // the page which is not finished yet is parsed at the new level anyway, the finished one only if it was too deep
+                    final boolean parse = storedLevel >= depth && level < depth && !frontier.isOpen(urlRecord);
+                    record(CrawlJournal.level(storedFile, level, parse));
+                    if (parse) {
+                        acquire(urlRecord);
+                        final String baseUrl = urls.base(urlRecord);
+                        expand(urlRecord, () -> parse(urlRecord, storedFile, baseUrl, urls.level(urlRecord), true));
+                    } else if (deferred.containsKey(urlRecord) && frontier.isFinal(level)) {
+                        deferred.remove(urlRecord).run();
+                    }
+                }
+
+                return linksToFiles ? fileToUrl(urls.file(urlRecord), baseFile) : url;
+            }
+
+            final Optional<String> fileOpt = urlToPath(url).map(Path::toString);
+            if (!fileOpt.isPresent()) {
+                return null;
+            }
+
+            final String file = fileOpt.get();
+            addFile(file);
+            final int newRecord = urls.add(url, file, level);
+            record(CrawlJournal.queued(url, file, level));
+
+            acquire(newRecord);
+            queue(newRecord, url);
+            dispatch();
+
+            return linksToFiles ? fileToUrl(file, baseFile) : url;
+        } catch (IOException e) {
+            log.error("Cannot access stored url " + url, e);
+            return null;
+        }
+    }
+
+    protected void checkRobots(String urlString, Handler<Boolean> handler) {
+        if (!robots) {
+            handler.handle(true);
+            return;
+        }
+
+        final URL url;
+        try {
+            url = new URL(urlString);
+        } catch (MalformedURLException e) {
+            handler.handle(false);
+            return;
+        }
+
+        final String origin = url.getProtocol() + "://" + url.getAuthority();
+        final String path = url.getFile();
+
+        final RobotsRules rules = robotsCache.get(origin, System.currentTimeMillis());
+        if (rules != null) {
+            handler.handle(rules.isAllowed(path));
+            return;
+        }
+
+        final List<Handler<RobotsRules>> waiters = robotsWaiters.get(origin);
+        if (waiters != null) {
+            waiters.add(robotsRules -> handler.handle(robotsRules.isAllowed(path)));
+            return;
+        }
+
+        final List<Handler<RobotsRules>> newWaiters = new ArrayList<>();
+        newWaiters.add(robotsRules -> handler.handle(robotsRules.isAllowed(path)));
+        robotsWaiters.put(origin, newWaiters);
+
+        getVertx().eventBus().send(CrawlMessages.node(CrawlMessages.ROBOTS, node), origin + "/robots.txt", robotsOptions, ar -> {
+            final RobotsRules robotsRules;
+            if (ar.succeeded()) {
+                robotsRules = RobotsRules.parse((String) ar.result().body(), userAgent);
+                robotsCache.put(origin, robotsRules, System.currentTimeMillis());
+            } else {
+                // unreachable robots.txt disallows everything until it is requested again
+                log.warn("Cannot get robots.txt of " + origin + ", the crawling of it is disallowed for " + robotsErrorTtl / 1000 + " s", ar.cause());
+                robotsRules = RobotsRules.DISALLOW_ALL;
+                robotsCache.put(origin, robotsRules, System.currentTimeMillis(), robotsErrorTtl);
+            }
+
+            if (robotsRules.getCrawlDelay() > 0) {
+                log.info("Crawl-delay of " + origin + " is " + robotsRules.getCrawlDelay() + " ms");
+                getVertx().eventBus().publish(CrawlMessages.HOST_DELAY, new JsonObject().put("host", url.getHost()).put("delay", robotsRules.getCrawlDelay()));
+            }
+
+            robotsWaiters.remove(origin).forEach(waiter -> waiter.handle(robotsRules));
+        });
+    }
+
     protected final Pattern ulrPattern = Pattern.compile("[\u0001-\u001f<>:\"\\\\|?*\u007f]+");
 
     protected Optional<Path> urlToPath(String urlString) {
@@ -155,7 +774,8 @@ public class CrawlerVehicle extends AbstractVerticle {
 
     protected Path urlToPath(URL url) {
         final Path path = rootDir.resolve(ulrPattern.matcher(url.getHost() + url.getPath()).replaceAll("")).toAbsolutePath();
-        return checkPath(checkExtension(path));
+        final Path htmlPath = checkExtension(path);
+        return checkPath(storeCompressed ? htmlPath.resolveSibling(htmlPath.getFileName() + GzipWriteStream.GZIP_EXTENSION) : htmlPath);
     }
 
     protected Path checkExtension(Path path) {
@@ -171,9 +791,10 @@ public class CrawlerVehicle extends AbstractVerticle {
     protected Path checkPath(Path path) {
         final String pathString = path.toString();
 
-        if (files.containsKey(pathString)) {
+        if (files.contains(Fingerprint.of(pathString))) {
             final String name = path.getFileName().toString();
-            final int extensionIndex = name.lastIndexOf('.');
+            final int extensionIndex = name.endsWith(GzipWriteStream.GZIP_EXTENSION)
+                    ? name.lastIndexOf('.', name.length() - GzipWriteStream.GZIP_EXTENSION.length() - 1) : name.lastIndexOf('.');
             final String newName;
             if (extensionIndex > -1) {
                 newName = generateNewName(name.substring(0, extensionIndex), pathString) + name.substring(extensionIndex);
@@ -186,6 +807,10 @@ public class CrawlerVehicle extends AbstractVerticle {
         return path;
     }
 
+    protected void addFile(String file) {
+        files.add(Fingerprint.of(file));
+    }
+
     protected String generateNewName(String name, String pathString) {
         final Integer count = names.get(pathString);
         final Integer newCount = count == null ? 1 : count + 1;
@@ -245,10 +870,51 @@ public class CrawlerVehicle extends AbstractVerticle {
         return Paths.get(baseFile).getParent().relativize(Paths.get(file)).toString();
     }
 
-    protected void processedUrl() {
-        if (--processed <= 0) {
-            log.info("Crawling the " + rootUrl + " is done");
-            getVertx().eventBus().publish(CrawlMessages.DONE, rootUrl);
+    protected void acquire(int urlRecord) {
+        processed++;
+        acquired++;
+        frontier.open(urlRecord, urls.level(urlRecord));
+    }
+
+    protected void flushAcquired(Handler<Void> handler) {
+        if (acquired == 0) {
+            handler.handle(null);
+            return;
+        }
+
+        // urls taken by this coordinator must be counted before the sender releases its page
+        final int delta = acquired;
+        acquired = 0;
+        processedCounter.addAndGet(delta, ar -> handler.handle(null));
+    }
+
+    protected void processedUrl(String file, int urlRecord) {
+        if (urlRecord >= 0) {
+            frontier.close(urlRecord, urls.level(urlRecord));
+            final List<Runnable> duplicates = linking.remove(urlRecord);
+            if (duplicates != null) {
+                duplicates.forEach(Runnable::run);
+            }
+        }
+        processedUrl(file);
+        expandDeferred();
+        dispatch();
+    }
+
+    protected void processedUrl(String file) {
+        if (file != null) {
+            record(CrawlJournal.done(file));
+            processed--;
         }
+
+        final int delta = acquired - 1;
+        acquired = 0;
+        processedCounter.addAndGet(delta, ar -> {
+            if (ar.succeeded() && ar.result() == 0) {
+                flushJournal();
+                log.info("Crawling the " + rootUrl + " is done");
+                getVertx().eventBus().publish(CrawlMessages.DONE, rootUrl);
+            }
+        });
     }
 }
@@ -0,0 +1,66 @@
+package org.jmmo.crawler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DiskQueue implements Closeable {
+
+    protected final Path file;
+    protected BufferedWriter writer;
+    protected BufferedReader reader;
+    protected boolean dirty;
+    protected long size;
+
+    public DiskQueue(Path file) throws IOException {
+        this.file = file;
+        open();
+    }
+
+    public void add(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        dirty = true;
+        size++;
+    }
+
+    public String poll() throws IOException {
+        if (size == 0) {
+            return null;
+        }
+
+        if (dirty) {
+            writer.flush();
+            dirty = false;
+        }
+
+        final String line = reader.readLine();
+        if (--size == 0) {
+            close();
+            open();
+        }
+
+        return line;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        reader.close();
+    }
+
+    protected void open() throws IOException {
+        Files.createDirectories(file.getParent());
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        reader = new BufferedReader(new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,112 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DnsCache {
+
+    protected final Resolver resolver;
+    protected final long ttl;
+    protected final long negativeTtl;
+    protected final Map<String, Entry> entries;
+    // the requests for a host being resolved wait for the same lookup
+    protected final Map<String, List<Handler<AsyncResult<InetAddress>>>> waiters = new HashMap<>();
+    protected long hits;
+    protected long misses;
+    protected long failures;
+
+    public DnsCache(Resolver resolver, int maxSize, long ttl, long negativeTtl) {
+        this.resolver = resolver;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public void resolve(String host, Handler<AsyncResult<InetAddress>> handler) {
+        final Entry entry = entries.get(host);
+        if (entry != null) {
+            if (entry.expires > now()) {
+                hits++;
+                handler.handle(entry.address != null ? Future.succeededFuture(entry.address) : Future.failedFuture(entry.cause));
+                return;
+            }
+            entries.remove(host);
+        }
+
+        final List<Handler<AsyncResult<InetAddress>>> hostWaiters = waiters.get(host);
+        if (hostWaiters != null) {
+            hits++;
+            hostWaiters.add(handler);
+            return;
+        }
+
+        misses++;
+        final List<Handler<AsyncResult<InetAddress>>> newWaiters = new ArrayList<>();
+        newWaiters.add(handler);
+        waiters.put(host, newWaiters);
+
+        resolver.resolve(host, ar -> {
+            if (ar.succeeded()) {
+                entries.put(host, new Entry(ar.result(), null, now() + ttl));
+            } else {
+                failures++;
+                entries.put(host, new Entry(null, ar.cause(), now() + negativeTtl));
+            }
+            waiters.remove(host).forEach(waiter -> waiter.handle(ar));
+        });
+    }
+
+    // the lookup is started early for the address to be cached when the first request goes
+    public void prefetch(String host) {
+        resolve(host, ar -> {});
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    public interface Resolver {
+        void resolve(String host, Handler<AsyncResult<InetAddress>> handler);
+    }
+
+    protected static class Entry {
+        final InetAddress address;
+        final Throwable cause;
+        final long expires;
+
+        Entry(InetAddress address, Throwable cause, long expires) {
+            this.address = address;
+            this.cause = cause;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.buffer.Buffer;
+
+public class Fingerprint {
+    public static final long SEED = 0xcbf29ce484222325L;
+
+    public static long of(CharSequence value) {
+        long hash = SEED;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return mix(hash);
+    }
+
+    public static long update(long hash, Buffer buffer) {
+        for (int i = 0; i < buffer.length(); i++) {
+            hash ^= buffer.getByte(i) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
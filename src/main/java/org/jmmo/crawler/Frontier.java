@@ -0,0 +1,347 @@
+package org.jmmo.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class Frontier implements Closeable {
+    public static final String BFS = "bfs";
+    public static final String DEPTH = "depth";
+    public static final String INLINKS = "inlinks";
+    public static final String HOST = "host";
+    // the levels are stored by bytes
+    public static final int MAX_LEVEL = Byte.MAX_VALUE;
+
+    private static final Logger log = LoggerFactory.getLogger(Frontier.class);
+
+    protected final String order;
+
+    // the keys are the priority in the high half and the record in the low one, so equal priorities keep the order of finding
+    protected long[] heap = new long[1024];
+    protected int heapSize;
+    protected long[] keys = new long[1024];
+    protected final BitSet queued = new BitSet();
+    protected int size;
+
+    protected int[] inlinks;
+    protected final Map<String, Integer> hostUrls = new HashMap<>();
+
+    // the urls which are taken but not finished yet by their levels, only they can find urls of lower levels
+    protected final BitSet opened = new BitSet();
+    protected final int[] openLevels = new int[MAX_LEVEL + 1];
+
+    // the entries over the memory limit are spilled to the files of their priorities, the lowest ones are read back first
+    protected final Path dir;
+    protected final int memoryLimit;
+    protected final TreeMap<Integer, DiskQueue> bands = new TreeMap<>();
+    protected boolean spilling;
+
+    public Frontier(String order) {
+        this(order, null, Integer.MAX_VALUE);
+    }
+
+    public Frontier(String order, Path dir, int memoryLimit) {
+        if (!BFS.equals(order) && !DEPTH.equals(order) && !INLINKS.equals(order) && !HOST.equals(order)) {
+            throw new IllegalArgumentException("Unknown order of the frontier " + order);
+        }
+        this.order = order;
+        this.dir = dir;
+        this.memoryLimit = Math.max(2, memoryLimit);
+        inlinks = INLINKS.equals(order) ? new int[1024] : null;
+        spilling = dir != null;
+
+        // the bands of the previous run are rebuilt from the journal
+        if (dir != null && Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            } catch (IOException e) {
+                log.warn("Cannot clean the frontier directory " + dir, e);
+            }
+        }
+    }
+
+    public void open(int record, int level) {
+        if (!opened.get(record)) {
+            opened.set(record);
+            openLevels[level]++;
+        }
+    }
+
+    public void close(int record, int level) {
+        if (opened.get(record)) {
+            opened.clear(record);
+            openLevels[level]--;
+        }
+    }
+
+    public boolean isOpen(int record) {
+        return opened.get(record);
+    }
+
+    public int lowestOpenLevel() {
+        for (int level = 0; level < openLevels.length; level++) {
+            if (openLevels[level] > 0) {
+                return level;
+            }
+        }
+        return openLevels.length;
+    }
+
+    // the level of an url is final when no url two levels above it can be parsed anymore
+    public boolean isFinal(int level) {
+        return lowestOpenLevel() >= level - 1;
+    }
+
+    public void add(int record, int level, String host) {
+        final int priority;
+        switch (order) {
+            case INLINKS:
+                priority = -inlinksOf(record);
+                break;
+            case HOST:
+                // every host gives its next url after all hosts have given as many
+                priority = hostUrls.merge(host, 1, Integer::sum) - 1;
+                break;
+            default:
+                priority = level;
+        }
+
+        if (!queued.get(record)) {
+            queued.set(record);
+            size++;
+        }
+        push(record, priority);
+    }
+
+    public void setLevel(int record, int from, int to) {
+        if (opened.get(record)) {
+            openLevels[from]--;
+            openLevels[to]++;
+        }
+        if (queued.get(record) && (BFS.equals(order) || DEPTH.equals(order))) {
+            push(record, to);
+        }
+    }
+
+    public void linked(int record) {
+        if (inlinks == null) {
+            return;
+        }
+
+        if (record >= inlinks.length) {
+            inlinks = Arrays.copyOf(inlinks, Math.max(record + 1, inlinks.length + (inlinks.length >> 1)));
+        }
+        inlinks[record]++;
+        if (queued.get(record)) {
+            push(record, -inlinks[record]);
+        }
+    }
+
+    // breadth first order takes urls of the next level only after all urls of the previous one are finished
+    public int poll() {
+        while (heapSize > 0 || !bands.isEmpty()) {
+            if (heapSize == 0) {
+                load();
+                continue;
+            }
+
+            final long key = heap[0];
+            final int record = (int) key;
+            if (!queued.get(record) || keys[record] != key) {
+                pop();
+                continue;
+            }
+
+            if (BFS.equals(order) && (int) (key >> 32) > lowestOpenLevel()) {
+                return -1;
+            }
+
+            pop();
+            queued.clear(record);
+            size--;
+            return record;
+        }
+
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int spilledBands() {
+        return bands.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DiskQueue band : bands.values()) {
+            band.close();
+            Files.deleteIfExists(band.file);
+        }
+        bands.clear();
+    }
+
+    protected int inlinksOf(int record) {
+        return record < inlinks.length ? inlinks[record] : 0;
+    }
+
+    protected void push(int record, int priority) {
+        if (record >= keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(record + 1, keys.length + (keys.length >> 1)));
+        }
+        final long key = (long) priority << 32 | record;
+        keys[record] = key;
+
+        if (!bands.isEmpty() && priority >= bands.firstKey() && spill(priority, key)) {
+            return;
+        }
+
+        insert(key);
+        if (spilling && heapSize > memoryLimit) {
+            spillTop();
+        }
+    }
+
+    protected void insert(long key) {
+        // the entries of changed priorities are left in the heap and skipped, they are dropped when there are too many
+        if (heapSize == heap.length) {
+            if (heapSize > 2 * size) {
+                compact();
+            } else {
+                heap = Arrays.copyOf(heap, heap.length << 1);
+            }
+        }
+
+        int index = heapSize++;
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    protected void pop() {
+        final long last = heap[--heapSize];
+        if (heapSize == 0) {
+            return;
+        }
+
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = last;
+    }
+
+    // the upper half of the sorted entries goes to the disk, so the entries in memory are never after the spilled ones
+    protected void spillTop() {
+        compact();
+        final int half = memoryLimit / 2;
+        if (heapSize <= half) {
+            return;
+        }
+
+        int index = half;
+        while (index < heapSize && spill((int) (heap[index] >> 32), heap[index])) {
+            index++;
+        }
+        // the entries which cannot be spilled stay in memory, the array is still sorted
+        System.arraycopy(heap, index, heap, half, heapSize - index);
+        heapSize = half + heapSize - index;
+    }
+
+    protected boolean spill(int priority, long key) {
+        if (!spilling) {
+            return false;
+        }
+
+        try {
+            DiskQueue band = bands.get(priority);
+            if (band == null) {
+                band = new DiskQueue(dir.resolve("band" + priority + ".txt"));
+                bands.put(priority, band);
+            }
+            band.add(Long.toString(key));
+            return true;
+        } catch (IOException e) {
+            log.error("Cannot spill the frontier to " + dir + ", it is kept in memory", e);
+            spilling = false;
+            return false;
+        }
+    }
+
+    // the lowest band is read back by the half of the memory limit, its entries are the next ones
+    protected void load() {
+        final Map.Entry<Integer, DiskQueue> lowest = bands.firstEntry();
+        final DiskQueue band = lowest.getValue();
+        try {
+            for (int i = 0; i < memoryLimit / 2 && !band.isEmpty(); i++) {
+                final long key = Long.parseLong(band.poll());
+                final int record = (int) key;
+                if (queued.get(record) && keys[record] == key) {
+                    insert(key);
+                }
+            }
+            if (!band.isEmpty()) {
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            // the records of the lost band are found in memory by their keys, the doubled ones are skipped when polled
+            log.error("Cannot read the frontier band " + lowest.getKey() + " from " + dir, e);
+            for (int record = queued.nextSetBit(0); record >= 0; record = queued.nextSetBit(record + 1)) {
+                if ((int) (keys[record] >> 32) == lowest.getKey()) {
+                    insert(keys[record]);
+                }
+            }
+        }
+
+        bands.remove(lowest.getKey());
+        try {
+            band.close();
+            Files.deleteIfExists(band.file);
+        } catch (IOException e) {
+            log.warn("Cannot delete the frontier band " + band.file, e);
+        }
+    }
+
+    protected void compact() {
+        final long[] entries = Arrays.copyOf(heap, heapSize);
+        heapSize = 0;
+        for (long key : entries) {
+            final int record = (int) key;
+            if (queued.get(record) && keys[record] == key) {
+                heap[heapSize++] = key;
+            }
+        }
+        // the sorted array is a heap already
+        Arrays.sort(heap, 0, heapSize);
+    }
+}
@@ -0,0 +1,83 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+public class GzipWriteStream implements WriteStream<Buffer> {
+    public static final String GZIP_EXTENSION = ".gz";
+
+    protected final WriteStream<Buffer> delegate;
+    protected final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    protected final GZIPOutputStream gzip;
+
+    public GzipWriteStream(WriteStream<Buffer> delegate) {
+        this.delegate = delegate;
+        try {
+            gzip = new GZIPOutputStream(compressed, 8192);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+        delegate.exceptionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public WriteStream<Buffer> write(Buffer data) {
+        try {
+            gzip.write(data.getBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        drain();
+        return this;
+    }
+
+    public void finish() {
+        try {
+            gzip.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        drain();
+    }
+
+    @Override
+    public void end() {
+        finish();
+        delegate.end();
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+        delegate.setWriteQueueMaxSize(maxSize);
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        return delegate.writeQueueFull();
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+        delegate.drainHandler(handler);
+        return this;
+    }
+
+    protected void drain() {
+        if (compressed.size() > 0) {
+            delegate.write(Buffer.buffer(compressed.toByteArray()));
+            compressed.reset();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.jmmo.crawler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class HostController {
+    // the latency is rising when its average exceeds the lowest one so many times and by the slack
+    public static final double LATENCY_FACTOR = 2;
+    public static final long LATENCY_SLACK = 50;
+    public static final double LATENCY_WEIGHT = 0.2;
+    public static final long MAX_BACKOFF = 60000;
+
+    protected final Map<String, Window> windows = new HashMap<>();
+    protected final int maxConcurrency;
+    protected final long retryDelay;
+
+    public HostController(int maxConcurrency, long retryDelay) {
+        this.maxConcurrency = maxConcurrency;
+        this.retryDelay = retryDelay;
+    }
+
+    public int concurrencyOf(String host) {
+        final Window window = windows.get(host);
+        return window == null ? 1 : (int) window.limit;
+    }
+
+    public long backoffOf(String host) {
+        final Window window = windows.get(host);
+        return window == null ? 0 : window.backoff;
+    }
+
+    // the epoch tells whether the request was started after the last decrease
+    public int started(String host) {
+        return windows.computeIfAbsent(host, key -> new Window()).epoch;
+    }
+
+    public void succeeded(String host, int epoch, long latency) {
+        final Window window = windows.computeIfAbsent(host, key -> new Window());
+        window.minLatency = Math.min(window.minLatency, latency);
+        window.latency = window.latency < 0 ? latency : window.latency + LATENCY_WEIGHT * (latency - window.latency);
+        window.failures = 0;
+
+        if (window.latency > window.minLatency * LATENCY_FACTOR + LATENCY_SLACK) {
+            decrease(window, epoch);
+        } else if (window.backoff > 0) {
+            window.backoff /= 2;
+        } else if (window.slowStart) {
+            window.limit = Math.min(maxConcurrency, window.limit + 1);
+        } else {
+            window.limit = Math.min(maxConcurrency, window.limit + 1 / window.limit);
+        }
+    }
+
+    // returns how long the host must not be requested
+    public long failed(String host, int epoch, long retryAfter) {
+        final Window window = windows.computeIfAbsent(host, key -> new Window());
+        window.failures++;
+        decrease(window, epoch);
+
+        if (retryAfter >= 0) {
+            return retryAfter;
+        }
+        return window.limit <= 1 ? Math.min(MAX_BACKOFF, retryDelay << Math.min(window.failures - 1, 16)) : 0;
+    }
+
+    protected void decrease(Window window, int epoch) {
+        // the requests started before the last decrease cannot tell whether it was enough
+        if (epoch != window.epoch) {
+            return;
+        }
+
+        window.slowStart = false;
+        window.epoch++;
+        if (window.limit >= 2) {
+            window.limit = Math.max(1, window.limit / 2);
+        } else {
+            window.backoff = Math.min(MAX_BACKOFF, Math.max(retryDelay, window.backoff * 2));
+        }
+    }
+
+    protected static class Window {
+        double limit = 1;
+        boolean slowStart = true;
+        int epoch;
+        double latency = -1;
+        long minLatency = Long.MAX_VALUE;
+        long backoff;
+        int failures;
+    }
+}
@@ -0,0 +1,171 @@
+package org.jmmo.crawler;
+
+import java.util.*;
+
+public class HostScheduler<T> {
+
+    protected final Map<String, Host<T>> hosts = new HashMap<>();
+    protected final PriorityQueue<Host<T>> ready = new PriorityQueue<>((h1, h2) -> Long.compare(h1.nextTime, h2.nextTime));
+    protected final Map<String, Long> delays = new HashMap<>();
+    protected final Map<String, Integer> concurrencies = new HashMap<>();
+    protected final Map<String, Long> backoffs = new HashMap<>();
+
+    protected final long defaultDelay;
+    protected final int defaultConcurrency;
+
+    protected int size;
+
+    public HostScheduler(long defaultDelay, int defaultConcurrency) {
+        this.defaultDelay = defaultDelay;
+        this.defaultConcurrency = defaultConcurrency;
+    }
+
+    public void add(String host, T task) {
+        final Host<T> entry = hosts.computeIfAbsent(host, Host::new);
+        entry.tasks.addLast(task);
+        size++;
+        checkReady(entry);
+    }
+
+    // the retried task goes before the others of its host
+    public void addFirst(String host, T task) {
+        final Host<T> entry = hosts.computeIfAbsent(host, Host::new);
+        entry.tasks.addFirst(task);
+        size++;
+        checkReady(entry);
+    }
+
+    public void pause(String host, long until) {
+        final Host<T> entry = hosts.computeIfAbsent(host, Host::new);
+        if (entry.nextTime >= until) {
+            return;
+        }
+
+        if (entry.queued) {
+            ready.remove(entry);
+        }
+        entry.nextTime = until;
+        if (entry.queued) {
+            ready.add(entry);
+        }
+    }
+
+    public T poll(long now) {
+        Host<T> entry;
+        while ((entry = ready.peek()) != null && entry.nextTime <= now) {
+            ready.poll();
+            entry.queued = false;
+
+            if (entry.active >= concurrencyOf(entry.name)) {
+                continue;
+            }
+
+            entry.active++;
+            entry.nextTime = now + delayOf(entry.name) + backoffs.getOrDefault(entry.name, 0L);
+            size--;
+
+            final T task = entry.tasks.pollFirst();
+            checkReady(entry);
+            return task;
+        }
+
+        return null;
+    }
+
+    public void release(String host) {
+        final Host<T> entry = hosts.get(host);
+        if (entry == null) {
+            return;
+        }
+
+        entry.active--;
+        checkReady(entry);
+    }
+
+    public long nextTime() {
+        final Host<T> entry = ready.peek();
+        return entry == null ? -1 : entry.nextTime;
+    }
+
+    // idle hosts are dropped, only their settings which differ from the defaults are kept
+    public void purge(long now) {
+        hosts.values().removeIf(entry -> entry.tasks.isEmpty() && entry.active <= 0 && entry.nextTime <= now);
+    }
+
+    public void setDelay(String host, long delay) {
+        if (delay != defaultDelay) {
+            delays.put(host, delay);
+        } else {
+            delays.remove(host);
+        }
+    }
+
+    public long delayOf(String host) {
+        return delays.getOrDefault(host, defaultDelay);
+    }
+
+    public void setBackoff(String host, long backoff) {
+        if (backoff > 0) {
+            backoffs.put(host, backoff);
+        } else {
+            backoffs.remove(host);
+        }
+    }
+
+    public void setConcurrency(String host, int concurrency) {
+        if (concurrency != defaultConcurrency) {
+            concurrencies.put(host, concurrency);
+        } else {
+            concurrencies.remove(host);
+        }
+        final Host<T> entry = hosts.get(host);
+        if (entry != null) {
+            checkReady(entry);
+        }
+    }
+
+    public int concurrencyOf(String host) {
+        return concurrencies.getOrDefault(host, defaultConcurrency);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int hosts() {
+        return hosts.size();
+    }
+
+    public int settings() {
+        return delays.size() + concurrencies.size() + backoffs.size();
+    }
+
+    public Map<String, Integer> queueDepths() {
+        final Map<String, Integer> depths = new TreeMap<>();
+        hosts.values().forEach(entry -> {
+            if (!entry.tasks.isEmpty()) {
+                depths.put(entry.name, entry.tasks.size());
+            }
+        });
+        return depths;
+    }
+
+    protected void checkReady(Host<T> entry) {
+        if (!entry.queued && !entry.tasks.isEmpty() && entry.active < concurrencyOf(entry.name)) {
+            entry.queued = true;
+            ready.add(entry);
+        }
+    }
+
+    protected static class Host<T> {
+        final String name;
+        final Deque<T> tasks = new ArrayDeque<>();
+        int active;
+        long nextTime;
+        boolean queued;
+
+        Host(String name) {
+            this.name = name;
+        }
+    }
+}
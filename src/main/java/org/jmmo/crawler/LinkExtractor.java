@@ -0,0 +1,202 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class LinkExtractor {
+    protected static final int MAX_TAG_LENGTH = 64 * 1024;
+
+    protected static final int TEXT = 0;
+    protected static final int TAG = 1;
+    protected static final int COMMENT = 2;
+    protected static final int RAW_TEXT = 3;
+
+    protected static final Pattern attributePattern = Pattern.compile("([^\\s\"'>/=]+)(?:\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+)))?");
+    protected static final Pattern entityPattern = Pattern.compile("&(#[xX]?[0-9a-fA-F]+|amp|lt|gt|quot|apos);");
+
+    protected final List<String> links = new ArrayList<>();
+    protected final ByteArrayOutputStream tag = new ByteArrayOutputStream();
+
+    protected int state = TEXT;
+    protected byte quote;
+    protected int matched;
+    protected byte[] rawTextEnd;
+
+    public void feed(Buffer buffer) {
+        feed(buffer.getBytes());
+    }
+
+    public void feed(byte[] bytes) {
+        for (byte b : bytes) {
+            switch (state) {
+                case TEXT:
+                    if (b == '<') {
+                        state = TAG;
+                        tag.reset();
+                        quote = 0;
+                    }
+                    break;
+                case TAG:
+                    tag(b);
+                    break;
+                case COMMENT:
+                    if (b == '-') {
+                        matched = Math.min(matched + 1, 2);
+                    } else if (b == '>' && matched == 2) {
+                        state = TEXT;
+                    } else {
+                        matched = 0;
+                    }
+                    break;
+                case RAW_TEXT:
+                    if (Character.toLowerCase((char) b) == rawTextEnd[matched]) {
+                        if (++matched == rawTextEnd.length) {
+                            state = TAG;
+                            tag.reset();
+                            tag.write(rawTextEnd, 1, rawTextEnd.length - 1);
+                            quote = 0;
+                        }
+                    } else {
+                        matched = b == '<' ? 1 : 0;
+                    }
+                    break;
+            }
+        }
+    }
+
+    public List<String> links() {
+        return links;
+    }
+
+    protected void tag(byte b) {
+        if (quote != 0) {
+            if (b == quote) {
+                quote = 0;
+            }
+        } else if (b == '"' || b == '\'') {
+            if (tag.size() > 0) {
+                quote = b;
+            }
+        } else if (b == '>') {
+            state = TEXT;
+            tagCompleted(tag.toByteArray());
+            return;
+        } else if (b == '<' && tag.size() == 0) {
+            return;
+        }
+
+        if (tag.size() == 0 && !Character.isLetter((char) b) && b != '/' && b != '!') {
+            state = TEXT;
+            return;
+        }
+
+        tag.write(b);
+
+        if (tag.size() == 3 && b == '-' && isComment()) {
+            state = COMMENT;
+            matched = 0;
+        } else if (tag.size() > MAX_TAG_LENGTH) {
+            state = TEXT;
+        }
+    }
+
+    protected boolean isComment() {
+        final byte[] bytes = tag.toByteArray();
+        return bytes[0] == '!' && bytes[1] == '-' && bytes[2] == '-';
+    }
+
+    protected void tagCompleted(byte[] bytes) {
+        int nameEnd = 0;
+        while (nameEnd < bytes.length && !isSpace(bytes[nameEnd]) && bytes[nameEnd] != '/') {
+            nameEnd++;
+        }
+        final String name = new String(bytes, 0, nameEnd, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+
+        if ("script".equals(name) || "style".equals(name)) {
+            if (bytes[bytes.length - 1] != '/') {
+                state = RAW_TEXT;
+                matched = 0;
+                rawTextEnd = ("</" + name).getBytes(StandardCharsets.ISO_8859_1);
+            }
+            return;
+        }
+
+        if (!"a".equals(name)) {
+            return;
+        }
+
+        String href = null;
+        boolean skip = false;
+        final Matcher matcher = attributePattern.matcher(new String(bytes, nameEnd, bytes.length - nameEnd, StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            final String attribute = matcher.group(1).toLowerCase(Locale.ROOT);
+            final String value = matcher.group(2) != null ? matcher.group(2) : matcher.group(3) != null ? matcher.group(3) : matcher.group(4);
+
+            if ("href".equals(attribute) && href == null) {
+                href = value == null ? "" : decodeEntities(value).trim();
+            } else if ("rel".equals(attribute) && value != null && "nofollow".equalsIgnoreCase(value.trim())) {
+                skip = true;
+            } else if ("download".equals(attribute)) {
+                skip = true;
+            }
+        }
+
+        if (href == null || skip) {
+            return;
+        }
+
+        final String lowerHref = href.toLowerCase(Locale.ROOT);
+        if (lowerHref.startsWith("#") || lowerHref.startsWith("javascript")) {
+            return;
+        }
+
+        links.add(href);
+    }
+
+    protected static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    protected static String decodeEntities(String value) {
+        if (value.indexOf('&') == -1) {
+            return value;
+        }
+
+        final Matcher matcher = entityPattern.matcher(value);
+        final StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            final String entity = matcher.group(1);
+            final String replacement;
+            switch (entity) {
+                case "amp": replacement = "&"; break;
+                case "lt": replacement = "<"; break;
+                case "gt": replacement = ">"; break;
+                case "quot": replacement = "\""; break;
+                case "apos": replacement = "'"; break;
+                default: replacement = decodeCodePoint(entity).orElse(matcher.group());
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+
+        return result.toString();
+    }
+
+    protected static Optional<String> decodeCodePoint(String entity) {
+        try {
+            final int codePoint = entity.length() > 1 && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X')
+                    ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+            return Optional.of(new String(Character.toChars(codePoint)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package org.jmmo.crawler;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.VertxException;
 import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.streams.Pump;
@@ -11,159 +17,804 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 public class LoaderVehicle extends AbstractVerticle {
     public static final int RETRY_DELAY = 3000;
+    public static final long MAX_RETRY_DELAY = 5 * 60 * 1000;
+    public static final long MAX_RETRY_AFTER = 10 * 60 * 1000;
+    public static final int MAX_REQUEUES = 10;
+    public static final int MAX_ROBOTS_REDIRECTS = 5;
+    // Vert.x fails the requests which have no response yet on the closed connection only with this message
+    public static final String CONNECTION_CLOSED = "Connection was closed";
 
     private static final Logger log = LoggerFactory.getLogger(LoaderVehicle.class);
 
+    protected int node;
     protected int downloads;
     protected Optional<Long> timerOpt = Optional.empty();
-    protected final Deque<JsonObject> tasks = new LinkedList<>();
+    protected long timerTime;
+    protected HostScheduler<JsonObject> scheduler;
+    protected HostController controller;
+    protected RetryBudget retryBudget;
+    protected DnsCache dnsCache;
+    protected int maxAttempts;
+    protected long retryDelay;
+    protected int retrying;
+    protected final Random random = new Random();
+    protected final Set<String> fixedHosts = new HashSet<>();
+    protected String userAgent;
+    protected boolean streamLinks;
+    protected boolean simHash;
+    protected CrawlMetrics metrics;
+    protected CrawlMetrics.Counter pagesCounter;
+    protected CrawlMetrics.Counter bytesCounter;
+    protected CrawlMetrics.Counter failuresCounter;
+    protected CrawlMetrics.Counter retriesCounter;
+    protected CrawlMetrics.Counter fallbacksCounter;
+    protected final Map<String, Origin> origins = new HashMap<>();
+    protected boolean pipelining;
+    protected int streams;
+    // the origins which drop pipelined requests get one request per connection, the ones which close every connection get no keep-alive
+    protected final Set<String> serialOrigins = new HashSet<>();
+    protected final Set<String> closingOrigins = new HashSet<>();
 
     @Override
     public void start() throws Exception {
         log.debug("started");
 
-        getVertx().eventBus().consumer(CrawlMessages.DOWNLOAD, message -> {
+        node = config().getInteger("node", 0);
+        userAgent = config().getString("userAgent", "vertx-crawler");
+        simHash = config().getInteger("nearDuplicates", 0) > 0;
+        streamLinks = config().getBoolean("streamLinks", true) && !config().getBoolean("resolveLinks", true);
+        streams = Math.max(1, config().getInteger("streams", 1));
+        pipelining = config().getBoolean("pipelining", false) || streams > 1;
+        final int hostDownloads = config().getInteger("hostDownloads", config().getInteger("downloads"));
+        // adaptive hosts start with one download and are raised up to hostDownloads while they keep up
+        final boolean adaptive = config().getBoolean("adaptive", true);
+        maxAttempts = config().getInteger("maxAttempts", 3);
+        retryDelay = config().getInteger("retryDelay", RETRY_DELAY);
+        retryBudget = new RetryBudget(config().getDouble("retryBudget", 0.1), RetryBudget.MIN_RETRIES);
+        controller = adaptive ? new HostController(hostDownloads, retryDelay) : null;
+        scheduler = new HostScheduler<>(config().getInteger("delay"), adaptive ? 1 : hostDownloads);
+        final JsonObject hosts = config().getJsonObject("hosts", new JsonObject());
+        hosts.fieldNames().forEach(host -> {
+            final JsonObject hostJson = hosts.getJsonObject(host);
+            Optional.ofNullable(hostJson.getInteger("delay")).ifPresent(delay -> scheduler.setDelay(host, delay));
+            Optional.ofNullable(hostJson.getInteger("downloads")).ifPresent(downloads -> {
+                scheduler.setConcurrency(host, downloads);
+                fixedHosts.add(host);
+            });
+        });
+
+        metrics = CrawlMetrics.of(getVertx());
+        dnsCache = new DnsCache(this::lookup, config().getInteger("dnsCacheSize", 10000),
+                config().getInteger("dnsTtl", 300) * 1000L, config().getInteger("dnsNegativeTtl", 60) * 1000L);
+        pagesCounter = metrics.counter("crawler_downloaded_pages_total");
+        bytesCounter = metrics.counter("crawler_downloaded_bytes_total");
+        failuresCounter = metrics.counter("crawler_download_failures_total");
+        retriesCounter = metrics.counter("crawler_download_retries_total");
+        fallbacksCounter = metrics.counter("crawler_connection_fallbacks_total");
+        final List<CrawlMetrics.Snapshot> gauges = Arrays.asList(
+                metrics.snapshot("crawler_loader_queued", () -> scheduler.size()),
+                metrics.snapshot("crawler_loader_downloads", () -> downloads),
+                metrics.snapshot("crawler_loader_retrying", () -> retrying),
+                metrics.snapshot("crawler_dns_cached", () -> dnsCache.size()),
+                metrics.snapshot("crawler_dns_cache_hits", () -> dnsCache.getHits()),
+                metrics.snapshot("crawler_dns_cache_misses", () -> dnsCache.getMisses()));
+        getVertx().setPeriodic(CrawlMetrics.SNAPSHOT_INTERVAL, timerId -> gauges.forEach(CrawlMetrics.Snapshot::update));
+
+        final long idleTimeout = config().getInteger("idleTimeout", 30) * 1000L;
+        getVertx().setPeriodic(idleTimeout, timerId -> {
+            evictIdleOrigins(idleTimeout);
+            scheduler.purge(System.currentTimeMillis());
+        });
+
+        final int statsInterval = config().getInteger("statsInterval", 10);
+        if (statsInterval > 0) {
+            getVertx().setPeriodic(statsInterval * 1000L, timerId -> {
+                if (scheduler.size() > 0 || retrying > 0) {
+                    log.info("Queued " + scheduler.size() + " downloads, in progress " + downloads + ", waiting for retry " + retrying
+                            + ", queue depths " + scheduler.queueDepths());
+                }
+            });
+        }
+
+        getVertx().eventBus().consumer(CrawlMessages.HOST_DELAY, message -> {
+            final JsonObject messageJson = (JsonObject) message.body();
+            final String host = messageJson.getString("host");
+            scheduler.setDelay(host, Math.max(scheduler.delayOf(host), messageJson.getLong("delay")));
+        });
+
+        getVertx().eventBus().consumer(CrawlMessages.node(CrawlMessages.RESOLVE, node), message -> {
+            log.trace("Resolve " + message.body());
+            dnsCache.prefetch((String) message.body());
+        });
+
+        getVertx().eventBus().consumer(CrawlMessages.node(CrawlMessages.ROBOTS, node), message -> {
+            log.debug("Robots " + message.body());
+            robots((String) message.body(), 0, ar -> {
+                if (ar.succeeded()) {
+                    message.reply(ar.result());
+                } else {
+                    message.fail(0, ar.cause().toString());
+                }
+            });
+        });
+
+        getVertx().eventBus().consumer(CrawlMessages.node(CrawlMessages.DOWNLOAD, node), message -> {
             log.trace("Download " + message.body());
 
             final JsonObject messageJson = (JsonObject) message.body();
+            final String url = messageJson.getString("url");
 
-            if (timerOpt.isPresent()) {
-                tasks.addFirst(messageJson);
-            } else {
-                startDownload(messageJson.getString("url"), messageJson.getString("file"), new ArrayList<>());
+            try {
+                scheduler.add(new URL(url).getHost(), messageJson);
+                schedule();
+            } catch (MalformedURLException e) {
+                log.error("Bad url " + url, e);
+                final int shard = messageJson.getInteger("shard", 0);
+                getVertx().eventBus().send(CrawlMessages.shard(CrawlMessages.DOWNLOAD_FAILED, shard),
+                        jsonResult(url, messageJson.getString("file"), shard, Collections.emptyList()).put("error", e.toString()));
             }
         });
     }
 
     @Override
     public void stop() throws Exception {
+        origins.values().forEach(origin -> origin.client.close());
+        origins.clear();
+
         log.debug("stopped");
     }
 
-    protected void startDownload(String url, String file, List<String> redirectsTo) {
-        download(url, file, redirectsTo);
-        timerOpt = Optional.of(getVertx().setPeriodic(config().getInteger("delay"), timerId -> {
-            if (tasks.isEmpty()) {
-                getVertx().cancelTimer(timerId);
-                timerOpt = Optional.empty();
-            } else {
-                if (downloads <= config().getInteger("downloads")) {
-                    final JsonObject task = tasks.removeLast();
-                    download(task.getString("url"), task.getString("file"), new ArrayList<>());
-                }
+    protected void schedule() {
+        final long now = System.currentTimeMillis();
+
+        JsonObject task;
+        while (downloads < config().getInteger("downloads") && (task = scheduler.poll(now)) != null) {
+            download(task, controller != null ? controller.started(hostOf(task.getString("url"))) : 0, new ArrayList<>());
+        }
+
+        final long nextTime = scheduler.nextTime();
+        if (nextTime < 0 || downloads >= config().getInteger("downloads")) {
+            return;
+        }
+
+        if (timerOpt.isPresent()) {
+            if (timerTime <= nextTime) {
+                return;
             }
+            getVertx().cancelTimer(timerOpt.get());
+        }
+
+        timerTime = nextTime;
+        timerOpt = Optional.of(getVertx().setTimer(Math.max(1, nextTime - now), timerId -> {
+            timerOpt = Optional.empty();
+            schedule();
         }));
     }
 
-    protected void download(String originalUrl, String file, List<String> redirectsTo) {
+    protected void finish(String originalUrl, String address, JsonObject result) {
+        if (CrawlMessages.DOWNLOAD_FAILED.equals(address)) {
+            failuresCounter.inc();
+        }
+        getVertx().eventBus().send(CrawlMessages.shard(address, result.getInteger("shard")), result);
+
+        try {
+            scheduler.release(new URL(originalUrl).getHost());
+        } catch (MalformedURLException e) {
+            log.error("Bad url " + originalUrl, e);
+        }
+        schedule();
+    }
+
+    // transient failures are retried unless the attempts or the retries of the host are exhausted
+    protected void failed(String originalUrl, JsonObject task, JsonObject result, long retryAfter) {
+        final String host = hostOf(originalUrl);
+        final int attempts = task.getInteger("attempts", 1);
+        final String reason;
+        if (attempts >= maxAttempts) {
+            reason = "attempts exhausted";
+        } else if (retryAfter > MAX_RETRY_AFTER) {
+            reason = "retry after " + retryAfter + " ms";
+        } else if (!retryBudget.tryRetry(host)) {
+            reason = "retry budget of the host exhausted";
+        } else {
+            retry(originalUrl, task, retryAfter >= 0 ? retryAfter : backoff(attempts));
+            return;
+        }
+
+        log.warn("Gave up " + originalUrl + " after " + attempts + " attempts, " + reason);
+        finish(originalUrl, CrawlMessages.DOWNLOAD_FAILED, result.put("attempts", attempts).put("transient", true).put("reason", reason));
+    }
+
+    // the exponential delay with the random half spreads the retries of the failed burst
+    protected long backoff(int attempts) {
+        final long delay = Math.min(MAX_RETRY_DELAY, retryDelay << Math.min(attempts - 1, 20));
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    // the next turn of the event loop lets the closed connection be counted before the request is sent again
+    protected void requeue(String originalUrl, JsonObject task) {
+        final String host = hostOf(originalUrl);
+        scheduler.release(host);
+        getVertx().runOnContext(v -> {
+            scheduler.addFirst(host, task.put("requeued", task.getInteger("requeued", 0) + 1));
+            schedule();
+        });
+    }
+
+    // the download slot and the host are free while the retry waits
+    protected void retry(String originalUrl, JsonObject task, long delay) {
+        log.info("Retry " + originalUrl + " in " + delay + " ms");
+        retriesCounter.inc();
+        retrying++;
+        final String host = hostOf(originalUrl);
+        scheduler.release(host);
+        getVertx().setTimer(Math.max(1, delay), timerId -> {
+            retrying--;
+            scheduler.addFirst(host, task.put("attempts", task.getInteger("attempts", 1) + 1));
+            schedule();
+        });
+        schedule();
+    }
+
+    protected void succeeded(String host, int epoch, long latency) {
+        if (controller == null || fixedHosts.contains(host)) {
+            return;
+        }
+
+        controller.succeeded(host, epoch, latency);
+        adapt(host);
+    }
+
+    protected void congested(String host, int epoch, long retryAfter) {
+        final long pause;
+        if (controller == null || fixedHosts.contains(host)) {
+            pause = retryAfter;
+        } else {
+            pause = controller.failed(host, epoch, retryAfter);
+            adapt(host);
+        }
+
+        if (pause > 0) {
+            log.info("Host " + host + " is paused for " + pause + " ms");
+            scheduler.pause(host, System.currentTimeMillis() + pause);
+        }
+    }
+
+    protected void adapt(String host) {
+        final int concurrency = controller.concurrencyOf(host);
+        final long backoff = controller.backoffOf(host);
+        if (concurrency != scheduler.concurrencyOf(host)) {
+            log.debug("Downloads of " + host + " are " + concurrency + " at once");
+        }
+        scheduler.setConcurrency(host, concurrency);
+        scheduler.setBackoff(host, backoff);
+    }
+
+    protected void download(JsonObject task, int epoch, List<String> redirectsTo) {
+        final String originalUrl = task.getString("url");
+        final String file = task.getString("file");
+        final int shard = task.getInteger("shard", 0);
         final String currentUrl = redirectsTo.isEmpty() ? originalUrl : redirectsTo.get(redirectsTo.size() - 1);
 
         log.debug("Downloading " + currentUrl + " to " + file + ", original=" + originalUrl + ", redirects=" + redirectsTo);
 
+        final URL url;
         try {
-            final URL url = new URL(currentUrl);
-            final int port = url.getPort() > -1 ? url.getPort() : url.getDefaultPort();
+            url = new URL(currentUrl);
+        } catch (MalformedURLException e) {
+            log.error("Bad url " + currentUrl, e);
+            finish(originalUrl, CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, shard, redirectsTo).put("error", e.toString()));
+            return;
+        }
 
-            final HttpClientOptions httpClientOptions = new HttpClientOptions();
-            if ("https".equals(url.getProtocol())) {
-                httpClientOptions.setSsl(true).setTrustAll(true);
+        // the download is counted while its host is resolved for the scheduler not to start more
+        downloads++;
+        dnsCache.resolve(url.getHost(), resolved -> {
+            if (resolved.succeeded()) {
+                download(task, epoch, redirectsTo, url, resolved.result());
+            } else {
+                downloads--;
+                log.info("Failed to load " + currentUrl + " because its host cannot be resolved");
+                finish(originalUrl, CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, shard, redirectsTo).put("error", resolved.cause().toString()));
             }
+        });
+    }
 
-            downloads++;
-            final HttpClientRequest request = vertx.createHttpClient(httpClientOptions).get(port, url.getHost(), url.getPath(), response -> {
-                response.pause();
+    protected void download(JsonObject task, int epoch, List<String> redirectsTo, URL url, InetAddress address) {
+        final String originalUrl = task.getString("url");
+        final String file = task.getString("file");
+        final int shard = task.getInteger("shard", 0);
+        final String currentUrl = redirectsTo.isEmpty() ? originalUrl : redirectsTo.get(redirectsTo.size() - 1);
+        final int port = url.getPort() > -1 ? url.getPort() : url.getDefaultPort();
+        final Origin origin = acquireOrigin(url.getProtocol(), url.getHost(), port);
 
-                log.trace("Response status: " + response.statusCode() + " " + response.statusMessage());
+        final long requestTime = System.nanoTime();
+        final HttpClientRequest request = origin.client.get(port, connectHost(url, address), url.getPath(), response -> {
+            response.pause();
+            responded(origin, response);
 
-                final String contentType = response.getHeader("Content-Type");
-                if (contentType == null || !response.getHeader("Content-Type").startsWith("text/html")) {
-                    downloads--;
-                    log.debug("Ignored content type " + contentType + " of " + currentUrl);
-                    getVertx().eventBus().send(CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, redirectsTo).put("content-type", contentType));
-                    return;
+            // time to first byte includes connecting which Vert.x does not report separately, resolving is in crawler_dns_seconds
+            final long responseTime = System.nanoTime();
+            final String hostLabel = metrics.host(url.getHost());
+            metrics.histogram("crawler_ttfb_seconds", "host", hostLabel).observeNanos(responseTime - requestTime);
+            metrics.counter("crawler_responses_total", "status", String.valueOf(response.statusCode())).inc();
+
+            log.trace("Response status: " + response.statusCode() + " " + response.statusMessage());
+
+            if (response.statusCode() == 429 || response.statusCode() >= 500) {
+                discard(response);
+                downloads--;
+                releaseOrigin(origin);
+                log.info("Failed to load " + currentUrl + " because of status code " + response.statusCode());
+
+                final long retryAfter = retryAfter(response.getHeader("Retry-After"));
+                if (isCongestion(response.statusCode())) {
+                    congested(hostOf(originalUrl), epoch, Math.min(retryAfter >= 0 ? retryAfter : retryDelay, MAX_RETRY_AFTER));
+                } else {
+                    succeeded(hostOf(originalUrl), epoch, (responseTime - requestTime) / 1000000);
                 }
+                failed(originalUrl, task, jsonResult(originalUrl, file, shard, redirectsTo).put("status", response.statusCode()), retryAfter);
+                return;
+            }
+            retryBudget.succeeded(hostOf(originalUrl));
+            succeeded(hostOf(originalUrl), epoch, (responseTime - requestTime) / 1000000);
 
-                switch (response.statusCode()) {
-                    case 200: {
-                        getVertx().executeBlocking(future -> {
-                            try {
-                                Files.createDirectories(Paths.get(file).getParent());
-                                future.complete();
-                            } catch (IOException e) {
-                                log.error("Failed to create directories to " + file, e);
-                                future.fail(e);
-                            }
-                        }, dirCreated -> getVertx().fileSystem().open(file, new OpenOptions(), opened -> {
-                            if (opened.failed()) {
-                                downloads--;
-                                log.error("Cannot open the file " + file, opened.cause());
+            if (response.statusCode() == 304) {
+                discard(response);
+                downloads--;
+                releaseOrigin(origin);
+                log.debug("Not modified " + currentUrl);
+                pagesCounter.inc();
+                finish(originalUrl, CrawlMessages.DOWNLOADED, jsonResult(originalUrl, file, shard, redirectsTo).put("notModified", true));
+                return;
+            }
+
+            final String contentType = response.getHeader("Content-Type");
+            if (contentType == null || !response.getHeader("Content-Type").startsWith("text/html")) {
+                discard(response);
+                downloads--;
+                releaseOrigin(origin);
+                log.debug("Ignored content type " + contentType + " of " + currentUrl);
+                finish(originalUrl, CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, shard, redirectsTo).put("content-type", contentType));
+                return;
+            }
+
+            switch (response.statusCode()) {
+                case 200: {
+                    getVertx().executeBlocking(future -> {
+                        try {
+                            Files.createDirectories(Paths.get(file).getParent());
+                            future.complete();
+                        } catch (IOException e) {
+                            log.error("Failed to create directories to " + file, e);
+                            future.fail(e);
+                        }
+                    }, dirCreated -> getVertx().fileSystem().open(file, new OpenOptions().setTruncateExisting(true), opened -> {
+                        if (opened.failed()) {
+                            discard(response);
+                            downloads--;
+                            releaseOrigin(origin);
+                            log.error("Cannot open the file " + file, opened.cause());
+                            finish(originalUrl, CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, shard, redirectsTo).put("error", opened.cause().toString()));
+                            return;
+                        }
+
+                        final LinkExtractor linkExtractor = streamLinks ? new LinkExtractor() : null;
+                        final long[] hash = {Fingerprint.SEED};
+                        final SimHash pageSimHash = simHash ? new SimHash() : null;
+
+                        final GzipWriteStream gzip = file.endsWith(GzipWriteStream.GZIP_EXTENSION) ? new GzipWriteStream(opened.result()) : null;
+
+                        // the connection reset while the body is read fails the download as well
+                        final boolean[] ended = {false};
+                        response.exceptionHandler(e -> {
+                            if (ended[0]) {
                                 return;
                             }
+                            ended[0] = true;
+                            downloads--;
+                            releaseOrigin(origin);
+                            log.warn("Failed to read " + currentUrl, e);
+                            congested(hostOf(originalUrl), epoch, -1);
+                            opened.result().close(closed -> failed(originalUrl, task,
+                                    jsonResult(originalUrl, file, shard, redirectsTo).put("error", e.toString()), -1));
+                        });
 
-                            response.resume();
-                            Pump.pump(response, opened.result()).start();
-                            response.endHandler(endEvent -> {
-                                downloads--;
-                                opened.result().close(closed ->
-                                        getVertx().eventBus().send(CrawlMessages.DOWNLOADED, jsonResult(originalUrl, file, redirectsTo)));
+                        response.resume();
+                        Pump.pump(response, new TapWriteStream(gzip != null ? gzip : opened.result(), buffer -> {
+                            bytesCounter.add(buffer.length());
+                            hash[0] = Fingerprint.update(hash[0], buffer);
+                            if (pageSimHash != null) {
+                                pageSimHash.feed(buffer);
+                            }
+                            if (linkExtractor != null) {
+                                linkExtractor.feed(buffer);
+                            }
+                        })).start();
+                        response.endHandler(endEvent -> {
+                            if (ended[0]) {
+                                return;
+                            }
+                            ended[0] = true;
+                            metrics.histogram("crawler_body_seconds", "host", hostLabel).observeNanos(System.nanoTime() - responseTime);
+                            pagesCounter.inc();
+                            downloads--;
+                            releaseOrigin(origin);
+                            if (gzip != null) {
+                                gzip.finish();
+                            }
+                            opened.result().close(closed -> {
+                                final JsonObject result = jsonResult(originalUrl, file, shard, redirectsTo)
+                                        .put("etag", response.getHeader("ETag"))
+                                        .put("lastModified", response.getHeader("Last-Modified"))
+                                        .put("hash", Fingerprint.mix(hash[0]));
+                                if (linkExtractor != null) {
+                                    result.put("links", new JsonArray(linkExtractor.links()));
+                                }
+                                if (pageSimHash != null) {
+                                    result.put("simHash", pageSimHash.value());
+                                }
+                                finish(originalUrl, CrawlMessages.DOWNLOADED, result);
                             });
-                        }));
+                        });
+                    }));
 
-                        break;
-                    }
-                    case 301:
-                    case 302:
-                    case 303: {
-                        downloads--;
-
-                        final String redirect = response.getHeader("location");
-                        log.debug("Redirected " + currentUrl + " to " + redirect);
-
-                        if (originalUrl.equals(redirect) || redirectsTo.contains(redirect)) {
-                            log.warn("Cyclic redirects from " + currentUrl + ", original url " + originalUrl + ", redirects " + redirectsTo);
-                            getVertx().eventBus().send(CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, redirectsTo).put("cyclic", redirect));
-                        } else {
-                            redirectsTo.add(redirect);
-                            download(originalUrl, file, redirectsTo);
-                        }
+                    break;
+                }
+                case 301:
+                case 302:
+                case 303: {
+                    discard(response);
+                    downloads--;
+                    releaseOrigin(origin);
 
-                        break;
+                    final String redirect = response.getHeader("location");
+                    log.debug("Redirected " + currentUrl + " to " + redirect);
+
+                    if (originalUrl.equals(redirect) || redirectsTo.contains(redirect)) {
+                        log.warn("Cyclic redirects from " + currentUrl + ", original url " + originalUrl + ", redirects " + redirectsTo);
+                        finish(originalUrl, CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, shard, redirectsTo).put("cyclic", redirect));
+                    } else {
+                        redirectsTo.add(redirect);
+                        download(task, epoch, redirectsTo);
                     }
-                    default: {
-                        downloads--;
-                        log.info("Failed to load " + currentUrl + " because of status code " + response.statusCode());
-                        getVertx().eventBus().send(CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, redirectsTo).put("status", response.statusCode()));
+
+                    break;
+                }
+                default: {
+                    discard(response);
+                    downloads--;
+                    releaseOrigin(origin);
+                    log.info("Failed to load " + currentUrl + " because of status code " + response.statusCode());
+                    finish(originalUrl, CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, shard, redirectsTo).put("status", response.statusCode()));
+                }
+            }
+        });
+
+        request.exceptionHandler(e -> {
+            downloads--;
+            releaseOrigin(origin);
+            // the request lost with the closed connection has not been handled by the server, it is sent again without an attempt
+            if (isLost(e) && task.getInteger("requeued", 0) < MAX_REQUEUES) {
+                log.debug("Connection of " + currentUrl + " was closed before the response, sending it again");
+                lost(origin);
+                requeue(originalUrl, task);
+                return;
+            }
+
+            log.warn("Cannot establish http connection to " + currentUrl, e);
+            // timeouts and refused connections are the signs of the overloaded host as well
+            congested(hostOf(originalUrl), epoch, -1);
+
+            failed(originalUrl, task, jsonResult(originalUrl, file, shard, redirectsTo).put("error", e.toString()), -1);
+        });
+
+        Optional.ofNullable(task.getString("etag")).ifPresent(etag -> request.putHeader("If-None-Match", etag));
+        Optional.ofNullable(task.getString("lastModified")).ifPresent(lastModified -> request.putHeader("If-Modified-Since", lastModified));
+        request.setTimeout(config().getInteger("requestTimeout", 30) * 1000L);
+        request.putHeader("Host", hostHeader(url)).putHeader("User-Agent", userAgent).end();
+    }
+
+    // as RFC 9309 says missing robots.txt allows everything and the server errors fail it for the crawler to disallow everything for a while
+    protected void robots(String robotsUrl, int redirects, Handler<AsyncResult<String>> handler) {
+        final URL url;
+        try {
+            url = new URL(robotsUrl);
+        } catch (MalformedURLException e) {
+            log.error("Bad url " + robotsUrl, e);
+            handler.handle(Future.succeededFuture(null));
+            return;
+        }
+
+        dnsCache.resolve(url.getHost(), resolved -> {
+            if (resolved.failed()) {
+                log.debug("No robots.txt at " + robotsUrl + " because its host cannot be resolved");
+                handler.handle(Future.succeededFuture(null));
+                return;
+            }
+
+            final int port = url.getPort() > -1 ? url.getPort() : url.getDefaultPort();
+            final Origin origin = acquireOrigin(url.getProtocol(), url.getHost(), port);
+
+            final HttpClientRequest request = origin.client.get(port, connectHost(url, resolved.result()), url.getPath(), response -> {
+                responded(origin, response);
+                final int status = response.statusCode();
+                if (status >= 200 && status < 300) {
+                    response.bodyHandler(body -> {
+                        releaseOrigin(origin);
+                        handler.handle(Future.succeededFuture(body.toString("utf-8")));
+                    });
+                    return;
+                }
+
+                discard(response);
+                releaseOrigin(origin);
+                final String location = response.getHeader("Location");
+                if (status >= 300 && status < 400 && location != null && redirects < MAX_ROBOTS_REDIRECTS) {
+                    final String redirect;
+                    try {
+                        redirect = new URL(url, location).toString();
+                    } catch (MalformedURLException e) {
+                        log.debug("No robots.txt at " + robotsUrl + " because of bad redirect " + location);
+                        handler.handle(Future.succeededFuture(null));
+                        return;
                     }
+                    log.debug("Robots.txt at " + robotsUrl + " is redirected to " + redirect);
+                    robots(redirect, redirects + 1, handler);
+                } else if (status >= 500) {
+                    log.info("Robots.txt at " + robotsUrl + " is unreachable because of status code " + status);
+                    handler.handle(Future.failedFuture("Status code " + status));
+                } else {
+                    log.debug("No robots.txt at " + robotsUrl + " status code " + status);
+                    handler.handle(Future.succeededFuture(null));
                 }
             });
 
             request.exceptionHandler(e -> {
-                downloads--;
-                log.warn("Cannot establish http connection to " + currentUrl, e);
-
-                getVertx().eventBus().send(CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, redirectsTo).put("error", e.toString()));
+                if (isLost(e)) {
+                    lost(origin);
+                }
+                releaseOrigin(origin);
+                log.warn("Cannot load " + robotsUrl, e);
+                handler.handle(Future.failedFuture(e));
             });
 
-            request.end();
+            request.setTimeout(config().getInteger("requestTimeout", 30) * 1000L);
+            request.putHeader("Host", hostHeader(url)).putHeader("User-Agent", userAgent).end();
+        });
+    }
+
+    // the resolver of the JVM blocks, so the lookups are done by the worker threads
+    protected void lookup(String host, Handler<AsyncResult<InetAddress>> handler) {
+        final long lookupTime = System.nanoTime();
+        getVertx().<InetAddress>executeBlocking(future -> {
+            try {
+                future.complete(InetAddress.getByName(host));
+            } catch (UnknownHostException e) {
+                future.fail(e);
+            }
+        }, false, ar -> {
+            metrics.histogram("crawler_dns_seconds").observeNanos(System.nanoTime() - lookupTime);
+            if (ar.failed()) {
+                metrics.counter("crawler_dns_failures_total").inc();
+                log.warn("Cannot resolve " + host + ": " + ar.cause().getMessage());
+            }
+            handler.handle(ar);
+        });
+    }
+
+    // plain http connects to the cached address, https keeps the name for the server to choose the certificate
+    protected static String connectHost(URL url, InetAddress address) {
+        return "http".equals(url.getProtocol()) ? address.getHostAddress() : url.getHost();
+    }
 
+    protected static String hostHeader(URL url) {
+        return url.getPort() > -1 ? url.getHost() + ":" + url.getPort() : url.getHost();
+    }
+
+    protected Origin acquireOrigin(String protocol, String host, int port) {
+        final String key = protocol + "://" + host + ":" + port;
+
+        Origin origin = origins.get(key);
+        if (origin == null) {
+            final boolean keepAlive = !closingOrigins.contains(key);
+            final boolean pipelined = pipelining && keepAlive && !serialOrigins.contains(key);
+            final int poolSize = config().getInteger("poolSize", config().getInteger("downloads"));
+            // pipelined requests share so many connections that every one of them carries about streams requests
+            final HttpClientOptions httpClientOptions = new HttpClientOptions()
+                    .setKeepAlive(keepAlive)
+                    .setPipelining(pipelined)
+                    .setMaxPoolSize(pipelined ? Math.max(1, (poolSize + streams - 1) / streams) : poolSize)
+                    .setIdleTimeout(config().getInteger("idleTimeout", 30))
+                    .setTryUseCompression(config().getBoolean("compression", true));
+            if ("https".equals(protocol)) {
+                httpClientOptions.setSsl(true).setTrustAll(true);
+            }
+
+            log.debug("Create http client for " + key);
+            origin = new Origin(key, getVertx().createHttpClient(httpClientOptions), keepAlive, pipelined, httpClientOptions.getMaxPoolSize());
+            origins.put(key, origin);
+        }
+
+        origin.requests++;
+        origin.lastUsed = System.currentTimeMillis();
+        return origin;
+    }
+
+    protected void releaseOrigin(Origin origin) {
+        origin.requests--;
+        origin.lastUsed = System.currentTimeMillis();
+        if (origin.retired && origin.requests <= 0) {
+            origin.client.close();
+        }
+    }
+
+    protected void responded(Origin origin, HttpClientResponse response) {
+        if (!origin.keepAlive) {
+            return;
+        }
+
+        origin.responses++;
+        // the graceful close after the response loses the requests pipelined after it, they do not count against the server
+        if ("close".equalsIgnoreCase(response.getHeader("Connection"))) {
+            origin.closes++;
+            origin.announcedCloses = Math.min(origin.announcedCloses + 1, origin.connections);
+            checkKeepAlive(origin);
+            // the pool still hands out the pipelined connection being closed, so the next requests go over a new client
+            if (origin.pipelined && origin.responses > origin.closes * 2) {
+                replace(origin);
+            }
+        }
+    }
+
+    // the requests of one connection are failed at once, so the lost ones are counted till the next turn of the event loop
+    protected void lost(Origin origin) {
+        if (!origin.keepAlive || origin.lostAtOnce++ > 0) {
+            return;
+        }
+
+        getVertx().runOnContext(v -> {
+            final int lostAtOnce = origin.lostAtOnce;
+            origin.lostAtOnce = 0;
+            if (origin.announcedCloses > 0) {
+                origin.announcedCloses--;
+                return;
+            }
+
+            origin.closes++;
+            if (origin.pipelined && lostAtOnce > 1 && !origin.retired) {
+                log.info("Pipelining to " + origin.key + " is turned off, " + lostAtOnce + " requests were lost with the closed connection");
+                serialOrigins.add(origin.key);
+                retire(origin);
+            }
+            checkKeepAlive(origin);
+        });
+    }
+
+    // the server closing the connections after every response or two is not asked to keep them at all, as HTTP/1.0 one
+    protected void checkKeepAlive(Origin origin) {
+        if (origin.closes >= 2 && origin.closes * 2 >= origin.responses && !closingOrigins.contains(origin.key)) {
+            log.info("Keep-alive to " + origin.key + " is turned off, " + origin.closes + " connections were closed after "
+                    + origin.responses + " responses");
+            closingOrigins.add(origin.key);
+            retire(origin);
+        }
+    }
+
+    // the client is replaced by the one with the new options
+    protected void retire(Origin origin) {
+        if (!origin.retired) {
+            fallbacksCounter.inc();
+            replace(origin);
+        }
+    }
+
+    // the old client is closed when its requests are finished
+    protected void replace(Origin origin) {
+        if (origin.retired) {
+            return;
+        }
+
+        origin.retired = true;
+        origins.remove(origin.key, origin);
+        if (origin.requests <= 0) {
+            origin.client.close();
+        }
+    }
+
+    protected static boolean isLost(Throwable e) {
+        return e instanceof VertxException && CONNECTION_CLOSED.equals(e.getMessage());
+    }
+
+    protected void evictIdleOrigins(long idleTimeout) {
+        final long now = System.currentTimeMillis();
+        final Iterator<Origin> iterator = origins.values().iterator();
+        while (iterator.hasNext()) {
+            final Origin origin = iterator.next();
+            if (origin.requests <= 0 && now - origin.lastUsed >= idleTimeout) {
+                log.debug("Close idle http client for " + origin.key);
+                origin.client.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    protected static boolean isCongestion(int statusCode) {
+        return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    protected String hostOf(String url) {
+        try {
+            return new URL(url).getHost();
         } catch (MalformedURLException e) {
-            log.error("Bad url " + currentUrl, e);
-            getVertx().eventBus().send(CrawlMessages.DOWNLOAD_FAILED, jsonResult(originalUrl, file, redirectsTo).put("error", e.toString()));
+            return "";
+        }
+    }
+
+    // Retry-After is either seconds or the date
+    protected static long retryAfter(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                return Math.max(0, ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                        - System.currentTimeMillis());
+            } catch (DateTimeParseException e1) {
+                return -1;
+            }
         }
     }
 
-    protected JsonObject jsonResult(String url, String file, List<String> redirectsTo) {
+    protected void discard(HttpClientResponse response) {
+        // the body must be consumed otherwise the connection never returns to the pool
+        response.resume();
+    }
+
+    protected JsonObject jsonResult(String url, String file, int shard, List<String> redirectsTo) {
         return new JsonObject()
                 .put("url", url)
                 .put("file", file)
+                .put("shard", shard)
                 .put("redirects", new JsonArray(redirectsTo));
     }
+
+    protected static class Origin {
+        final String key;
+        final HttpClient client;
+        final boolean keepAlive;
+        final boolean pipelined;
+        final int connections;
+        int requests;
+        long lastUsed;
+        boolean retired;
+        int responses;
+        int closes;
+        int announcedCloses;
+        int lostAtOnce;
+
+        Origin(String key, HttpClient client, boolean keepAlive, boolean pipelined, int connections) {
+            this.key = key;
+            this.client = client;
+            this.keepAlive = keepAlive;
+            this.pipelined = pipelined;
+            this.connections = connections;
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package org.jmmo.crawler;
+
+public class LongHashSet {
+    protected static final float LOAD_FACTOR = 0.75f;
+
+    protected long[] keys;
+    protected int mask;
+    protected int size;
+    protected boolean containsZero;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    public boolean add(long key) {
+        if (key == 0) {
+            final boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+
+        int index = index(key, mask);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+
+        int index = index(key, mask);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return containsZero ? size + 1 : size;
+    }
+
+    protected void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        allocate(capacity);
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int index = index(key, mask);
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+            }
+        }
+    }
+
+    protected void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    static int capacityFor(int expected) {
+        final long capacity = Math.max(16, (long) Math.ceil(expected / LOAD_FACTOR));
+        return (int) Math.min(1 << 30, Long.highestOneBit(capacity - 1) << 1);
+    }
+
+    static int index(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,99 @@
+package org.jmmo.crawler;
+
+public class LongLongHashMap {
+    protected static final float LOAD_FACTOR = 0.75f;
+
+    protected long[] keys;
+    protected long[] values;
+    protected int mask;
+    protected int size;
+    protected boolean containsZero;
+    protected long zeroValue;
+
+    public LongLongHashMap() {
+        this(16);
+    }
+
+    public LongLongHashMap(int expected) {
+        allocate(LongHashSet.capacityFor(expected));
+    }
+
+    public long get(long key, long defaultValue) {
+        if (key == 0) {
+            return containsZero ? zeroValue : defaultValue;
+        }
+
+        int index = LongHashSet.index(key, mask);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public void put(long key, long value) {
+        if (key == 0) {
+            containsZero = true;
+            zeroValue = value;
+            return;
+        }
+
+        int index = LongHashSet.index(key, mask);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+
+        int index = LongHashSet.index(key, mask);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return containsZero ? size + 1 : size;
+    }
+
+    protected void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = LongHashSet.index(oldKeys[i], mask);
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    protected void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,107 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.SendContext;
+import io.vertx.core.http.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.regex.Pattern;
+
+public class MetricsVehicle extends AbstractVerticle {
+    public static final String METRICS_PATH = "/metrics";
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsVehicle.class);
+
+    protected static final Pattern suffixPattern = Pattern.compile("(\\.node\\d+|\\.\\d+)$");
+
+    protected CrawlMetrics metrics;
+    // the event bus of Vert.x 3.2 takes the interceptors of the raw type
+    @SuppressWarnings("rawtypes")
+    protected Handler<SendContext> interceptor;
+    protected HttpServer server;
+    protected long lastTime;
+    protected long lastPages;
+    protected long lastBytes;
+
+    @Override
+    public void start(Future<Void> startFuture) throws Exception {
+        log.debug("started");
+
+        metrics = CrawlMetrics.of(getVertx());
+        metrics.setHostsLimit(config().getInteger("metricsHosts", 100));
+
+        interceptor = sendContext -> {
+            metrics.counter("crawler_eventbus_messages_total", "address", addressOf(sendContext.message().address())).inc();
+            sendContext.next();
+        };
+        getVertx().eventBus().addInterceptor(interceptor);
+
+        final int statsInterval = config().getInteger("statsInterval", 10);
+        if (statsInterval > 0) {
+            lastTime = System.nanoTime();
+            getVertx().setPeriodic(statsInterval * 1000L, timerId -> logSummary());
+        }
+
+        final int port = config().getInteger("metricsPort", 0);
+        if (port <= 0) {
+            startFuture.complete();
+            return;
+        }
+
+        server = getVertx().createHttpServer().requestHandler(request -> {
+            if (METRICS_PATH.equals(request.path())) {
+                request.response().putHeader("Content-Type", "text/plain; version=0.0.4").end(metrics.prometheus());
+            } else {
+                request.response().setStatusCode(404).end();
+            }
+        }).listen(port, config().getString("metricsHost", "localhost"), ar -> {
+            if (ar.succeeded()) {
+                log.info("Metrics are available at http://" + config().getString("metricsHost", "localhost") + ":" + port + METRICS_PATH);
+                startFuture.complete();
+            } else {
+                log.error("Cannot listen metrics port " + port, ar.cause());
+                startFuture.fail(ar.cause());
+            }
+        });
+    }
+
+    @Override
+    public void stop() throws Exception {
+        getVertx().eventBus().removeInterceptor(interceptor);
+        if (server != null) {
+            server.close();
+        }
+
+        log.debug("stopped");
+    }
+
+    protected void logSummary() {
+        final long now = System.nanoTime();
+        final long pages = metrics.value("crawler_downloaded_pages_total");
+        final long bytes = metrics.value("crawler_downloaded_bytes_total");
+        final double seconds = (now - lastTime) / 1e9;
+
+        log.info(String.format("Pages %d (%.1f/s), bytes %d (%.1f KB/s), queued %d, in progress %d, backlog %d, ttfb p50 %.3fs p99 %.3fs, body p50 %.3fs p99 %.3fs, parse p50 %.3fs p99 %.3fs",
+                pages, (pages - lastPages) / seconds, bytes, (bytes - lastBytes) / seconds / 1024,
+                metrics.value("crawler_loader_queued"), metrics.value("crawler_loader_downloads"), metrics.value("crawler_backlog"),
+                metrics.quantile("crawler_ttfb_seconds", 0.5), metrics.quantile("crawler_ttfb_seconds", 0.99),
+                metrics.quantile("crawler_body_seconds", 0.5), metrics.quantile("crawler_body_seconds", 0.99),
+                metrics.quantile("crawler_parse_seconds", 0.5), metrics.quantile("crawler_parse_seconds", 0.99)));
+
+        lastTime = now;
+        lastPages = pages;
+        lastBytes = bytes;
+    }
+
+    protected static String addressOf(String address) {
+        // reply addresses are generated for every request so they are counted together
+        if (!address.startsWith("crawler.")) {
+            return "reply";
+        }
+
+        return suffixPattern.matcher(address).replaceFirst("");
+    }
+}
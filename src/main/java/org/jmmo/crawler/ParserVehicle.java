@@ -1,6 +1,8 @@
 package org.jmmo.crawler;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -8,88 +10,127 @@ import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class ParserVehicle extends AbstractVerticle {
     public static final String BACKUP_EXTENSION = ".backup";
+    public static final String REWRITE_EXTENSION = ".rewrite";
+    public static final String LINKS_SELECTOR = "a[href]:not([href^=#]):not([href^=javascript]):not([rel=nofollow]):not([download])";
 
     private static final Logger log = LoggerFactory.getLogger(ParserVehicle.class);
 
+    protected int node;
     protected boolean resolveLinks;
     protected boolean storeOriginals;
+    protected CrawlMetrics.Histogram parseTime;
+    protected DeliveryOptions foundOptions;
 
     @Override
     public void start() throws Exception {
         log.info("started");
 
+        node = config().getInteger("node", 0);
         resolveLinks = config().getBoolean("resolveLinks");
         storeOriginals = config().getBoolean("storeOriginals");
+        parseTime = CrawlMetrics.of(getVertx()).histogram("crawler_parse_seconds");
+        foundOptions = CrawlMessages.foundOptions(config());
 
-        getVertx().eventBus().consumer(CrawlMessages.PARSE, message -> {
+        getVertx().eventBus().consumer(CrawlMessages.node(CrawlMessages.PARSE, node), message -> {
             log.debug("Parsing " + message.body());
 
             final JsonObject messageJson = (JsonObject) message.body();
             final String file = messageJson.getString("file");
             final String baseUrl = messageJson.getString("url");
             final int level = messageJson.getInteger("level");
+            final int shard = messageJson.getInteger("shard", 0);
+            // pages not modified since the last crawling have been rewritten already
+            final boolean rewrite = resolveLinks && messageJson.getBoolean("rewrite", true);
 
             try {
-                final Document document = Jsoup.parse(new File(file), "utf-8", baseUrl);
-                final Elements links = document.select("a[href]:not([href^=#]):not([href^=javascript]):not([rel=nofollow]):not([download])");
+                final long parseStarted = System.nanoTime();
+                final Document document;
+                if (file.endsWith(GzipWriteStream.GZIP_EXTENSION)) {
+                    try (InputStream input = new GZIPInputStream(new FileInputStream(file))) {
+                        document = Jsoup.parse(input, "utf-8", baseUrl);
+                    }
+                } else {
+                    document = Jsoup.parse(new File(file), "utf-8", baseUrl);
+                }
+                final Elements links = document.select(LINKS_SELECTOR);
+                parseTime.observeNanos(System.nanoTime() - parseStarted);
 
                 if (links.isEmpty()) {
-                    getVertx().eventBus().send(CrawlMessages.PARSED, file);
+                    getVertx().eventBus().send(CrawlMessages.shard(CrawlMessages.PARSED, shard), file);
                     return;
                 }
 
-                final int[] counter = new int[1];
-                links.forEach(element -> {
-                    getVertx().eventBus().send(CrawlMessages.URL_FOUND, new JsonObject()
-                            .put("url", element.attr("href")).put("baseUrl", baseUrl).put("file", file).put("level", level), ar -> {
-                        if (resolveLinks && ar.succeeded()) {
-                            final String newUrl = (String) ar.result().body();
+                final JsonArray hrefs = new JsonArray();
+                links.forEach(element -> hrefs.add(element.attr("href")));
+
+                getVertx().eventBus().send(CrawlMessages.shard(CrawlMessages.URLS_FOUND, shard), new JsonObject()
+                        .put("urls", hrefs).put("baseUrl", baseUrl).put("file", file).put("level", level), foundOptions, ar -> {
+                    if (rewrite && ar.succeeded()) {
+                        final JsonArray newUrls = (JsonArray) ar.result().body();
+                        for (int i = 0; i < links.size(); i++) {
+                            final String newUrl = newUrls.getString(i);
                             if (newUrl != null) {
-                                element.attr("href", newUrl);
+                                links.get(i).attr("href", newUrl);
                             }
                         }
-
-                        if (++counter[0] == links.size()) {
-                            if (resolveLinks) {
-                                final Path original = Paths.get(file);
-                                if (storeOriginals) {
-                                    final String name = original.getFileName().toString();
-                                    final int extensionIndex = name.lastIndexOf(".");
-                                    final Path backup = original.resolveSibling((extensionIndex > -1 ? name.substring(0, extensionIndex) : name) + BACKUP_EXTENSION);
-                                    try {
-                                        Files.move(original, backup);
-                                    } catch (IOException e) {
-                                        log.error("Cannot rename file " + original + " to " + backup, e);
-                                        sendFail(file);
-                                        return;
-                                    }
+                    }
+
+                    if (rewrite) {
+                        final Path original = Paths.get(file);
+                        // the page is written to a new file for the duplicates linked to the old one to keep their content
+                        final Path rewritten = original.resolveSibling(original.getFileName() + REWRITE_EXTENSION);
+                        try {
+                            if (file.endsWith(GzipWriteStream.GZIP_EXTENSION)) {
+                                try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(rewritten))) {
+                                    output.write(document.toString().getBytes("utf-8"));
                                 }
+                            } else {
+                                Files.write(rewritten, document.toString().getBytes("utf-8"));
+                            }
+                        } catch (IOException e) {
+                            log.error("Cannot save to file " + rewritten, e);
+                            sendFail(file, shard);
+                            return;
+                        }
 
-                                try {
-                                    Files.write(original, document.toString().getBytes("utf-8"));
-                                } catch (IOException e) {
-                                    log.error("Cannot save to file " + original, e);
-                                    sendFail(file);
-                                    return;
-                                }
+                        if (storeOriginals) {
+                            final String name = original.getFileName().toString();
+                            final int extensionIndex = name.lastIndexOf(".");
+                            final Path backup = original.resolveSibling((extensionIndex > -1 ? name.substring(0, extensionIndex) : name) + BACKUP_EXTENSION);
+                            try {
+                                Files.move(original, backup);
+                            } catch (IOException e) {
+                                log.error("Cannot rename file " + original + " to " + backup, e);
+                                sendFail(file, shard);
+                                return;
                             }
+                        }
 
-                            getVertx().eventBus().send(CrawlMessages.PARSED, file);
+                        try {
+                            Files.move(rewritten, original, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        } catch (IOException e) {
+                            log.error("Cannot save to file " + original, e);
+                            sendFail(file, shard);
+                            return;
                         }
-                    });
+                    }
+
+                    getVertx().eventBus().send(CrawlMessages.shard(CrawlMessages.PARSED, shard), file);
                 });
 
             } catch (Exception e) {
                 log.error("Exception during parsing " + file, e);
-                sendFail(file);
+                sendFail(file, shard);
             }
         });
     }
@@ -99,7 +140,7 @@ public class ParserVehicle extends AbstractVerticle {
         log.info("stopped");
     }
 
-    protected void sendFail(String file) {
-        getVertx().eventBus().send(CrawlMessages.PARSE_FAILED, file);
+    protected void sendFail(String file, int shard) {
+        getVertx().eventBus().send(CrawlMessages.shard(CrawlMessages.PARSE_FAILED, shard), file);
     }
 }
@@ -0,0 +1,42 @@
+package org.jmmo.crawler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class RetryBudget {
+    public static final int MIN_RETRIES = 10;
+
+    protected final Map<String, Host> hosts = new HashMap<>();
+    protected final double ratio;
+    protected final int minRetries;
+
+    // every host may retry so many requests and the ratio of its successful ones, the failing host cannot multiply its load
+    public RetryBudget(double ratio, int minRetries) {
+        this.ratio = ratio;
+        this.minRetries = minRetries;
+    }
+
+    public void succeeded(String host) {
+        hosts.computeIfAbsent(host, key -> new Host()).succeeded++;
+    }
+
+    public boolean tryRetry(String host) {
+        final Host entry = hosts.computeIfAbsent(host, key -> new Host());
+        if (entry.retries >= minRetries + ratio * entry.succeeded) {
+            return false;
+        }
+
+        entry.retries++;
+        return true;
+    }
+
+    public int retriesOf(String host) {
+        final Host entry = hosts.get(host);
+        return entry == null ? 0 : entry.retries;
+    }
+
+    protected static class Host {
+        int succeeded;
+        int retries;
+    }
+}
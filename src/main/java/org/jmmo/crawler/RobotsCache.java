@@ -0,0 +1,56 @@
+package org.jmmo.crawler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class RobotsCache {
+
+    protected final long ttl;
+    protected final Map<String, Entry> entries;
+
+    public RobotsCache(int maxSize, long ttl) {
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public RobotsRules get(String origin, long now) {
+        final Entry entry = entries.get(origin);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expires <= now) {
+            entries.remove(origin);
+            return null;
+        }
+
+        return entry.rules;
+    }
+
+    public void put(String origin, RobotsRules rules, long now) {
+        put(origin, rules, now, ttl);
+    }
+
+    public void put(String origin, RobotsRules rules, long now, long ttl) {
+        entries.put(origin, new Entry(rules, now + ttl));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    protected static class Entry {
+        final RobotsRules rules;
+        final long expires;
+
+        Entry(RobotsRules rules, long expires) {
+            this.rules = rules;
+            this.expires = expires;
+        }
+    }
+}
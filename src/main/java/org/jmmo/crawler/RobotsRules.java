@@ -0,0 +1,154 @@
+package org.jmmo.crawler;
+
+import java.util.*;
+
+public class RobotsRules {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(Collections.emptyList(), -1);
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(Collections.singletonList(new Rule("/", false)), -1);
+
+    protected final List<Rule> rules;
+    protected final long crawlDelay;
+
+    protected RobotsRules(List<Rule> rules, long crawlDelay) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+    }
+
+    public static RobotsRules parse(String content, String userAgent) {
+        if (content == null || content.isEmpty()) {
+            return ALLOW_ALL;
+        }
+
+        final String agent = userAgent.toLowerCase(Locale.ROOT);
+
+        final List<Rule> agentRules = new ArrayList<>();
+        final List<Rule> anyRules = new ArrayList<>();
+        long agentDelay = -1;
+        long anyDelay = -1;
+        boolean agentFound = false;
+
+        boolean forAgent = false;
+        boolean forAny = false;
+        boolean groupStarted = false;
+
+        for (String line : content.split("\r\n|\r|\n")) {
+            final int commentIndex = line.indexOf('#');
+            if (commentIndex > -1) {
+                line = line.substring(0, commentIndex);
+            }
+
+            final int colonIndex = line.indexOf(':');
+            if (colonIndex == -1) {
+                continue;
+            }
+
+            final String field = line.substring(0, colonIndex).trim().toLowerCase(Locale.ROOT);
+            final String value = line.substring(colonIndex + 1).trim();
+
+            if ("user-agent".equals(field)) {
+                if (groupStarted) {
+                    forAgent = false;
+                    forAny = false;
+                    groupStarted = false;
+                }
+
+                final String name = value.toLowerCase(Locale.ROOT);
+                if ("*".equals(name)) {
+                    forAny = true;
+                } else if (!name.isEmpty() && agent.contains(name)) {
+                    forAgent = true;
+                    agentFound = true;
+                }
+            } else if ("allow".equals(field) || "disallow".equals(field)) {
+                groupStarted = true;
+                if (value.isEmpty()) {
+                    continue;
+                }
+
+                final Rule rule = new Rule(value, "allow".equals(field));
+                if (forAgent) {
+                    agentRules.add(rule);
+                }
+                if (forAny) {
+                    anyRules.add(rule);
+                }
+            } else if ("crawl-delay".equals(field)) {
+                groupStarted = true;
+                try {
+                    final long delay = (long) (Double.parseDouble(value) * 1000);
+                    if (forAgent) {
+                        agentDelay = delay;
+                    }
+                    if (forAny) {
+                        anyDelay = delay;
+                    }
+                } catch (NumberFormatException e) {
+                    // ignore malformed delay
+                }
+            }
+        }
+
+        final List<Rule> rules = agentFound ? agentRules : anyRules;
+        rules.sort((r1, r2) -> r1.length != r2.length ? Integer.compare(r2.length, r1.length) : Boolean.compare(r2.allow, r1.allow));
+
+        return new RobotsRules(rules, agentFound ? agentDelay : anyDelay);
+    }
+
+    public boolean isAllowed(String path) {
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+
+        for (Rule rule : rules) {
+            if (rule.matches(path)) {
+                return rule.allow;
+            }
+        }
+
+        return true;
+    }
+
+    public long getCrawlDelay() {
+        return crawlDelay;
+    }
+
+    protected static class Rule {
+        final boolean allow;
+        final int length;
+        final String[] segments;
+        final boolean anchored;
+
+        Rule(String pattern, boolean allow) {
+            this.allow = allow;
+            this.length = pattern.length();
+            this.anchored = pattern.endsWith("$");
+            this.segments = (anchored ? pattern.substring(0, pattern.length() - 1) : pattern).split("\\*", -1);
+        }
+
+        boolean matches(String path) {
+            if (segments.length == 1) {
+                return anchored ? path.equals(segments[0]) : path.startsWith(segments[0]);
+            }
+
+            if (!path.startsWith(segments[0])) {
+                return false;
+            }
+
+            int index = segments[0].length();
+            final int last = segments.length - 1;
+            for (int i = 1; i < last; i++) {
+                index = path.indexOf(segments[i], index);
+                if (index == -1) {
+                    return false;
+                }
+                index += segments[i].length();
+            }
+
+            if (anchored) {
+                return path.length() - segments[last].length() >= index && path.endsWith(segments[last]);
+            }
+
+            return path.indexOf(segments[last], index) > -1;
+        }
+    }
+}
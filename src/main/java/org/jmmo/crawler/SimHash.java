@@ -0,0 +1,60 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.buffer.Buffer;
+
+public class SimHash {
+    protected final int[] weights = new int[64];
+    protected boolean tag;
+    protected boolean word;
+    protected long wordHash;
+
+    public void feed(Buffer buffer) {
+        for (int i = 0; i < buffer.length(); i++) {
+            final byte b = buffer.getByte(i);
+
+            if (tag) {
+                tag = b != '>';
+            } else if (b == '<') {
+                endWord();
+                tag = true;
+            } else if (Character.isLetterOrDigit(b) || b < 0) {
+                if (!word) {
+                    word = true;
+                    wordHash = Fingerprint.SEED;
+                }
+                wordHash ^= Character.toLowerCase((char) (b & 0xff));
+                wordHash *= 0x100000001b3L;
+            } else {
+                endWord();
+            }
+        }
+    }
+
+    public long value() {
+        endWord();
+
+        long value = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                value |= 1L << bit;
+            }
+        }
+        return value;
+    }
+
+    public static int distance(long simHash1, long simHash2) {
+        return Long.bitCount(simHash1 ^ simHash2);
+    }
+
+    protected void endWord() {
+        if (!word) {
+            return;
+        }
+
+        word = false;
+        final long hash = Fingerprint.mix(wordHash);
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+    }
+}
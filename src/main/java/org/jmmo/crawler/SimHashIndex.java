@@ -0,0 +1,54 @@
+package org.jmmo.crawler;
+
+import java.util.Arrays;
+
+public class SimHashIndex {
+    public static final int BANDS = 4;
+    public static final int MAX_DISTANCE = BANDS - 1;
+
+    protected final LongLongHashMap heads = new LongLongHashMap();
+    protected long[] simHashes = new long[1024];
+    protected int[] records = new int[1024];
+    protected int[] next = new int[1024 * BANDS];
+    protected int size;
+
+    public int find(long simHash, int maxDistance) {
+        for (int band = 0; band < BANDS; band++) {
+            int entry = (int) heads.get(key(simHash, band), -1);
+            while (entry >= 0) {
+                if (SimHash.distance(simHashes[entry], simHash) <= maxDistance) {
+                    return records[entry];
+                }
+                entry = next[entry * BANDS + band];
+            }
+        }
+
+        return -1;
+    }
+
+    public void add(long simHash, int record) {
+        if (size == records.length) {
+            final int capacity = size + (size >> 1);
+            simHashes = Arrays.copyOf(simHashes, capacity);
+            records = Arrays.copyOf(records, capacity);
+            next = Arrays.copyOf(next, capacity * BANDS);
+        }
+
+        final int entry = size++;
+        simHashes[entry] = simHash;
+        records[entry] = record;
+        for (int band = 0; band < BANDS; band++) {
+            final long key = key(simHash, band);
+            next[entry * BANDS + band] = (int) heads.get(key, -1);
+            heads.put(key, entry);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    protected static long key(long simHash, int band) {
+        return ((long) band << 16) | ((simHash >>> (band * 16)) & 0xffff);
+    }
+}
@@ -0,0 +1,51 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+public class TapWriteStream implements WriteStream<Buffer> {
+
+    protected final WriteStream<Buffer> delegate;
+    protected final Handler<Buffer> tap;
+
+    public TapWriteStream(WriteStream<Buffer> delegate, Handler<Buffer> tap) {
+        this.delegate = delegate;
+        this.tap = tap;
+    }
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+        delegate.exceptionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public WriteStream<Buffer> write(Buffer data) {
+        tap.handle(data);
+        delegate.write(data);
+        return this;
+    }
+
+    @Override
+    public void end() {
+        delegate.end();
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+        delegate.setWriteQueueMaxSize(maxSize);
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        return delegate.writeQueueFull();
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+        delegate.drainHandler(handler);
+        return this;
+    }
+}
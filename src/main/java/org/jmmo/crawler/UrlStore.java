@@ -0,0 +1,146 @@
+package org.jmmo.crawler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class UrlStore implements Closeable {
+
+    protected final LongLongHashMap index;
+    protected final BloomFilter bloomFilter;
+    protected final Map<Long, String> cache;
+
+    protected final DataOutputStream output;
+    protected final RandomAccessFile input;
+    protected long length;
+    protected long flushed;
+
+    protected long[] urlOffsets = new long[1024];
+    protected long[] fileOffsets = new long[1024];
+    protected long[] baseOffsets = new long[1024];
+    protected byte[] levels = new byte[1024];
+    protected int records;
+
+    public UrlStore(Path file, int expected, int bloomFilterSize, int cacheSize) throws IOException {
+        Files.createDirectories(file.getParent());
+
+        index = new LongLongHashMap(expected);
+        bloomFilter = bloomFilterSize > 0 ? new BloomFilter(bloomFilterSize, 0.01) : null;
+        cache = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 64 * 1024));
+        input = new RandomAccessFile(file.toFile(), "r");
+    }
+
+    public int find(String url) {
+        final long fingerprint = Fingerprint.of(url);
+        if (bloomFilter != null && !bloomFilter.mightContain(fingerprint)) {
+            return -1;
+        }
+
+        return (int) index.get(fingerprint, -1);
+    }
+
+    public int add(String url, String file, int level) throws IOException {
+        if (records == levels.length) {
+            final int capacity = records + (records >> 1);
+            urlOffsets = Arrays.copyOf(urlOffsets, capacity);
+            fileOffsets = Arrays.copyOf(fileOffsets, capacity);
+            baseOffsets = Arrays.copyOf(baseOffsets, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+        }
+
+        final int record = records++;
+        urlOffsets[record] = write(url);
+        fileOffsets[record] = write(file);
+        baseOffsets[record] = -1;
+        levels[record] = (byte) level;
+
+        alias(url, record);
+        return record;
+    }
+
+    public void alias(String url, int record) {
+        final long fingerprint = Fingerprint.of(url);
+        index.put(fingerprint, record);
+        if (bloomFilter != null) {
+            bloomFilter.add(fingerprint);
+        }
+    }
+
+    public int level(int record) {
+        return levels[record];
+    }
+
+    public void setLevel(int record, int level) {
+        levels[record] = (byte) level;
+    }
+
+    public String url(int record) throws IOException {
+        return read(urlOffsets[record]);
+    }
+
+    public String file(int record) throws IOException {
+        return read(fileOffsets[record]);
+    }
+
+    public String base(int record) throws IOException {
+        return baseOffsets[record] < 0 ? null : read(baseOffsets[record]);
+    }
+
+    public void setBase(int record, String baseUrl) throws IOException {
+        baseOffsets[record] = write(baseUrl);
+    }
+
+    public int urls() {
+        return index.size();
+    }
+
+    public int records() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+        input.close();
+    }
+
+    protected long write(String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+
+        final long offset = length;
+        length += 4 + bytes.length;
+        return offset;
+    }
+
+    protected String read(long offset) throws IOException {
+        final String cached = cache.get(offset);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (offset >= flushed) {
+            output.flush();
+            flushed = length;
+        }
+
+        input.seek(offset);
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        final String value = new String(bytes, StandardCharsets.UTF_8);
+        cache.put(offset, value);
+        return value;
+    }
+}
@@ -0,0 +1,122 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.json.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ValidatorStore implements Closeable {
+    public static final String VALIDATORS = "validators.jsonl";
+
+    protected final Path file;
+    protected final Map<Long, Validator> validators = new HashMap<>();
+    protected BufferedWriter writer;
+
+    public ValidatorStore(Path dir) {
+        this.file = dir.resolve(VALIDATORS);
+    }
+
+    public void open() throws IOException {
+        Files.createDirectories(file.getParent());
+
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        final JsonObject record = new JsonObject(line);
+                        validators.put(record.getLong("key"), new Validator(record.getString("file"),
+                                record.getString("etag"), record.getString("lastModified"), record.getLong("hash")));
+                    } catch (RuntimeException e) {
+                        // the tail of the file may be truncated by a crash
+                        break;
+                    }
+                }
+            }
+        }
+
+        // the pages deleted since the last crawling cannot be validated
+        validators.values().removeIf(validator -> !Files.exists(Paths.get(validator.file)));
+
+        final Path temp = file.resolveSibling(VALIDATORS + ".tmp");
+        writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+        for (Map.Entry<Long, Validator> entry : validators.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+        writer.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    public Validator get(String url) {
+        return validators.get(Fingerprint.of(url));
+    }
+
+    public void put(String url, Validator validator) throws IOException {
+        final long key = Fingerprint.of(url);
+        validators.put(key, validator);
+        write(key, validator);
+    }
+
+    public int size() {
+        return validators.size();
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    protected void write(long key, Validator validator) throws IOException {
+        writer.write(new JsonObject().put("key", key).put("file", validator.file).put("etag", validator.etag)
+                .put("lastModified", validator.lastModified).put("hash", validator.hash).encode());
+        writer.newLine();
+    }
+
+    public static class Validator {
+        final String file;
+        final String etag;
+        final String lastModified;
+        final Long hash;
+
+        public Validator(String file, String etag, String lastModified, Long hash) {
+            this.file = file;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public Long getHash() {
+            return hash;
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package org.jmmo.crawler.search;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Optional;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.regex.Pattern;
 
 public class DirScannerVehicle extends AbstractVerticle {
     private static final Logger log = LoggerFactory.getLogger(DirScannerVehicle.class);
 
+    protected final Map<Long, Scan> scans = new HashMap<>();
+    protected long lastScanId;
+
     @Override
     public void start() throws Exception {
         log.debug("started");
@@ -20,48 +28,69 @@ public class DirScannerVehicle extends AbstractVerticle {
 
             final JsonObject messageJson = (JsonObject) message.body();
             final String path = messageJson.getString("path");
-            final Optional<Pattern> fileFilterOpt = Optional.ofNullable(messageJson.getString("fileFilter")).map(Pattern::compile);
+            final JsonObject find = messageJson.getJsonObject("find");
+            // finders have the next batch at hand but the walk is held when they are behind
+            final int inFlight = messageJson.getInteger("inFlight", 4);
 
-            try {
-                getVertx().fileSystem().readDir(path, messageJson.getString("filter"), dirResult -> {
-                    if (dirResult.failed()) {
-                        log.error("Fail during reading dir " + path, dirResult.cause());
-                        sendFail(path);
-                        return;
+            final JsonArray files = messageJson.getJsonArray("files");
+            if (files != null) {
+                final Queue<List<String>> batches = new ArrayDeque<>();
+                for (int i = 0; i < files.size(); i += DirWalker.BATCH_FILES) {
+                    final List<String> batch = new ArrayList<>();
+                    for (int j = i; j < Math.min(i + DirWalker.BATCH_FILES, files.size()); j++) {
+                        batch.add(files.getString(j));
                     }
+                    batches.add(batch);
+                }
 
-                    if (dirResult.result().isEmpty()) {
-                        getVertx().eventBus().send(SearchMessages.SCAN_COMPLETED, path);
-                        return;
-                    }
+                final Scan scan = new Scan(++lastScanId, path, batches, find, inFlight);
+                scans.put(scan.id, scan);
+                scan.walked(true);
+                return;
+            }
+
+            final Optional<Pattern> fileFilterOpt = Optional.ofNullable(messageJson.getString("fileFilter")).map(Pattern::compile);
+            final Path skip = Optional.ofNullable(messageJson.getString("skip")).map(Paths::get).orElse(null);
+            final BlockingQueue<List<String>> batches = new ArrayBlockingQueue<>(inFlight);
+            final Scan scan = new Scan(++lastScanId, path, batches, find, inFlight);
+            scans.put(scan.id, scan);
+
+            final DirWalker walker = scan.walker = new DirWalker(messageJson.getInteger("walkers", Runtime.getRuntime().availableProcessors()),
+                    batches, fileFilterOpt, skip, () -> context.runOnContext(v -> scan.pump()));
+            final long started = System.currentTimeMillis();
+
+            getVertx().<Integer>executeBlocking(future -> {
+                try {
+                    future.complete(walker.walk(Paths.get(path)));
+                } catch (Exception e) {
+                    future.fail(e);
+                } finally {
+                    walker.close();
+                }
+            }, false, ar -> {
+                if (scan.cancelled) {
+                    log.debug("Cancelled the walk of " + path);
+                } else if (ar.failed()) {
+                    log.error("Failed to scan " + path, ar.cause());
+                } else {
+                    log.info("Walked " + path + " in " + (System.currentTimeMillis() - started) + " ms with " + ar.result() + " files");
+                }
+                scan.walked(ar.succeeded());
+            });
+        });
+
+        getVertx().eventBus().consumer(SearchMessages.CANCEL, message -> {
+            log.debug("Cancelling " + scans.size() + " scans");
+            // the walks are stopped and the batches not sent yet are dropped, the completion is not reported
+            scans.values().forEach(Scan::cancel);
+            scans.clear();
+        });
 
-                    final int[] counter = new int[1];
-                    dirResult.result().forEach(fileOrDir -> {
-                        getVertx().fileSystem().lprops(fileOrDir, propsResult -> {
-                            if (propsResult.failed()) {
-                                log.error("Fail during props retrieving for " + fileOrDir, dirResult.cause());
-                            } else if (propsResult.result().isDirectory()) {
-                                getVertx().eventBus().send(SearchMessages.SCANNED_DIRECTORY, fileOrDir);
-                            } else if (propsResult.result().isRegularFile()) {
-                                if (fileFilterOpt.map(pattern -> pattern.matcher(fileOrDir).find()).orElse(true)) {
-                                    getVertx().eventBus().send(SearchMessages.SCANNED_FILE, fileOrDir);
-                                } else {
-                                    log.trace("File " + fileOrDir + " doesn't match regexp " + fileFilterOpt);
-                                }
-                            } else {
-                                log.info("Found neither file nor directory " + fileOrDir);
-                            }
-
-                            if (++counter[0] == dirResult.result().size()) {
-                                getVertx().eventBus().send(SearchMessages.SCAN_COMPLETED, path);
-                            }
-                        });
-                    });
-                });
-
-            } catch (Exception e) {
-                log.error("Failed to scan " + path, e);
-                sendFail(path);
+        getVertx().eventBus().consumer(SearchMessages.BATCH_DONE, message -> {
+            final Scan scan = scans.get((Long) message.body());
+            if (scan != null) {
+                scan.inFlight--;
+                scan.pump();
             }
         });
     }
@@ -71,7 +100,54 @@ public class DirScannerVehicle extends AbstractVerticle {
         log.debug("stopped");
     }
 
-    protected void sendFail(String path) {
-        getVertx().eventBus().send(SearchMessages.SCAN_FAILED, path);
+    protected class Scan {
+        protected final long id;
+        protected final String path;
+        protected final Queue<List<String>> batches;
+        protected final JsonObject find;
+        protected final int maxInFlight;
+        protected int inFlight;
+        protected boolean walking = true;
+        protected boolean succeeded;
+        protected boolean cancelled;
+        protected DirWalker walker;
+
+        protected Scan(long id, String path, Queue<List<String>> batches, JsonObject find, int maxInFlight) {
+            this.id = id;
+            this.path = path;
+            this.batches = batches;
+            this.find = find;
+            this.maxInFlight = maxInFlight;
+        }
+
+        protected void walked(boolean succeeded) {
+            this.succeeded = succeeded;
+            walking = false;
+            pump();
+        }
+
+        protected void cancel() {
+            cancelled = true;
+            if (walker != null) {
+                walker.close();
+            }
+            batches.clear();
+        }
+
+        protected void pump() {
+            if (cancelled) {
+                return;
+            }
+
+            List<String> batch;
+            while (inFlight < maxInFlight && (batch = batches.poll()) != null) {
+                inFlight++;
+                getVertx().eventBus().send(SearchMessages.FIND, find.copy().put("files", new JsonArray(new ArrayList<>(batch))).put("scan", id));
+            }
+
+            if (!walking && inFlight == 0 && batches.isEmpty() && scans.remove(id) != null) {
+                getVertx().eventBus().send(succeeded ? SearchMessages.SCAN_COMPLETED : SearchMessages.SCAN_FAILED, path);
+            }
+        }
     }
 }
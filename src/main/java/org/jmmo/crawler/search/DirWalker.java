@@ -0,0 +1,145 @@
+package org.jmmo.crawler.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+public class DirWalker implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DirWalker.class);
+
+    public static final int BATCH_FILES = 256;
+    public static final long BATCH_BYTES = 1024 * 1024;
+
+    protected final ForkJoinPool pool;
+    protected final BlockingQueue<List<String>> queue;
+    protected final Optional<Pattern> fileFilterOpt;
+    protected final Path skip;
+    protected final Runnable batchHandler;
+    // every worker fills its own batch, so the batches are not shared while the walk goes
+    protected final Map<Thread, Batch> batches = new ConcurrentHashMap<>();
+    protected volatile boolean cancelled;
+
+    public DirWalker(int parallelism, BlockingQueue<List<String>> queue, Optional<Pattern> fileFilterOpt, Path skip, Runnable batchHandler) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.queue = queue;
+        this.fileFilterOpt = fileFilterOpt;
+        this.skip = skip;
+        this.batchHandler = batchHandler;
+    }
+
+    public int walk(Path root) {
+        // the paths are absolute to be compared with the skipped directory
+        final Path absoluteRoot = root.toAbsolutePath().normalize();
+        if (!absoluteRoot.equals(skip)) {
+            pool.invoke(new DirTask(absoluteRoot));
+        }
+
+        int files = 0;
+        for (Batch batch : batches.values()) {
+            files += batch.count;
+            if (!batch.files.isEmpty()) {
+                put(batch.files);
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public void close() {
+        cancelled = true;
+        pool.shutdownNow();
+    }
+
+    protected void add(Batch batch, Path file, long size) {
+        batch.files.add(file.toString());
+        batch.bytes += size;
+        batch.count++;
+
+        if (batch.files.size() >= BATCH_FILES || batch.bytes >= BATCH_BYTES) {
+            put(batch.files);
+            batch.files = new ArrayList<>();
+            batch.bytes = 0;
+        }
+    }
+
+    // the walk waits while the queue is full, so it goes no faster than the finders
+    protected void put(List<String> files) {
+        try {
+            while (!cancelled) {
+                if (queue.offer(files, 100, TimeUnit.MILLISECONDS)) {
+                    batchHandler.run();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelled = true;
+        }
+    }
+
+    protected static class Batch {
+        protected List<String> files = new ArrayList<>();
+        protected long bytes;
+        protected int count;
+    }
+
+    protected class DirTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        protected final Path dir;
+
+        protected DirTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+
+            final Batch batch = batches.computeIfAbsent(Thread.currentThread(), thread -> new Batch());
+            final List<DirTask> subtasks = new ArrayList<>();
+            try {
+                // the attributes of entries come with the listing where the platform allows it
+                Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                        if (attributes.isDirectory()) {
+                            if (!file.equals(skip)) {
+                                subtasks.add(new DirTask(file));
+                            }
+                        } else if (attributes.isRegularFile()) {
+                            if (fileFilterOpt.map(pattern -> pattern.matcher(file.toString()).find()).orElse(true)) {
+                                add(batch, file, attributes.size());
+                            }
+                        } else {
+                            log.debug("Found neither file nor directory " + file);
+                        }
+                        return cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                        log.error("Fail during reading " + file + " " + e);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                log.error("Fail during reading dir " + dir, e);
+            }
+
+            invokeAll(subtasks);
+        }
+    }
+}
@@ -4,28 +4,60 @@ import io.vertx.core.DeploymentOptions;
 import io.vertx.core.cli.CLIException;
 import io.vertx.core.cli.annotations.*;
 import io.vertx.core.impl.launcher.commands.BareCommand;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 @Name("find")
-@Summary("Find the word in directory recursively")
+@Summary("Find the words in directory recursively")
 public class FindCommand extends BareCommand {
 
-    private String word;
+    private List<String> words;
+    private String terms;
+    private String query;
     private String dir;
     private String extension;
     private Integer finders;
+    private Integer walkers;
     private boolean sensitive;
     private boolean whole;
+    private String index;
+    private Boolean verifyIndex;
+    private String format;
+    private String output;
+    private Integer top;
+    private Integer maxHits;
+    private boolean filesWithMatches;
+    private boolean lines;
 
-    @Argument(index = 0, argName = "word", required = true)
-    @Description("The word for searching.")
-    public void setWord(String word) {
-        this.word = word;
+    @Argument(index = 0, argName = "word", required = false)
+    @Description("The words for searching, all of them are searched in one pass over every file.")
+    public void setWords(List<String> words) {
+        this.words = words;
+    }
+
+    @Option(longName = "terms", argName = "file")
+    @Description("Specifies file with the words for searching, one word in a line, empty lines and lines started with # are skipped.")
+    public void setTerms(String terms) {
+        this.terms = terms;
+    }
+
+    @Option(longName = "query", argName = "query")
+    @Description("Specifies expression of the words joined by AND, OR, NOT and parentheses, adjacent words mean AND " +
+            "and quotes keep a phrase. Its words are searched too, but only files matching it are reported.")
+    public void setQuery(String query) {
+        this.query = query;
     }
 
     @Option(longName = "dir", argName = "directory")
@@ -51,6 +83,12 @@ public class FindCommand extends BareCommand {
         this.finders = finders;
     }
 
+    @Option(longName = "walkers", argName = "walkers")
+    @Description("Specifies how many threads walk the directory tree. Defaults is the number of processors.")
+    public void setWalkers(int walkers) {
+        this.walkers = walkers;
+    }
+
     @Option(longName = "sensitive", argName = "sensitive", flag = true)
     @Description("Will the search case sensitive or not. Defaults is false.")
     public void setSensitive(boolean sensitive) {
@@ -63,6 +101,61 @@ public class FindCommand extends BareCommand {
         this.whole = whole;
     }
 
+    @Option(longName = "index", argName = "index")
+    @Description("Specifies directory of the index built by index command, it is used if it exists. " +
+            "Defaults is .index subdirectory of the searching directory.")
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    @Option(longName = "verifyIndex", argName = "verifyIndex")
+    @Description("Specifies would be files added or changed since indexing found and scanned or the index trusted. Defaults is true.")
+    public void setVerifyIndex(String verifyIndex) {
+        this.verifyIndex = Boolean.valueOf(verifyIndex);
+    }
+
+    @Option(longName = "format", argName = "format")
+    @Description("Specifies format of the results, text or jsonl with a JSON object for every file and the totals in the last line. " +
+            "Defaults is text.")
+    @DefaultValue("text")
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    @Option(longName = "output", argName = "file")
+    @Description("Specifies file the results are written to as they are found. Defaults is standard output.")
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    @Option(longName = "top", argName = "top")
+    @Description("Specifies how many files with the most entries are reported at the end instead of all files as they are found. " +
+            "Defaults is 0 means all files.")
+    @DefaultValue("0")
+    public void setTop(int top) {
+        this.top = top;
+    }
+
+    @Option(longName = "maxHits", argName = "maxHits")
+    @Description("Specifies after how many found files the search is stopped. Defaults is 0 means no limit.")
+    @DefaultValue("0")
+    public void setMaxHits(int maxHits) {
+        this.maxHits = maxHits;
+    }
+
+    @Option(longName = "filesWithMatches", argName = "filesWithMatches", flag = true)
+    @Description("Report names of the found files only, every file is left at the first entry. Defaults is false.")
+    public void setFilesWithMatches(boolean filesWithMatches) {
+        this.filesWithMatches = filesWithMatches;
+    }
+
+    @Option(longName = "lines", argName = "lines", flag = true)
+    @Description("Report line, byte offset and snippet of the first " + FinderVehicle.MAX_HITS + " entries in every file. " +
+            "Defaults is false.")
+    public void setLines(boolean lines) {
+        this.lines = lines;
+    }
+
     @Override
     public boolean isClustered() {
         return false;
@@ -80,14 +173,59 @@ public class FindCommand extends BareCommand {
         super.run();
 
         log.info("Finder parameters:");
-        log.info("Word: " + word);
+        final Set<String> allWords = new LinkedHashSet<>();
+        if (words != null) {
+            allWords.addAll(words);
+        }
+
+        if (terms != null) {
+            try {
+                Files.readAllLines(Paths.get(terms), StandardCharsets.UTF_8).stream().map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#")).forEach(allWords::add);
+            } catch (IOException e) {
+                log.error("Cannot read the words from " + terms, e);
+                return;
+            }
+        }
+
+        if (query != null) {
+            try {
+                allWords.addAll(new FindQuery(query).words());
+            } catch (IllegalArgumentException e) {
+                log.error(e.getMessage());
+                return;
+            }
+        }
+
+        log.info("Words: " + allWords);
+        log.info("Query: " + (query != null ? query : "any word"));
         log.info("Directory: " + dir);
         log.info("Extension: " + extension);
         log.info("Finders: " + finders);
+        if (walkers == null) {
+            walkers = Runtime.getRuntime().availableProcessors();
+        }
+        log.info("Walkers: " + walkers);
         log.info("Sensitive: " + sensitive);
         log.info("Whole: " + whole);
 
-        if (word.trim().isEmpty()) {
+        final Path indexDir = (index != null ? Paths.get(index) : Paths.get(dir).resolve(SearchIndex.INDEX_DIR)).toAbsolutePath().normalize();
+        final boolean useIndex = SearchIndex.exists(indexDir);
+        log.info("Index: " + (useIndex ? indexDir : "none"));
+        log.info("Verify index: " + (verifyIndex == null || verifyIndex));
+        log.info("Format: " + format);
+        log.info("Output: " + (output != null ? output : "standard output"));
+        log.info("Top: " + top);
+        log.info("Max hits: " + maxHits);
+        log.info("Files with matches: " + filesWithMatches);
+        log.info("Lines: " + lines);
+
+        if (!"text".equals(format) && !"jsonl".equals(format)) {
+            log.error("Unknown format " + format);
+            return;
+        }
+
+        if (allWords.isEmpty() || allWords.stream().anyMatch(word -> word.trim().isEmpty())) {
             log.error("The word for searching cannot be empty");
             return;
         }
@@ -98,11 +236,23 @@ public class FindCommand extends BareCommand {
         }
 
         final JsonObject conf = new JsonObject();
-        conf.put("word", word);
+        conf.put("words", new JsonArray(new ArrayList<>(allWords)));
+        conf.put("query", query);
         conf.put("dir", dir);
         conf.put("ext", extension);
+        conf.put("finders", finders);
+        conf.put("walkers", walkers);
         conf.put("sensitive", sensitive);
         conf.put("whole", whole);
+        conf.put("index", indexDir.toString());
+        conf.put("useIndex", useIndex);
+        conf.put("verifyIndex", verifyIndex == null || verifyIndex);
+        conf.put("format", format);
+        conf.put("output", output);
+        conf.put("top", top);
+        conf.put("maxHits", maxHits);
+        conf.put("filesWithMatches", filesWithMatches);
+        conf.put("lines", lines);
 
         vertx.eventBus().consumer(SearchMessages.DONE, message -> {
             log.info("All jobs done");
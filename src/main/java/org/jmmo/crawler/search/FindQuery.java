@@ -0,0 +1,133 @@
+package org.jmmo.crawler.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+public class FindQuery {
+    public static final String AND = "AND";
+    public static final String OR = "OR";
+    public static final String NOT = "NOT";
+
+    protected final String expression;
+    protected final List<String> tokens = new ArrayList<>();
+    protected final Set<String> words = new LinkedHashSet<>();
+    protected final Predicate<Predicate<String>> root;
+    protected int position;
+
+    // words are joined by AND, OR, NOT and parentheses, adjacent words mean AND and quotes keep a phrase together
+    public FindQuery(String expression) {
+        this.expression = expression;
+        tokenize();
+        root = or();
+        if (position < tokens.size()) {
+            throw error("unexpected " + tokens.get(position));
+        }
+    }
+
+    public List<String> words() {
+        return new ArrayList<>(words);
+    }
+
+    public boolean test(Predicate<String> found) {
+        return root.test(found);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    protected Predicate<Predicate<String>> or() {
+        Predicate<Predicate<String>> result = and();
+        while (accept(OR)) {
+            result = result.or(and());
+        }
+        return result;
+    }
+
+    protected Predicate<Predicate<String>> and() {
+        Predicate<Predicate<String>> result = not();
+        while (position < tokens.size() && !OR.equals(tokens.get(position)) && !")".equals(tokens.get(position))) {
+            accept(AND);
+            result = result.and(not());
+        }
+        return result;
+    }
+
+    protected Predicate<Predicate<String>> not() {
+        if (position >= tokens.size()) {
+            throw error("unexpected end");
+        }
+
+        final String token = tokens.get(position++);
+        switch (token) {
+            case NOT:
+                return not().negate();
+            case "(":
+                final Predicate<Predicate<String>> result = or();
+                if (!accept(")")) {
+                    throw error("missing )");
+                }
+                return result;
+            case AND:
+            case OR:
+            case ")":
+                throw error("unexpected " + token);
+            default:
+                final String word = token.startsWith("\"") ? token.substring(1) : token;
+                if (word.isEmpty()) {
+                    throw error("empty word");
+                }
+                words.add(word);
+                return found -> found.test(word);
+        }
+    }
+
+    protected boolean accept(String token) {
+        if (position < tokens.size() && token.equals(tokens.get(position))) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    // quoted tokens start with the quote to be distinguished from the operators
+    protected void tokenize() {
+        int i = 0;
+        while (i < expression.length()) {
+            final char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '"') {
+                final int end = expression.indexOf('"', i + 1);
+                if (end == -1) {
+                    throw error("missing closing quote");
+                }
+                tokens.add(expression.substring(i, end));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < expression.length() && !Character.isWhitespace(expression.charAt(end))
+                        && "()\"".indexOf(expression.charAt(end)) == -1) {
+                    end++;
+                }
+                tokens.add(expression.substring(i, end));
+                i = end;
+            }
+        }
+
+        if (tokens.isEmpty()) {
+            throw error("no words");
+        }
+    }
+
+    protected IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Wrong query '" + expression + "': " + message);
+    }
+}
@@ -1,20 +1,40 @@
 package org.jmmo.crawler.search;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import org.jmmo.crawler.GzipWriteStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 public class FinderVehicle extends AbstractVerticle {
     private static final Logger log = LoggerFactory.getLogger(FinderVehicle.class);
 
+    public static final int MAX_HITS = 100;
+
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(WordMatcher.BUFFER_SIZE);
+    protected String matcherKey;
+    protected Optional<WordMatcher> matcherOpt = Optional.empty();
+    protected MultiWordMatcher multiMatcher;
+
     @Override
     public void start() throws Exception {
         log.debug("started");
@@ -23,40 +43,133 @@ public class FinderVehicle extends AbstractVerticle {
             log.debug("Find " + message.body());
 
             final JsonObject messageJson = (JsonObject) message.body();
-            final Path file = Paths.get(messageJson.getString("file"));
-
-            if (!Files.exists(file)) {
-                log.error("File " + file + " is not found");
-                sendFail(file);
-                return;
+            final JsonArray words = messageJson.getJsonArray("words");
+            final boolean sensitive = messageJson.getBoolean("sensitive", false);
+            final boolean whole = messageJson.getBoolean("whole", false);
+
+            // all files of the search are looked for the same words
+            final String key = sensitive + " " + whole + " " + words.encode();
+            if (!key.equals(matcherKey)) {
+                matcherKey = key;
+                if (words.size() == 1) {
+                    matcherOpt = WordMatcher.of(words.getString(0), sensitive, whole);
+                    multiMatcher = matcherOpt.isPresent() ? null : MultiWordMatcher.of(Collections.singletonList(words.getString(0)), sensitive, whole);
+                } else {
+                    // many words are looked for by the single automaton in one pass over the file
+                    multiMatcher = MultiWordMatcher.of(words.stream().map(String.class::cast).collect(Collectors.toList()), sensitive, whole);
+                }
             }
 
-            final Pattern pattern = patternFor(messageJson.getString("word"), messageJson.getBoolean("sensitive", false), messageJson.getBoolean("whole", false));
+            // the file is left at the first match and the matches are located for the first lines only
+            final boolean first = messageJson.getBoolean("first", false);
+            final boolean lines = messageJson.getBoolean("lines", false);
+            final List<long[]> hits = new ArrayList<>();
+            final MatchHandler handler = first || lines ? (word, offset) -> {
+                if (lines && hits.size() < MAX_HITS) {
+                    hits.add(new long[] {offset, word});
+                }
+                return !first;
+            } : null;
+
+            // the files come in batches, the scanner knows they exist so they are just opened
+            final JsonArray results = new JsonArray();
+            final JsonArray failed = new JsonArray();
+            for (Object fileName : messageJson.getJsonArray("files")) {
+                if (getVertx().sharedData().getLocalMap(SearchMessages.CANCEL).get(SearchMessages.CANCEL) != null) {
+                    log.debug("Search is cancelled");
+                    break;
+                }
+
+                final Path file = Paths.get((String) fileName);
+                try {
+                    hits.clear();
+                    final int[] counts = multiMatcher != null ? multiMatcher.count(file, buffer, handler)
+                            : new int[] {matcherOpt.get().count(file, buffer, handler)};
+
+                    final JsonArray countsJson = new JsonArray();
+                    for (int count : counts) {
+                        countsJson.add(count);
+                    }
+                    final JsonObject result = new JsonObject().put("file", file.toString()).put("counts", countsJson);
+                    if (lines) {
+                        result.put("hits", locate(file, hits));
+                    }
+                    results.add(result);
 
-            try {
-                final int sum = Files.lines(file).mapToInt(s -> {
-                    int count = 0;
+                } catch (IOException | UncheckedIOException e) {
+                    log.error("Cannot read from " + file + " " + e);
+                    failed.add(file.toString());
+                }
+            }
 
-                    final Matcher matcher = pattern.matcher(s);
-                    while (matcher.find()) {
-                        count++;
-                    }
+            // the files which cannot be read are reported with the batch to be counted in the totals
+            getVertx().eventBus().send(SearchMessages.FOUND, new JsonObject().put("results", results).put("failed", failed));
+            getVertx().eventBus().send(SearchMessages.BATCH_DONE, messageJson.getLong("scan"));
+        });
+    }
 
-                    return count;
-                }).sum();
+    @Override
+    public void stop() throws Exception {
+        log.debug("stopped");
+    }
 
-                getVertx().eventBus().send(SearchMessages.FOUND, new JsonObject().put("file", file.toString()).put("count", sum));
+    public static Stream<String> lines(Path file) throws IOException {
+        return lines(file, CodingErrorAction.REPORT);
+    }
 
+    // the malformed bytes may be replaced by U+FFFD which is not a word character, as they are taken by WordMatcher
+    public static Stream<String> lines(Path file, CodingErrorAction malformed) throws IOException {
+        final InputStream input = file.toString().endsWith(GzipWriteStream.GZIP_EXTENSION)
+                ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file);
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input,
+                StandardCharsets.UTF_8.newDecoder().onMalformedInput(malformed).onUnmappableCharacter(malformed)));
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
             } catch (IOException e) {
-                log.error("Cannot read form " + file);
-                sendFail(file);
+                throw new UncheckedIOException(e);
             }
         });
     }
 
-    @Override
-    public void stop() throws Exception {
-        log.debug("stopped");
+    protected int count(Path file, Pattern pattern) throws IOException {
+        return count(file, pattern, null);
+    }
+
+    // the offsets are counted as the lines are separated by \n
+    protected int count(Path file, Pattern pattern, MatchHandler handler) throws IOException {
+        try (Stream<String> lines = lines(file)) {
+            int count = 0;
+            long lineStart = 0;
+            for (Iterator<String> iterator = lines.iterator(); iterator.hasNext(); ) {
+                final String line = iterator.next();
+
+                final Matcher matcher = pattern.matcher(line);
+                while (matcher.find()) {
+                    count++;
+                    if (handler != null && !handler.match(0, lineStart + line.substring(0, matcher.start()).getBytes(StandardCharsets.UTF_8).length)) {
+                        return count;
+                    }
+                }
+
+                lineStart += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+            return count;
+        }
+    }
+
+    protected JsonArray locate(Path file, List<long[]> hits) throws IOException {
+        hits.sort(Comparator.comparingLong(hit -> hit[0]));
+        final long[] offsets = hits.stream().mapToLong(hit -> hit[0]).toArray();
+
+        final JsonArray hitsJson = new JsonArray();
+        final List<LineLocator.Location> locations = LineLocator.locate(file, offsets);
+        for (int i = 0; i < locations.size(); i++) {
+            final LineLocator.Location location = locations.get(i);
+            hitsJson.add(new JsonObject().put("word", (int) hits.get(i)[1]).put("line", location.getLine())
+                    .put("offset", location.getOffset()).put("snippet", location.getSnippet()));
+        }
+        return hitsJson;
     }
 
     protected Pattern patternFor(String word, boolean sensitive, boolean whole) {
@@ -73,8 +186,4 @@ public class FinderVehicle extends AbstractVerticle {
 
         return Pattern.compile(pattern, flags);
     }
-
-    protected void sendFail(Path file) {
-        getVertx().eventBus().send(SearchMessages.FIND_FAILED, file.toString());
-    }
 }
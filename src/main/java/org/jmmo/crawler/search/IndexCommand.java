@@ -0,0 +1,77 @@
+package org.jmmo.crawler.search;
+
+import io.vertx.core.cli.CLIException;
+import io.vertx.core.cli.annotations.*;
+import io.vertx.core.impl.launcher.commands.BareCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Name("index")
+@Summary("Build the index of words in directory recursively for find command")
+public class IndexCommand extends BareCommand {
+
+    private String dir;
+    private String index;
+
+    @Option(longName = "dir", argName = "directory")
+    @Description("Specifies directory for indexing. Defaults is current directory.")
+    @DefaultValue(".")
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    @Option(longName = "index", argName = "index")
+    @Description("Specifies directory where the index is stored. Defaults is .index subdirectory of the indexing directory.")
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    @Override
+    public boolean isClustered() {
+        return false;
+    }
+
+    @Override
+    public boolean getHA() {
+        return false;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(IndexCommand.class);
+
+    @Override
+    public void run() throws CLIException {
+        super.run();
+
+        final Path indexDir = index != null ? Paths.get(index) : Paths.get(dir).resolve(SearchIndex.INDEX_DIR);
+
+        log.info("Indexer parameters:");
+        log.info("Directory: " + dir);
+        log.info("Index: " + indexDir);
+
+        if (!Files.exists(Paths.get(dir))) {
+            log.error("Indexing directory doesn't exists");
+            vertx.close();
+            return;
+        }
+
+        vertx.<Integer>executeBlocking(future -> {
+            try {
+                future.complete(SearchIndex.build(Paths.get(dir), indexDir));
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, ar -> {
+            if (ar.failed()) {
+                log.error("Cannot build the index", ar.cause());
+            } else {
+                log.info("All jobs done");
+            }
+            vertx.close();
+        });
+    }
+}
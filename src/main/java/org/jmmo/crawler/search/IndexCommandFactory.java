@@ -0,0 +1,10 @@
+package org.jmmo.crawler.search;
+
+import io.vertx.core.spi.launcher.DefaultCommandFactory;
+
+public class IndexCommandFactory extends DefaultCommandFactory<IndexCommand> {
+
+    public IndexCommandFactory() {
+        super(IndexCommand.class);
+    }
+}
@@ -0,0 +1,100 @@
+package org.jmmo.crawler.search;
+
+import org.jmmo.crawler.GzipWriteStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class LineLocator {
+    public static final int SNIPPET_BEFORE = 40;
+    public static final int SNIPPET_AFTER = 80;
+
+    // the offsets must be ascending, the lines are read once for all of them
+    public static List<Location> locate(Path file, long[] offsets) throws IOException {
+        final List<Location> locations = new ArrayList<>(offsets.length);
+        if (offsets.length == 0) {
+            return locations;
+        }
+
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try (InputStream input = open(file)) {
+            long position = 0;
+            long lineStart = 0;
+            int lineNumber = 1;
+            int b;
+            while (locations.size() < offsets.length && (b = input.read()) != -1) {
+                if (b == '\n') {
+                    addLocations(locations, offsets, line.toByteArray(), lineStart, lineNumber);
+                    line.reset();
+                    lineStart = position + 1;
+                    lineNumber++;
+                } else {
+                    line.write(b);
+                }
+                position++;
+            }
+            addLocations(locations, offsets, line.toByteArray(), lineStart, lineNumber);
+        }
+
+        return locations;
+    }
+
+    protected static void addLocations(List<Location> locations, long[] offsets, byte[] line, long lineStart, int lineNumber) {
+        while (locations.size() < offsets.length && offsets[locations.size()] <= lineStart + line.length) {
+            final long offset = offsets[locations.size()];
+            locations.add(new Location(lineNumber, offset, snippet(line, (int) Math.max(0, offset - lineStart))));
+        }
+    }
+
+    protected static String snippet(byte[] line, int position) {
+        int start = Math.max(0, position - SNIPPET_BEFORE);
+        int end = Math.min(line.length, position + SNIPPET_AFTER);
+        // the snippet is cut on the boundaries of code points
+        while (start > 0 && (line[start] & 0xC0) == 0x80) {
+            start--;
+        }
+        while (end < line.length && (line[end] & 0xC0) == 0x80) {
+            end++;
+        }
+        return new String(line, start, end - start, StandardCharsets.UTF_8).trim();
+    }
+
+    protected static InputStream open(Path file) throws IOException {
+        if (file.toString().endsWith(GzipWriteStream.GZIP_EXTENSION)) {
+            return new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 64 * 1024));
+        }
+        return new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+    }
+
+    public static class Location {
+        protected final int line;
+        protected final long offset;
+        protected final String snippet;
+
+        public Location(int line, long offset, String snippet) {
+            this.line = line;
+            this.offset = offset;
+            this.snippet = snippet;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public String getSnippet() {
+            return snippet;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package org.jmmo.crawler.search;
+
+public interface MatchHandler {
+
+    // the offset is in bytes of the file content, the search stops if it returns false
+    boolean match(int word, long offset);
+}
@@ -0,0 +1,363 @@
+package org.jmmo.crawler.search;
+
+import org.jmmo.crawler.GzipWriteStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+public class MultiWordMatcher {
+    protected static final int REPLACEMENT = 0xFFFD;
+    protected static final int MAX_TRANSITIONS = 4 * 1024 * 1024;
+
+    // folding of the basic multilingual plane is computed once, Character.toUpperCase is slow for non ASCII
+    protected static final char[] FOLDS = new char[Character.MAX_VALUE + 1];
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            FOLDS[c] = (char) WordMatcher.fold(c);
+        }
+    }
+
+    protected final int words;
+    protected final boolean sensitive;
+    protected final boolean whole;
+    protected final int[] lengths;
+    protected final boolean[] firstWord;
+    protected final boolean[] lastWord;
+    protected final int maxLength;
+
+    // Aho-Corasick automaton over the columns of the code points met in the words, the column 0 is for all others
+    protected final int[] columns = new int[Character.MAX_VALUE + 1];
+    protected final Map<Integer, Integer> supplementaryColumns = new HashMap<>();
+    protected final int width;
+    protected final int[][] childColumns;
+    protected final int[][] children;
+    protected final int[] fail;
+    protected final int[][] outputs;
+    // the transitions of all states are resolved in advance unless the table is too large
+    protected final int[] transitions;
+
+    protected MultiWordMatcher(List<int[]> codePoints, boolean sensitive, boolean whole) {
+        this.words = codePoints.size();
+        this.sensitive = sensitive;
+        this.whole = whole;
+
+        lengths = new int[words];
+        firstWord = new boolean[words];
+        lastWord = new boolean[words];
+        final List<Map<Integer, Integer>> trie = new ArrayList<>();
+        final List<List<Integer>> stateOutputs = new ArrayList<>();
+        final SortedSet<Integer> symbols = new TreeSet<>();
+        trie.add(new HashMap<>());
+        stateOutputs.add(new ArrayList<>());
+
+        int max = 0;
+        for (int word = 0; word < words; word++) {
+            final int[] wordCodePoints = codePoints.get(word);
+            lengths[word] = wordCodePoints.length;
+            firstWord[word] = SearchIndex.isWordCharacter(wordCodePoints[0], false);
+            lastWord[word] = SearchIndex.isWordCharacter(wordCodePoints[wordCodePoints.length - 1], true);
+            max = Math.max(max, wordCodePoints.length);
+
+            int state = 0;
+            for (int codePoint : wordCodePoints) {
+                final int symbol = symbol(codePoint);
+                symbols.add(symbol);
+                Integer child = trie.get(state).get(symbol);
+                if (child == null) {
+                    child = trie.size();
+                    trie.get(state).put(symbol, child);
+                    trie.add(new HashMap<>());
+                    stateOutputs.add(new ArrayList<>());
+                }
+                state = child;
+            }
+            stateOutputs.get(state).add(word);
+        }
+        maxLength = max;
+
+        final Map<Integer, Integer> symbolColumns = new HashMap<>();
+        final int[] bmpSymbolColumns = new int[Character.MAX_VALUE + 1];
+        for (int symbol : symbols) {
+            final int column = symbolColumns.size() + 1;
+            symbolColumns.put(symbol, column);
+            if (symbol <= Character.MAX_VALUE) {
+                bmpSymbolColumns[symbol] = column;
+            } else {
+                supplementaryColumns.put(symbol, column);
+            }
+        }
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            columns[c] = bmpSymbolColumns[sensitive ? c : FOLDS[c]];
+        }
+        width = symbolColumns.size() + 1;
+
+        final int states = trie.size();
+        childColumns = new int[states][];
+        children = new int[states][];
+        for (int state = 0; state < states; state++) {
+            // the symbols are ordered as their columns
+            final SortedMap<Integer, Integer> stateChildren = new TreeMap<>(trie.get(state));
+            childColumns[state] = stateChildren.keySet().stream().mapToInt(symbolColumns::get).toArray();
+            children[state] = stateChildren.values().stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        fail = new int[states];
+        outputs = new int[states][];
+        transitions = (long) states * width <= MAX_TRANSITIONS ? new int[states * width] : null;
+
+        // breadth first order makes the failure state of every state be completed before it
+        final Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            if (state != 0) {
+                stateOutputs.get(state).addAll(stateOutputs.get(fail[state]));
+            }
+            outputs[state] = stateOutputs.get(state).stream().mapToInt(Integer::intValue).toArray();
+
+            if (transitions != null) {
+                for (int column = 1; column < width; column++) {
+                    final int position = Arrays.binarySearch(childColumns[state], column);
+                    transitions[state * width + column] = position >= 0 ? children[state][position]
+                            : state == 0 ? 0 : transitions[fail[state] * width + column];
+                }
+            }
+
+            for (int i = 0; i < children[state].length; i++) {
+                final int child = children[state][i];
+                fail[child] = state == 0 ? 0 : next(fail[state], childColumns[state][i]);
+                queue.add(child);
+            }
+        }
+    }
+
+    public static MultiWordMatcher of(List<String> words, boolean sensitive, boolean whole) {
+        final List<int[]> codePoints = new ArrayList<>();
+        for (String word : words) {
+            if (word.isEmpty()) {
+                throw new IllegalArgumentException("The word for searching cannot be empty");
+            }
+            codePoints.add(word.codePoints().toArray());
+        }
+
+        return new MultiWordMatcher(codePoints, sensitive, whole);
+    }
+
+    public int[] count(Path file, ByteBuffer buffer) throws IOException {
+        return count(file, buffer, null);
+    }
+
+    public int[] count(Path file, ByteBuffer buffer, MatchHandler handler) throws IOException {
+        if (file.toString().endsWith(GzipWriteStream.GZIP_EXTENSION)) {
+            try (ReadableByteChannel channel = Channels.newChannel(new GZIPInputStream(Files.newInputStream(file), 64 * 1024))) {
+                return count(channel, buffer, handler);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size >= WordMatcher.MAP_THRESHOLD && size <= Integer.MAX_VALUE) {
+                final Scanner scanner = new Scanner(handler);
+                scanner.feed(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                return scanner.finish();
+            }
+
+            return count(channel, buffer, handler);
+        }
+    }
+
+    public int[] count(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        return count(channel, buffer, null);
+    }
+
+    public int[] count(ReadableByteChannel channel, ByteBuffer buffer, MatchHandler handler) throws IOException {
+        final Scanner scanner = new Scanner(handler);
+        buffer.clear();
+        while (!scanner.stopped && channel.read(buffer) >= 0) {
+            buffer.flip();
+            scanner.feed(buffer);
+            buffer.clear();
+        }
+
+        return scanner.finish();
+    }
+
+    protected int symbol(int codePoint) {
+        if (sensitive) {
+            return codePoint;
+        }
+        return codePoint <= Character.MAX_VALUE ? FOLDS[codePoint] : WordMatcher.fold(codePoint);
+    }
+
+    protected int column(int codePoint) {
+        return codePoint <= Character.MAX_VALUE ? columns[codePoint] : supplementaryColumns.getOrDefault(symbol(codePoint), 0);
+    }
+
+    protected int next(int state, int column) {
+        if (column == 0) {
+            return 0;
+        }
+        if (transitions != null) {
+            return transitions[state * width + column];
+        }
+
+        while (true) {
+            final int position = Arrays.binarySearch(childColumns[state], column);
+            if (position >= 0) {
+                return children[state][position];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    protected class Scanner {
+        protected final MatchHandler handler;
+        protected final int[] counts = new int[words];
+        // the end of the last counted match of every word for the matches not to overlap as with java.util.regex
+        protected final long[] lastEnds = new long[words];
+        protected final int[] history = new int[maxLength + 1];
+        // the offsets of the code points in the history are kept for the handler only
+        protected final long[] offsets;
+        protected final int[] pending = new int[words];
+        protected final long[] pendingOffsets = new long[words];
+        protected int pendingSize;
+        protected long position;
+        protected long codePointOffset;
+        protected boolean stopped;
+        protected long index = -1;
+        protected int cursor = -1;
+        protected int state;
+        protected int codePoint;
+        protected int remaining;
+
+        protected Scanner(MatchHandler handler) {
+            this.handler = handler;
+            offsets = handler != null ? new long[maxLength + 1] : null;
+            Arrays.fill(lastEnds, -1);
+        }
+
+        protected void feed(ByteBuffer bytes) {
+            final int limit = bytes.limit();
+            final long base = position - bytes.position();
+            for (int i = bytes.position(); i < limit && !stopped; i++) {
+                final int b = bytes.get(i) & 0xFF;
+                if (b < 0x80 && remaining == 0 && pendingSize == 0 && transitions != null) {
+                    // the most frequent case is the plain transition by ASCII
+                    index++;
+                    if (++cursor == history.length) {
+                        cursor = 0;
+                    }
+                    history[cursor] = b;
+                    if (offsets != null) {
+                        offsets[cursor] = base + i;
+                    }
+                    state = transitions[state * width + columns[b]];
+                    if (outputs[state].length > 0) {
+                        matched();
+                    }
+                } else if (b < 0x80) {
+                    if (remaining > 0) {
+                        remaining = 0;
+                        accept(REPLACEMENT);
+                    }
+                    codePointOffset = base + i;
+                    accept(b);
+                } else if (b < 0xC0) {
+                    if (remaining == 0) {
+                        codePointOffset = base + i;
+                        accept(REPLACEMENT);
+                    } else {
+                        codePoint = codePoint << 6 | b & 0x3F;
+                        if (--remaining == 0) {
+                            accept(codePoint);
+                        }
+                    }
+                } else {
+                    if (remaining > 0) {
+                        accept(REPLACEMENT);
+                    }
+                    remaining = b < 0xE0 ? 1 : b < 0xF0 ? 2 : 3;
+                    codePoint = b & (0x3F >> remaining);
+                    codePointOffset = base + i;
+                }
+            }
+            position = base + limit;
+        }
+
+        protected int[] finish() {
+            if (!stopped) {
+                resolve(false);
+            }
+            return counts;
+        }
+
+        protected void accept(int codePoint) {
+            if (pendingSize > 0) {
+                resolve(WordMatcher.isWord(codePoint));
+            }
+
+            index++;
+            if (++cursor == history.length) {
+                cursor = 0;
+            }
+            history[cursor] = codePoint;
+            if (offsets != null) {
+                offsets[cursor] = codePointOffset;
+            }
+            state = next(state, column(codePoint));
+
+            if (outputs[state].length > 0) {
+                matched();
+            }
+        }
+
+        protected void matched() {
+            for (int word : outputs[state]) {
+                final long start = index - lengths[word] + 1;
+                if (start <= lastEnds[word]) {
+                    continue;
+                }
+
+                final long offset = offsets != null ? offsets[(cursor - lengths[word] + 1 + offsets.length) % offsets.length] : -1;
+                if (!whole) {
+                    counts[word]++;
+                    lastEnds[word] = index;
+                    found(word, offset);
+                } else if (WordMatcher.isWord(start > 0 ? history[(cursor - lengths[word] + history.length) % history.length] : -1) != firstWord[word]) {
+                    // the match is counted when the next code point shows it ends the word
+                    pendingOffsets[pendingSize] = offset;
+                    pending[pendingSize++] = word;
+                }
+            }
+        }
+
+        protected void resolve(boolean nextWord) {
+            for (int i = 0; i < pendingSize; i++) {
+                final int word = pending[i];
+                if (nextWord != lastWord[word]) {
+                    counts[word]++;
+                    lastEnds[word] = index;
+                    found(word, pendingOffsets[i]);
+                }
+            }
+            pendingSize = 0;
+        }
+
+        protected void found(int word, long offset) {
+            if (handler != null && !stopped && !handler.match(word, offset)) {
+                stopped = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package org.jmmo.crawler.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class SearchIndex implements Closeable {
+    public static final String INDEX_DIR = ".index";
+    public static final String FILES = "files.dat";
+    public static final String TERMS = "terms.dat";
+    public static final String TERMS_INDEX = "terms.idx";
+    public static final String POSTINGS = "postings.dat";
+    public static final int SEGMENT_POSTINGS = 4 * 1024 * 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    protected static final int BLOCK = 128;
+    protected static final long UNINDEXED = -1;
+    protected static final String SEGMENT_PREFIX = "segment.";
+
+    protected final List<IndexedFile> files = new ArrayList<>();
+    protected final List<String> blockKeys = new ArrayList<>();
+    protected long[] blockOffsets;
+    protected int termsCount;
+    protected final FileChannel terms;
+    protected final FileChannel postings;
+
+    public SearchIndex(Path dir) throws IOException {
+        try (DataInputStream input = input(dir.resolve(FILES))) {
+            final int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                files.add(new IndexedFile(readString(input), input.readLong(), input.readLong()));
+            }
+        }
+
+        try (DataInputStream input = input(dir.resolve(TERMS_INDEX))) {
+            termsCount = input.readInt();
+            blockOffsets = new long[input.readInt()];
+            for (int i = 0; i < blockOffsets.length; i++) {
+                blockKeys.add(readString(input));
+                blockOffsets[i] = input.readLong();
+            }
+        }
+
+        terms = FileChannel.open(dir.resolve(TERMS), StandardOpenOption.READ);
+        postings = FileChannel.open(dir.resolve(POSTINGS), StandardOpenOption.READ);
+    }
+
+    public static boolean exists(Path dir) {
+        return Files.exists(dir.resolve(TERMS_INDEX));
+    }
+
+    public List<IndexedFile> files() {
+        return files;
+    }
+
+    public int terms() {
+        return termsCount;
+    }
+
+    public Optional<Map<Integer, Integer>> count(String word, boolean sensitive, boolean whole) throws IOException {
+        // words with separators can match across the terms so they are found by scanning
+        if (!isWord(word)) {
+            return Optional.empty();
+        }
+
+        final Map<Integer, Integer> counts = new HashMap<>();
+        if (whole) {
+            forEachTerm(fold(word), (term, offset, size) -> {
+                if (!sensitive || term.equals(word)) {
+                    addPostings(counts, offset, size, 1);
+                }
+            });
+        } else {
+            final String needle = sensitive ? word : fold(word);
+            scanTerms((term, offset, size) -> {
+                final int occurrences = occurrences(sensitive ? term : fold(term), needle);
+                if (occurrences > 0) {
+                    addPostings(counts, offset, size, occurrences);
+                }
+            });
+        }
+
+        return Optional.of(counts);
+    }
+
+    public Optional<Set<Integer>> candidates(String word, boolean sensitive) throws IOException {
+        final List<String> parts = new ArrayList<>();
+        tokenize(sensitive ? word : fold(word), parts::add);
+        if (parts.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final List<Set<Integer>> found = new ArrayList<>();
+        parts.forEach(part -> found.add(new HashSet<>()));
+        scanTerms((term, offset, size) -> {
+            final String key = sensitive ? term : fold(term);
+            for (int i = 0; i < parts.size(); i++) {
+                if (key.contains(parts.get(i))) {
+                    final Set<Integer> partFiles = found.get(i);
+                    readPostings(offset, size, (file, count) -> partFiles.add(file));
+                }
+            }
+        });
+
+        final Set<Integer> candidates = found.get(0);
+        found.forEach(candidates::retainAll);
+        return Optional.of(candidates);
+    }
+
+    @Override
+    public void close() throws IOException {
+        terms.close();
+        postings.close();
+    }
+
+    public static int build(Path root, Path dir) throws IOException {
+        return build(root, dir, SEGMENT_POSTINGS);
+    }
+
+    public static int build(Path root, Path dir, int segmentPostings) throws IOException {
+        final Path indexDir = dir.toAbsolutePath().normalize();
+        Files.createDirectories(indexDir);
+        for (String name : Arrays.asList(FILES, TERMS, TERMS_INDEX, POSTINGS)) {
+            Files.deleteIfExists(indexDir.resolve(name));
+        }
+
+        final List<Path> segments = new ArrayList<>();
+        final Map<String, Postings> termPostings = new HashMap<>();
+        int total = 0;
+
+        final List<IndexedFile> indexedFiles = new ArrayList<>();
+        walk(root.toAbsolutePath().normalize(), indexDir, (path, attributes) ->
+                indexedFiles.add(new IndexedFile(path.toString(), attributes.size(), attributes.lastModifiedTime().toMillis())));
+
+        try (DataOutputStream output = output(indexDir.resolve(FILES))) {
+            output.writeInt(indexedFiles.size());
+            for (int file = 0; file < indexedFiles.size(); file++) {
+                final IndexedFile indexedFile = indexedFiles.get(file);
+                final Map<String, int[]> counts = new HashMap<>();
+                boolean indexed = true;
+                try (Stream<String> lines = FinderVehicle.lines(Paths.get(indexedFile.getPath()), CodingErrorAction.REPLACE)) {
+                    lines.forEach(line -> tokenize(line, term -> counts.computeIfAbsent(term, key -> new int[1])[0]++));
+                } catch (IOException | UncheckedIOException e) {
+                    log.warn("Cannot index " + indexedFile.getPath() + " " + e);
+                    counts.clear();
+                    indexed = false;
+                }
+
+                // the file which cannot be read is kept unindexed to be scanned by the search
+                writeString(output, indexedFile.getPath());
+                output.writeLong(indexed ? indexedFile.getSize() : UNINDEXED);
+                output.writeLong(indexedFile.getModified());
+
+                for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+                    termPostings.computeIfAbsent(entry.getKey(), key -> new Postings()).add(file, entry.getValue()[0]);
+                }
+                total += counts.size();
+
+                if (total >= segmentPostings) {
+                    segments.add(writeSegment(indexDir, segments.size(), termPostings));
+                    termPostings.clear();
+                    total = 0;
+                }
+            }
+        }
+
+        if (!termPostings.isEmpty() || segments.isEmpty()) {
+            segments.add(writeSegment(indexDir, segments.size(), termPostings));
+        }
+
+        final int termsCount = merge(indexDir, segments);
+        for (Path segment : segments) {
+            Files.delete(segment);
+        }
+
+        log.info("Indexed " + indexedFiles.size() + " files with " + termsCount + " terms to " + indexDir);
+        return termsCount;
+    }
+
+    public static void walk(Path root, Path skip, BiConsumer<Path, BasicFileAttributes> consumer) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                return dir.equals(skip) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (attributes.isRegularFile()) {
+                    consumer.accept(file, attributes);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                log.warn("Cannot visit " + file + " " + e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // the same characters as \b of java.util.regex considers to be parts of words
+    public static boolean isWordCharacter(int codePoint, boolean inWord) {
+        return Character.isLetterOrDigit(codePoint) || codePoint == '_' || inWord && Character.getType(codePoint) == Character.NON_SPACING_MARK;
+    }
+
+    public static boolean isWord(String word) {
+        final int[] codePoints = word.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            if (!isWordCharacter(codePoints[i], i > 0)) {
+                return false;
+            }
+        }
+        return codePoints.length > 0;
+    }
+
+    public static void tokenize(String line, Consumer<String> consumer) {
+        int start = -1;
+        for (int i = 0; i < line.length(); ) {
+            final int codePoint = line.codePointAt(i);
+            if (isWordCharacter(codePoint, start > -1)) {
+                if (start == -1) {
+                    start = i;
+                }
+            } else if (start > -1) {
+                consumer.accept(line.substring(start, i));
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (start > -1) {
+            consumer.accept(line.substring(start));
+        }
+    }
+
+    // characters equal ignoring case by java.util.regex have the same folding
+    public static String fold(String value) {
+        final char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    public static int occurrences(String value, String needle) {
+        int count = 0;
+        for (int index = value.indexOf(needle); index > -1; index = value.indexOf(needle, index + needle.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    protected void forEachTerm(String folded, TermHandler handler) throws IOException {
+        int block = Collections.binarySearch(blockKeys, folded);
+        block = block < 0 ? -block - 1 : block;
+        block = Math.max(0, block - 1);
+        if (blockOffsets.length == 0) {
+            return;
+        }
+
+        final DataInputStream input = termsAt(blockOffsets[block]);
+        for (int term = block * BLOCK; term < termsCount; term++) {
+            final String value = readString(input);
+            final long offset = input.readLong();
+            final int size = input.readInt();
+
+            final int compared = fold(value).compareTo(folded);
+            if (compared > 0) {
+                return;
+            }
+            if (compared == 0) {
+                handler.handle(value, offset, size);
+            }
+        }
+    }
+
+    protected void scanTerms(TermHandler handler) throws IOException {
+        final DataInputStream input = termsAt(0);
+        for (int term = 0; term < termsCount; term++) {
+            handler.handle(readString(input), input.readLong(), input.readInt());
+        }
+    }
+
+    protected DataInputStream termsAt(long offset) throws IOException {
+        // the stream is not closed because it would close the channel
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(terms.position(offset)), 64 * 1024));
+    }
+
+    protected void addPostings(Map<Integer, Integer> counts, long offset, int size, int multiplier) throws IOException {
+        readPostings(offset, size, (file, count) -> counts.merge(file, count * multiplier, Integer::sum));
+    }
+
+    protected void readPostings(long offset, int size, PostingHandler handler) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(postings.position(offset))));
+        int file = 0;
+        for (int i = 0; i < size; i++) {
+            file += readVarInt(input);
+            handler.handle(file, readVarInt(input));
+        }
+    }
+
+    protected static Path writeSegment(Path dir, int number, Map<String, Postings> termPostings) throws IOException {
+        final Path segment = dir.resolve(SEGMENT_PREFIX + number);
+        final List<Term> sorted = new ArrayList<>(termPostings.size());
+        termPostings.keySet().forEach(term -> sorted.add(new Term(term)));
+        Collections.sort(sorted);
+
+        try (DataOutputStream output = output(segment)) {
+            output.writeInt(sorted.size());
+            for (Term term : sorted) {
+                final Postings postings = termPostings.get(term.value);
+                writeString(output, term.value);
+                output.writeInt(postings.size);
+                for (int i = 0; i < postings.size; i++) {
+                    output.writeInt(postings.files[i]);
+                    output.writeInt(postings.counts[i]);
+                }
+            }
+        }
+
+        return segment;
+    }
+
+    protected static int merge(Path dir, List<Path> segments) throws IOException {
+        final PriorityQueue<SegmentReader> readers = new PriorityQueue<>();
+        final List<SegmentReader> opened = new ArrayList<>();
+        int termsCount = 0;
+
+        try (DataOutputStream termsOutput = output(dir.resolve(TERMS));
+             DataOutputStream postingsOutput = output(dir.resolve(POSTINGS));
+             DataOutputStream indexOutput = output(dir.resolve(TERMS_INDEX + ".tmp"))) {
+
+            for (int i = 0; i < segments.size(); i++) {
+                final SegmentReader reader = new SegmentReader(i, input(segments.get(i)));
+                opened.add(reader);
+                if (reader.next()) {
+                    readers.add(reader);
+                }
+            }
+
+            final List<String> keys = new ArrayList<>();
+            final List<Long> offsets = new ArrayList<>();
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final DataOutputStream bufferOutput = new DataOutputStream(buffer);
+            long termsOffset = 0;
+            long postingsOffset = 0;
+
+            while (!readers.isEmpty()) {
+                final Term term = readers.peek().term;
+                buffer.reset();
+                int size = 0;
+                int lastFile = 0;
+
+                // segments are polled in the order of their files so the postings stay sorted
+                while (!readers.isEmpty() && readers.peek().term.compareTo(term) == 0) {
+                    final SegmentReader reader = readers.poll();
+                    for (int i = 0; i < reader.size; i++) {
+                        final int file = reader.input.readInt();
+                        writeVarInt(bufferOutput, file - lastFile);
+                        writeVarInt(bufferOutput, reader.input.readInt());
+                        lastFile = file;
+                    }
+                    size += reader.size;
+                    if (reader.next()) {
+                        readers.add(reader);
+                    }
+                }
+
+                if (termsCount % BLOCK == 0) {
+                    keys.add(term.folded);
+                    offsets.add(termsOffset);
+                }
+
+                final byte[] bytes = term.value.getBytes(StandardCharsets.UTF_8);
+                termsOutput.writeInt(bytes.length);
+                termsOutput.write(bytes);
+                termsOutput.writeLong(postingsOffset);
+                termsOutput.writeInt(size);
+                termsOffset += 4 + bytes.length + 8 + 4;
+
+                buffer.writeTo(postingsOutput);
+                postingsOffset += buffer.size();
+                termsCount++;
+            }
+
+            indexOutput.writeInt(termsCount);
+            indexOutput.writeInt(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                writeString(indexOutput, keys.get(i));
+                indexOutput.writeLong(offsets.get(i));
+            }
+        } finally {
+            for (SegmentReader reader : opened) {
+                reader.input.close();
+            }
+        }
+
+        // the index of terms is written last so an interrupted build is never taken for a complete one
+        Files.move(dir.resolve(TERMS_INDEX + ".tmp"), dir.resolve(TERMS_INDEX), StandardCopyOption.REPLACE_EXISTING);
+        return termsCount;
+    }
+
+    protected static DataInputStream input(Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+    }
+
+    protected static DataOutputStream output(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+    }
+
+    protected static String readString(DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    protected static void writeString(DataOutputStream output, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    protected static int readVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = input.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    protected static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    public static class IndexedFile {
+        protected final String path;
+        protected final long size;
+        protected final long modified;
+
+        public IndexedFile(String path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        public boolean isIndexed() {
+            return size != UNINDEXED;
+        }
+
+        public boolean isSame(BasicFileAttributes attributes) {
+            return isIndexed() && size == attributes.size() && modified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    protected static class Postings {
+        int[] files = new int[2];
+        int[] counts = new int[2];
+        int size;
+
+        void add(int file, int count) {
+            if (size == files.length) {
+                files = Arrays.copyOf(files, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            files[size] = file;
+            counts[size] = count;
+            size++;
+        }
+    }
+
+    // terms are sorted by their folding first so all case variants of the term are neighbours
+    protected static class Term implements Comparable<Term> {
+        final String value;
+        final String folded;
+
+        Term(String value) {
+            this.value = value;
+            this.folded = fold(value);
+        }
+
+        @Override
+        public int compareTo(Term other) {
+            final int compared = folded.compareTo(other.folded);
+            return compared != 0 ? compared : value.compareTo(other.value);
+        }
+    }
+
+    protected static class SegmentReader implements Comparable<SegmentReader> {
+        final int number;
+        final DataInputStream input;
+        int remaining;
+        Term term;
+        int size;
+
+        SegmentReader(int number, DataInputStream input) throws IOException {
+            this.number = number;
+            this.input = input;
+            this.remaining = input.readInt();
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            term = new Term(readString(input));
+            size = input.readInt();
+            return true;
+        }
+
+        @Override
+        public int compareTo(SegmentReader other) {
+            final int compared = term.compareTo(other.term);
+            return compared != 0 ? compared : Integer.compare(number, other.number);
+        }
+    }
+
+    protected interface TermHandler {
+        void handle(String term, long offset, int size) throws IOException;
+    }
+
+    protected interface PostingHandler {
+        void handle(int file, int count);
+    }
+}
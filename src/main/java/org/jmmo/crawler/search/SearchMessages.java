@@ -6,17 +6,15 @@ public class SearchMessages {
 
     public static final String FOUND = "search.finder.found";
 
-    public static final String FIND_FAILED = "search.finder.find_fail";
-
     public static final String SCAN = "search.dir_scanner.scan";
 
-    public static final String SCANNED_DIRECTORY = "search.dir_scanner.scanned_directory";
-
-    public static final String SCANNED_FILE = "search.dir_scanner.scanned_file";
+    public static final String BATCH_DONE = "search.dir_scanner.batch_done";
 
     public static final String SCAN_COMPLETED = "search.dir_scanner.scan_completed";
 
     public static final String SCAN_FAILED = "search.dir_scanner.scan_fail";
 
+    public static final String CANCEL = "search.cancel";
+
     public static final String DONE = "crawler.done";
 }
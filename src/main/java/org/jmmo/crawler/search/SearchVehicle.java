@@ -1,80 +1,110 @@
 package org.jmmo.crawler.search;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
 public class SearchVehicle extends AbstractVerticle {
     private static final Logger log = LoggerFactory.getLogger(SearchVehicle.class);
 
-    protected String word;
+    protected List<String> words;
+    protected JsonArray wordsJson;
+    protected Map<String, Integer> wordIndexes = new HashMap<>();
+    protected Optional<FindQuery> queryOpt;
     protected String fileFilter;
     protected Boolean sensitive;
     protected Boolean whole;
+    protected Path indexDir;
+
+    protected boolean jsonl;
+    protected boolean filesWithMatches;
+    protected boolean lines;
+    protected int top;
+    protected int maxHits;
+    protected PrintStream output = System.out;
+    // the least of the top files is at the head to be replaced by a better one
+    protected PriorityQueue<JsonObject> topFiles;
 
-    protected int directories;
-    protected int searches;
+    protected int scans;
+    protected boolean cancelled;
+    protected boolean done;
 
     protected int totalFiles;
     protected int totalEntries;
+    protected int failedFiles;
+    protected int[] wordFiles;
+    protected int[] wordEntries;
 
     @Override
     public void start() throws Exception {
         log.info("Search started");
 
-        word = config().getString("word");
+        wordsJson = config().getJsonArray("words");
+        words = wordsJson.stream().map(String.class::cast).collect(Collectors.toList());
+        for (int i = 0; i < words.size(); i++) {
+            wordIndexes.put(words.get(i), i);
+        }
+        queryOpt = Optional.ofNullable(config().getString("query")).map(FindQuery::new);
+        wordFiles = new int[words.size()];
+        wordEntries = new int[words.size()];
         sensitive = config().getBoolean("sensitive");
         whole = config().getBoolean("whole");
         final String extension = config().getString("ext");
         if (extension != null && !extension.isEmpty() && !"*".equals(extension)) {
             fileFilter = "(?i).+\\." + extension;
         }
+        indexDir = Optional.ofNullable(config().getString("index")).map(Paths::get).orElse(null);
+        jsonl = "jsonl".equals(config().getString("format"));
+        filesWithMatches = config().getBoolean("filesWithMatches", false);
+        lines = config().getBoolean("lines", false);
+        top = config().getInteger("top", 0);
+        maxHits = config().getInteger("maxHits", 0);
+        topFiles = new PriorityQueue<>(Comparator.comparingInt((JsonObject result) -> result.getInteger("count"))
+                .thenComparing(result -> result.getString("file"), Comparator.reverseOrder()));
+        if (config().getString("output") != null) {
+            output = new PrintStream(new FileOutputStream(config().getString("output")), true, StandardCharsets.UTF_8.name());
+        }
+        getVertx().sharedData().getLocalMap(SearchMessages.CANCEL).remove(SearchMessages.CANCEL);
 
         getVertx().eventBus().consumer(SearchMessages.FOUND, message -> {
             final JsonObject messageJson = (JsonObject) message.body();
-            final int count = messageJson.getInteger("count");
-
-            if (count > 0) {
-                totalEntries += count;
-                totalFiles++;
-                System.out.println(count + " " + messageJson.getString("file"));
-            }
-
-            searches--;
-            checkDone();
-        });
-
-        getVertx().eventBus().consumer(SearchMessages.FIND_FAILED, message -> {
-            log.trace("Find fail " + message.body());
-            searches--;
-            checkDone();
+            messageJson.getJsonArray("results").forEach(result -> found((JsonObject) result));
+            messageJson.getJsonArray("failed", new JsonArray()).forEach(file -> {
+                log.trace("Find fail " + file);
+                failedFiles++;
+            });
         });
 
         getVertx().eventBus().consumer(SearchMessages.SCAN_FAILED, message -> {
             log.trace("Scan fail " + message.body());
-            directories--;
+            scans--;
             checkDone();
         });
 
         getVertx().eventBus().consumer(SearchMessages.SCAN_COMPLETED, message -> {
             log.trace("Scan completed " + message.body());
-            directories--;
+            scans--;
             checkDone();
         });
 
-        getVertx().eventBus().consumer(SearchMessages.SCANNED_FILE, message -> {
-            searches++;
-            getVertx().eventBus().send(SearchMessages.FIND, new JsonObject()
-                    .put("file", message.body()).put("word", word).put("sensitive", sensitive).put("whole", whole));
-        });
-
-        getVertx().eventBus().consumer(SearchMessages.SCANNED_DIRECTORY, message -> {
-            directories++;
-            getVertx().eventBus().send(SearchMessages.SCAN, new JsonObject().put("path", message.body()).put("fileFilter", fileFilter));
-        });
-
-        getVertx().eventBus().send(SearchMessages.SCANNED_DIRECTORY, config().getString("dir"));
+        if (config().getBoolean("useIndex", false)) {
+            searchIndex();
+        } else {
+            scan(new JsonObject().put("fileFilter", fileFilter).put("skip", indexDir != null ? indexDir.toString() : null)
+                    .put("walkers", config().getInteger("walkers")));
+        }
     }
 
     @Override
@@ -82,13 +112,275 @@ public class SearchVehicle extends AbstractVerticle {
         log.debug("stopped");
     }
 
+    protected void searchIndex() {
+        // the index search is counted as a scan for the search not to be done before it
+        scans++;
+
+        final Optional<Pattern> fileFilterOpt = Optional.ofNullable(fileFilter).map(Pattern::compile);
+        final boolean verify = config().getBoolean("verifyIndex", true);
+        final long started = System.currentTimeMillis();
+
+        getVertx().<JsonObject>executeBlocking(future -> {
+            try (SearchIndex index = new SearchIndex(indexDir)) {
+                final List<Map<Integer, Integer>> counts = new ArrayList<>();
+                final Optional<Set<Integer>> candidates = countIndex(index, counts);
+                final JsonArray found = new JsonArray();
+                final JsonArray scan = new JsonArray();
+
+                final List<SearchIndex.IndexedFile> files = index.files();
+                if (verify) {
+                    final Map<String, Integer> ids = new HashMap<>();
+                    for (int i = 0; i < files.size(); i++) {
+                        ids.put(files.get(i).getPath(), i);
+                    }
+
+                    SearchIndex.walk(Paths.get(config().getString("dir")).toAbsolutePath().normalize(), indexDir, (path, attributes) -> {
+                        final String file = path.toString();
+                        if (!fileFilterOpt.map(pattern -> pattern.matcher(file).find()).orElse(true)) {
+                            return;
+                        }
+
+                        final Integer id = ids.get(file);
+                        if (id != null && files.get(id).isSame(attributes)) {
+                            fromIndex(id, file, counts, candidates, found, scan);
+                        } else {
+                            scan.add(file);
+                        }
+                    });
+                } else {
+                    for (int i = 0; i < files.size(); i++) {
+                        final String file = files.get(i).getPath();
+                        if (!fileFilterOpt.map(pattern -> pattern.matcher(file).find()).orElse(true)) {
+                            continue;
+                        }
+
+                        if (files.get(i).isIndexed()) {
+                            fromIndex(i, file, counts, candidates, found, scan);
+                        } else {
+                            scan.add(file);
+                        }
+                    }
+                }
+
+                future.complete(new JsonObject().put("found", found).put("scan", scan));
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, ar -> {
+            scans--;
+
+            if (ar.failed()) {
+                log.error("Cannot search in the index " + indexDir + ", the directory is scanned", ar.cause());
+                scan(new JsonObject().put("fileFilter", fileFilter).put("skip", indexDir.toString()).put("walkers", config().getInteger("walkers")));
+                return;
+            }
+
+            final JsonArray found = ar.result().getJsonArray("found");
+            final JsonArray scan = ar.result().getJsonArray("scan");
+            log.info("Index answered in " + (System.currentTimeMillis() - started) + " ms with " + found.size() + " files, " + scan.size() + " files must be scanned");
+
+            found.forEach(entry -> found((JsonObject) entry));
+            if (!scan.isEmpty()) {
+                scan(new JsonObject().put("files", scan));
+            }
+
+            checkDone();
+        });
+    }
+
+    // the counts of all words are taken from the index or else the files containing any of them are scanned
+    protected Optional<Set<Integer>> countIndex(SearchIndex index, List<Map<Integer, Integer>> counts) throws IOException {
+        final Set<Integer> candidates = new HashSet<>();
+        boolean exact = true;
+        boolean all = false;
+        for (String word : words) {
+            final Optional<Map<Integer, Integer>> wordCounts = index.count(word, sensitive, whole);
+            if (wordCounts.isPresent()) {
+                counts.add(wordCounts.get());
+                candidates.addAll(wordCounts.get().keySet());
+            } else {
+                exact = false;
+                final Optional<Set<Integer>> wordCandidates = index.candidates(word, sensitive);
+                all |= !wordCandidates.isPresent();
+                wordCandidates.ifPresent(candidates::addAll);
+            }
+        }
+
+        // the index has no positions of the words to report them
+        if (!exact || lines) {
+            counts.clear();
+        }
+        return all ? Optional.empty() : Optional.of(candidates);
+    }
+
+    protected void fromIndex(int id, String file, List<Map<Integer, Integer>> counts, Optional<Set<Integer>> candidates, JsonArray found, JsonArray scan) {
+        if (!counts.isEmpty()) {
+            if (candidates.get().contains(id) || queryOpt.isPresent()) {
+                final JsonArray fileCounts = new JsonArray();
+                counts.forEach(wordCounts -> fileCounts.add(wordCounts.getOrDefault(id, 0)));
+                found.add(new JsonObject().put("file", file).put("counts", fileCounts));
+            }
+        } else if (candidates.map(ids -> ids.contains(id)).orElse(true)) {
+            scan.add(file);
+        } else if (queryOpt.isPresent()) {
+            // the query may match the file without the words
+            found.add(new JsonObject().put("file", file).put("counts", new JsonArray(Collections.nCopies(words.size(), 0))));
+        }
+    }
+
+    // the scanner sends the files to finders in batches and reports when all of them are found
+    protected void scan(JsonObject scan) {
+        scans++;
+        getVertx().eventBus().send(SearchMessages.SCAN, scan.put("path", config().getString("dir"))
+                .put("inFlight", 2 * config().getInteger("finders", 2))
+                .put("find", new JsonObject().put("words", wordsJson).put("sensitive", sensitive).put("whole", whole)
+                        .put("first", filesWithMatches && !queryOpt.isPresent()).put("lines", lines)));
+    }
+
+    // outstanding finds are dropped when enough files are found
+    protected void cancel() {
+        log.info("Found " + totalFiles + " files, the search is cancelled");
+        cancelled = true;
+        getVertx().sharedData().getLocalMap(SearchMessages.CANCEL).put(SearchMessages.CANCEL, true);
+        getVertx().eventBus().publish(SearchMessages.CANCEL, true);
+        scans = 0;
+        checkDone();
+    }
+
+    protected void found(JsonObject result) {
+        if (cancelled) {
+            return;
+        }
+
+        final JsonArray counts = result.getJsonArray("counts");
+        int total = 0;
+        for (int i = 0; i < counts.size(); i++) {
+            total += counts.getInteger(i);
+        }
+
+        final boolean matched = queryOpt.map(query -> query.test(word -> counts.getInteger(wordIndexes.get(word)) > 0)).orElse(total > 0);
+        if (!matched) {
+            return;
+        }
+
+        for (int i = 0; i < counts.size(); i++) {
+            if (counts.getInteger(i) > 0) {
+                wordEntries[i] += counts.getInteger(i);
+                wordFiles[i]++;
+            }
+        }
+        totalEntries += total;
+        totalFiles++;
+        result.put("count", total);
+
+        if (top > 0) {
+            topFiles.add(result);
+            if (topFiles.size() > top) {
+                topFiles.poll();
+            }
+        } else {
+            print(result);
+        }
+
+        if (maxHits > 0 && totalFiles >= maxHits) {
+            cancel();
+        }
+    }
+
+    protected void print(JsonObject result) {
+        final JsonArray counts = result.getJsonArray("counts");
+        final JsonArray hits = result.getJsonArray("hits", new JsonArray());
+
+        if (jsonl) {
+            final JsonObject line = new JsonObject().put("file", result.getString("file"));
+            if (!filesWithMatches) {
+                line.put("count", result.getInteger("count"));
+            }
+            if (words.size() > 1 && !filesWithMatches) {
+                final JsonObject wordCounts = new JsonObject();
+                for (int i = 0; i < counts.size(); i++) {
+                    if (counts.getInteger(i) > 0) {
+                        wordCounts.put(words.get(i), counts.getInteger(i));
+                    }
+                }
+                line.put("counts", wordCounts);
+            }
+            if (lines) {
+                final JsonArray hitsJson = new JsonArray();
+                hits.forEach(hit -> {
+                    final JsonObject hitJson = ((JsonObject) hit).copy();
+                    hitJson.put("word", words.get(hitJson.getInteger("word")));
+                    hitsJson.add(hitJson);
+                });
+                line.put("hits", hitsJson);
+            }
+            output.println(line.encode());
+            return;
+        }
+
+        if (filesWithMatches) {
+            output.println(result.getString("file"));
+        } else {
+            final StringBuilder details = new StringBuilder();
+            for (int i = 0; i < counts.size(); i++) {
+                if (counts.getInteger(i) > 0 && words.size() > 1) {
+                    details.append(' ').append(words.get(i)).append('=').append(counts.getInteger(i));
+                }
+            }
+            output.println(result.getInteger("count") + " " + result.getString("file") + details);
+        }
+        hits.forEach(hit -> {
+            final JsonObject hitJson = (JsonObject) hit;
+            output.println("    " + hitJson.getInteger("line") + ":" + hitJson.getLong("offset") + ": " + hitJson.getString("snippet"));
+        });
+    }
+
+    protected String failedTotal() {
+        return failedFiles > 0 ? ", " + failedFiles + " files cannot be read" : "";
+    }
+
     protected void checkDone() {
-        if (directories <= 0 && searches <= 0) {
-            log.info("Search of the word '" + word + "' in " + config().getString("dir") + " is done");
+        if (scans <= 0 && !done) {
+            done = true;
+            final String description = queryOpt.map(query -> "the query '" + query + "'")
+                    .orElse(words.size() == 1 ? "the word '" + words.get(0) + "'" : "the words " + words);
+            log.info("Search of " + description + " in " + config().getString("dir") + " is done");
+
+            final List<JsonObject> best = new ArrayList<>(topFiles);
+            best.sort(topFiles.comparator().reversed());
+            best.forEach(this::print);
 
-            System.out.println("Total: " + totalEntries + " entries in " + totalFiles + " files");
+            if (jsonl) {
+                final JsonObject totals = new JsonObject().put("files", totalFiles);
+                if (!filesWithMatches) {
+                    totals.put("total", totalEntries);
+                }
+                if (failedFiles > 0) {
+                    totals.put("failed", failedFiles);
+                }
+                if (words.size() > 1 && !filesWithMatches) {
+                    final JsonObject wordTotals = new JsonObject();
+                    for (int i = 0; i < words.size(); i++) {
+                        wordTotals.put(words.get(i), new JsonObject().put("total", wordEntries[i]).put("files", wordFiles[i]));
+                    }
+                    totals.put("words", wordTotals);
+                }
+                output.println(totals.encode());
+            } else if (filesWithMatches) {
+                output.println("Total: " + totalFiles + " files" + failedTotal());
+            } else {
+                if (words.size() > 1) {
+                    for (int i = 0; i < words.size(); i++) {
+                        output.println("Total of " + words.get(i) + ": " + wordEntries[i] + " entries in " + wordFiles[i] + " files");
+                    }
+                }
+                output.println("Total: " + totalEntries + " entries in " + totalFiles + " files" + failedTotal());
+            }
+            if (output != System.out) {
+                output.close();
+            }
 
-            getVertx().eventBus().publish(SearchMessages.DONE, word);
+            getVertx().eventBus().publish(SearchMessages.DONE, description);
         }
     }
 }
@@ -0,0 +1,297 @@
+package org.jmmo.crawler.search;
+
+import org.jmmo.crawler.GzipWriteStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+public class WordMatcher {
+    public static final int BUFFER_SIZE = 1024 * 1024;
+    public static final long MAP_THRESHOLD = 16 * 1024 * 1024;
+
+    // bytes kept before a match to decode the previous code point and after it to decode the next one
+    protected static final int CONTEXT = 4;
+
+    protected final int length;
+    protected final boolean[] classes;
+    protected final int[] shifts = new int[256];
+    protected final int[] foldedCodePoints;
+    protected final boolean verify;
+    protected final boolean whole;
+    protected final boolean firstWord;
+    protected final boolean lastWord;
+
+    protected WordMatcher(List<List<byte[]>> variants, int[] foldedCodePoints, boolean whole) {
+        this.foldedCodePoints = foldedCodePoints;
+        this.whole = whole;
+        firstWord = SearchIndex.isWordCharacter(foldedCodePoints[0], false);
+        lastWord = SearchIndex.isWordCharacter(foldedCodePoints[foldedCodePoints.length - 1], true);
+
+        int patternLength = 0;
+        boolean ambiguous = false;
+        for (List<byte[]> codePointVariants : variants) {
+            patternLength += codePointVariants.get(0).length;
+            ambiguous |= codePointVariants.size() > 1 && codePointVariants.get(0).length > 1;
+        }
+        length = patternLength;
+        // classes of multibyte variants also match the mixtures of their bytes which must be checked
+        verify = ambiguous;
+
+        classes = new boolean[length * 256];
+        int offset = 0;
+        for (List<byte[]> codePointVariants : variants) {
+            for (byte[] variant : codePointVariants) {
+                for (int i = 0; i < variant.length; i++) {
+                    classes[(offset + i) * 256 + (variant[i] & 0xFF)] = true;
+                }
+            }
+            offset += codePointVariants.get(0).length;
+        }
+
+        Arrays.fill(shifts, length);
+        for (int i = 0; i < length - 1; i++) {
+            for (int b = 0; b < 256; b++) {
+                if (classes[i * 256 + b]) {
+                    shifts[b] = length - 1 - i;
+                }
+            }
+        }
+    }
+
+    public static Optional<WordMatcher> of(String word, boolean sensitive, boolean whole) {
+        final int[] codePoints = word.codePoints().toArray();
+        if (codePoints.length == 0) {
+            return Optional.empty();
+        }
+
+        final List<List<byte[]>> variants = new ArrayList<>();
+        final int[] foldedCodePoints = new int[codePoints.length];
+        for (int i = 0; i < codePoints.length; i++) {
+            final int codePoint = codePoints[i];
+            foldedCodePoints[i] = fold(codePoint);
+
+            final List<byte[]> codePointVariants = new ArrayList<>();
+            codePointVariants.add(utf8(codePoint));
+            if (!sensitive) {
+                for (int variant : caseVariants(codePoint)) {
+                    final byte[] bytes = utf8(variant);
+                    if (bytes.length != codePointVariants.get(0).length) {
+                        // the case variants of different lengths are left to MultiWordMatcher which folds the text
+                        return Optional.empty();
+                    }
+                    if (codePointVariants.stream().noneMatch(existing -> Arrays.equals(existing, bytes))) {
+                        codePointVariants.add(bytes);
+                    }
+                }
+            }
+            variants.add(codePointVariants);
+        }
+
+        return Optional.of(new WordMatcher(variants, foldedCodePoints, whole));
+    }
+
+    public int count(Path file, ByteBuffer buffer) throws IOException {
+        return count(file, buffer, null);
+    }
+
+    public int count(Path file, ByteBuffer buffer, MatchHandler handler) throws IOException {
+        if (file.toString().endsWith(GzipWriteStream.GZIP_EXTENSION)) {
+            try (ReadableByteChannel channel = Channels.newChannel(new GZIPInputStream(Files.newInputStream(file), 64 * 1024))) {
+                return count(channel, buffer, handler);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            // small files are read to the buffer because every mapping holds the address space until it is collected
+            if (size >= MAP_THRESHOLD && size <= Integer.MAX_VALUE) {
+                return search(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), 0, (int) size, (int) size, 0, handler, new int[2]);
+            }
+
+            return count(channel, buffer, handler);
+        }
+    }
+
+    public int count(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        return count(channel, buffer, null);
+    }
+
+    public int count(ReadableByteChannel channel, ByteBuffer buffer, MatchHandler handler) throws IOException {
+        if (buffer.capacity() < 4 * (length + 2 * CONTEXT)) {
+            buffer = ByteBuffer.allocate(4 * (length + 2 * CONTEXT));
+        }
+        buffer.clear();
+
+        // the next position to search from and whether the handler stopped the search
+        final int[] next = new int[2];
+        long consumed = 0;
+        int count = 0;
+        int allowed = 0;
+        boolean end = false;
+        while (!end && next[1] == 0) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    end = true;
+                    break;
+                }
+            }
+
+            final int limit = buffer.position();
+            // matches starting before to have all their bytes and the next code point in the buffer
+            final int to = end ? limit : limit - length - CONTEXT + 1;
+            if (to > allowed) {
+                count += search(buffer, allowed, to, limit, consumed, handler, next);
+                allowed = next[0];
+            }
+
+            if (!end) {
+                final int keep = Math.max(0, Math.min(allowed, to) - CONTEXT);
+                buffer.limit(limit).position(keep);
+                buffer.compact();
+                allowed -= keep;
+                consumed += keep;
+            }
+        }
+
+        return count;
+    }
+
+    protected int search(ByteBuffer buffer, int from, int to, int limit, long base, MatchHandler handler, int[] next) {
+        final int last = length - 1;
+        int count = 0;
+        int i = from;
+        while (i < to && i + length <= limit) {
+            final int b = buffer.get(i + last) & 0xFF;
+            if (classes[last * 256 + b] && matches(buffer, i, limit) && (!whole || isBoundary(buffer, i, limit))) {
+                count++;
+                if (handler != null && !handler.match(0, base + i)) {
+                    next[1] = 1;
+                    break;
+                }
+                i += length;
+            } else {
+                i += shifts[b];
+            }
+        }
+
+        next[0] = i;
+        return count;
+    }
+
+    protected boolean matches(ByteBuffer buffer, int start, int limit) {
+        for (int i = 0; i < length - 1; i++) {
+            if (!classes[i * 256 + (buffer.get(start + i) & 0xFF)]) {
+                return false;
+            }
+        }
+
+        if (!verify) {
+            return true;
+        }
+
+        int position = start;
+        for (int foldedCodePoint : foldedCodePoints) {
+            final int codePoint = decode(buffer, position, limit);
+            if (codePoint < 0 || fold(codePoint) != foldedCodePoint) {
+                return false;
+            }
+            position += utf8Length(buffer.get(position));
+        }
+        return position == start + length;
+    }
+
+    protected boolean isBoundary(ByteBuffer buffer, int start, int limit) {
+        final int previous = start > 0 ? codePointBefore(buffer, start) : -1;
+        if (isWord(previous) == firstWord) {
+            return false;
+        }
+
+        final int next = start + length < limit ? decode(buffer, start + length, limit) : -1;
+        return isWord(next) != lastWord;
+    }
+
+    protected static boolean isWord(int codePoint) {
+        return codePoint >= 0 && SearchIndex.isWordCharacter(codePoint, true);
+    }
+
+    protected static int codePointBefore(ByteBuffer buffer, int end) {
+        int start = end - 1;
+        while (start > 0 && end - start < CONTEXT && (buffer.get(start) & 0xC0) == 0x80) {
+            start--;
+        }
+        return utf8Length(buffer.get(start)) == end - start ? decode(buffer, start, end) : -1;
+    }
+
+    protected static int decode(ByteBuffer buffer, int position, int limit) {
+        final int lead = buffer.get(position) & 0xFF;
+        final int length = utf8Length((byte) lead);
+        if (length == 1) {
+            return lead < 0x80 ? lead : -1;
+        }
+        if (position + length > limit) {
+            return -1;
+        }
+
+        int codePoint = lead & (0xFF >> (length + 1));
+        for (int i = 1; i < length; i++) {
+            final int b = buffer.get(position + i) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                return -1;
+            }
+            codePoint = codePoint << 6 | b & 0x3F;
+        }
+        return codePoint;
+    }
+
+    protected static int utf8Length(byte lead) {
+        final int b = lead & 0xFF;
+        return b < 0xC0 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+    }
+
+    protected static byte[] utf8(int codePoint) {
+        return new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // all code points java.util.regex takes equal ignoring case, e.g. k, K and KELVIN SIGN or σ, Σ and final ς
+    protected static int[] caseVariants(int codePoint) {
+        final int folded = fold(codePoint);
+        return IntStream.concat(IntStream.of(Character.toUpperCase(codePoint), Character.toLowerCase(codePoint), Character.toTitleCase(codePoint), folded),
+                Arrays.stream(FoldClosures.CLOSURES.getOrDefault(folded, new int[0]))).distinct().toArray();
+    }
+
+    // the code points of the basic multilingual plane grouped by the folding of MultiWordMatcher, computed on the first use
+    protected static class FoldClosures {
+        static final Map<Integer, int[]> CLOSURES = new HashMap<>();
+        static {
+            final Map<Integer, List<Integer>> groups = new HashMap<>();
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                if (MultiWordMatcher.FOLDS[c] != c) {
+                    groups.computeIfAbsent((int) MultiWordMatcher.FOLDS[c], folded -> new ArrayList<>(MultiWordMatcher.FOLDS[folded] == folded
+                            ? Collections.singletonList(folded) : Collections.emptyList())).add(c);
+                }
+            }
+            groups.forEach((folded, group) -> CLOSURES.put(folded, group.stream().mapToInt(Integer::intValue).toArray()));
+        }
+    }
+
+    // the same folding as SearchIndex uses for the characters equal ignoring case
+    protected static int fold(int codePoint) {
+        return Character.toLowerCase(Character.toUpperCase(codePoint));
+    }
+}
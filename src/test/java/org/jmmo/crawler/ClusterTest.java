@@ -0,0 +1,80 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterTest {
+    static final int DEPTH = 3;
+    // the hosts belong to different shards of two nodes
+    static final String[] HOSTS = {"127.0.0.1", "127.0.0.2"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Vertx siteVertx;
+
+    @Before
+    public void setUp() {
+        siteVertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown() {
+        siteVertx.close();
+    }
+
+    @Test
+    public void testTwoNodes() throws Exception {
+        final int port = TestSite.freePort();
+        final CompletableFuture<Void> listening = new CompletableFuture<>();
+        siteVertx.createHttpServer().requestHandler(request -> {
+            if (TestSite.isPage(request.path())) {
+                request.response().putHeader("Content-Type", "text/html").end(page(port, request.path()));
+            } else {
+                request.response().setStatusCode(404).end();
+            }
+        }).listen(port, "0.0.0.0", ar -> listening.complete(null));
+        listening.get(10, TimeUnit.SECONDS);
+
+        final Path output = folder.newFolder("output").toPath();
+        final String url = "http://" + HOSTS[0] + ":" + port + "/p0.html";
+        final TestSite.Crawl node0 = TestSite.start("crawl", "--cluster", "--cluster-host=127.0.0.1", "--node=0", "--nodes=2",
+                "--dir=" + output, "--depth=" + DEPTH, "--delay=0", "--statsInterval=0", url);
+        final TestSite.Crawl node1 = TestSite.start("crawl", "--cluster", "--cluster-host=127.0.0.1", "--node=1", "--nodes=2",
+                "--dir=" + output, "--depth=" + DEPTH, "--delay=0", "--statsInterval=0", url);
+
+        // both nodes learn the crawling is done from the shared counter
+        node0.await();
+        node1.await();
+
+        assertEquals(TestSite.pagesOf(DEPTH), TestSite.filesOf(output));
+        final long pages0 = node0.value("crawler_downloaded_pages_total");
+        final long pages1 = node1.value("crawler_downloaded_pages_total");
+        assertTrue("Node 0 pages: " + pages0, pages0 > 0);
+        assertTrue("Node 1 pages: " + pages1, pages1 > 0);
+        assertEquals(TestSite.pagesOf(DEPTH), pages0 + pages1);
+    }
+
+    // the linked pages are spread between the hosts
+    static String page(int port, String path) {
+        final int number = Integer.parseInt(path.substring(2, path.length() - ".html".length()));
+        final StringBuilder page = new StringBuilder("<html><body>");
+        for (int i = 1; i <= TestSite.FAN_OUT; i++) {
+            final int child = number * TestSite.FAN_OUT + i;
+            page.append("<a href=\"http://").append(HOSTS[child % HOSTS.length]).append(":").append(port)
+                    .append("/p").append(child).append(".html\">page</a>");
+        }
+        return page.append("</body></html>").toString();
+    }
+}
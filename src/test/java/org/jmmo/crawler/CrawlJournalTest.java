@@ -0,0 +1,160 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CrawlJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCompactAndLoad() throws Exception {
+        final Path dir = folder.getRoot().toPath().resolve(CrawlerVehicle.STATE_DIR);
+
+        final CrawlJournal journal = new CrawlJournal(dir, 1024 * 1024);
+        journal.open(false);
+        journal.append(CrawlJournal.queued("http://a.com", "a.html", 0));
+        journal.append(CrawlJournal.queued("http://a.com/b", "b.html", 1));
+        journal.append(CrawlJournal.redirect("http://a.com/c", "b.html"));
+        journal.append(CrawlJournal.downloaded("a.html", "http://a.com"));
+        journal.rotate();
+        CrawlJournal.compact(dir);
+        journal.append(CrawlJournal.done("a.html"));
+        journal.append(CrawlJournal.level("b.html", 0, false));
+        journal.close();
+
+        assertFalse(Files.exists(dir.resolve("journal.1.jsonl")));
+
+        final States state = new States();
+        CrawlJournal.load(dir, state);
+        assertEquals(2, state.size());
+        assertEquals(CrawlJournal.DONE, state.get("a.html").getString("state"));
+        assertEquals("http://a.com", state.get("a.html").getString("base"));
+        assertEquals(CrawlJournal.QUEUED, state.get("b.html").getString("state"));
+        assertEquals(0, (int) state.get("b.html").getInteger("level"));
+        assertEquals(2, state.get("b.html").getJsonArray("urls").size());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        final Path dir = folder.getRoot().toPath().resolve(CrawlerVehicle.STATE_DIR);
+
+        final CrawlJournal journal = new CrawlJournal(dir, 1024 * 1024);
+        journal.open(false);
+        journal.append(CrawlJournal.queued("http://a.com", "a.html", 0));
+        journal.append(CrawlJournal.redirect("http://www.a.com", "a.html"));
+        journal.append(CrawlJournal.done("a.html"));
+        journal.append(CrawlJournal.retry("a.html"));
+        journal.close();
+
+        final States states = new States();
+        CrawlJournal.load(dir, states);
+        final JsonObject state = states.get("a.html");
+        assertEquals(CrawlJournal.QUEUED, state.getString("state"));
+        assertEquals(2, state.getJsonArray("urls").size());
+    }
+
+    @Test
+    public void testCompactSegments() throws Exception {
+        final Path compacted = folder.getRoot().toPath().resolve("compacted");
+        final Path plain = folder.getRoot().toPath().resolve("plain");
+        final CrawlJournal journal = new CrawlJournal(compacted, 1024 * 1024);
+        journal.open(false);
+        final CrawlJournal plainJournal = new CrawlJournal(plain, 1024 * 1024);
+        plainJournal.open(false);
+
+        // the multibyte urls shift the offsets of the following lines
+        final List<List<JsonObject>> segments = Arrays.asList(
+                Arrays.asList(CrawlJournal.queued("http://a.com/Ж", "a.html", 0), CrawlJournal.queued("http://a.com/b", "b.html", 1),
+                        CrawlJournal.redirect("http://a.com/б", "b.html"), CrawlJournal.downloaded("a.html", "http://a.com/Ж", 1L, 2L)),
+                Arrays.asList(CrawlJournal.redirect("http://a.com/в", "b.html"), CrawlJournal.done("a.html"),
+                        CrawlJournal.queued("http://a.com/c", "c.html", 2), CrawlJournal.downloaded("b.html", "http://a.com/в", 3L, null)),
+                Arrays.asList(CrawlJournal.done("b.html"), CrawlJournal.level("b.html", 0, true), CrawlJournal.retry("a.html"),
+                        CrawlJournal.queued("http://a.com/c2", "c.html", 1), CrawlJournal.redirect("http://missing.com", "d.html")),
+                Arrays.asList(CrawlJournal.downloaded("c.html", "http://a.com/c2"), CrawlJournal.done("c.html")));
+        for (List<JsonObject> segment : segments) {
+            for (JsonObject record : segment) {
+                journal.append(record);
+                plainJournal.append(record);
+            }
+            journal.rotate();
+            CrawlJournal.compact(compacted);
+        }
+        journal.close();
+        plainJournal.close();
+
+        final States expected = new States();
+        CrawlJournal.load(plain, expected);
+        final States actual = new States();
+        CrawlJournal.load(compacted, actual);
+        assertEquals(3, actual.size());
+        assertEquals(expected.files, actual.files);
+        assertEquals(Arrays.asList("http://a.com/b", "http://a.com/б", "http://a.com/в"), actual.get("b.html").getJsonArray("urls").getList());
+        assertEquals(CrawlJournal.DOWNLOADED, actual.get("b.html").getString("state"));
+    }
+
+    // the states of files are kept as json objects to check them
+    static class States implements CrawlJournal.Replay {
+        final Map<String, JsonObject> files = new LinkedHashMap<>();
+
+        @Override
+        public void queued(String file, String url, int level) {
+            files.put(file, new JsonObject().put("file", file).put("level", level).put("state", CrawlJournal.QUEUED).put("urls", new JsonArray().add(url)));
+        }
+
+        @Override
+        public void redirect(String file, String url) {
+            Optional.ofNullable(files.get(file)).ifPresent(state -> state.getJsonArray("urls").add(url));
+        }
+
+        @Override
+        public void retry(String file) {
+            Optional.ofNullable(files.get(file)).filter(state -> CrawlJournal.DONE.equals(state.getString("state")))
+                    .ifPresent(state -> state.put("state", CrawlJournal.QUEUED));
+        }
+
+        @Override
+        public void level(String file, int level, boolean parse) {
+            Optional.ofNullable(files.get(file)).ifPresent(state -> {
+                state.put("level", level);
+                if (parse && CrawlJournal.DONE.equals(state.getString("state"))) {
+                    state.put("state", CrawlJournal.DOWNLOADED);
+                }
+            });
+        }
+
+        @Override
+        public void downloaded(String file, String baseUrl, Long hash, Long simHash) {
+            Optional.ofNullable(files.get(file)).ifPresent(state ->
+                    state.put("base", baseUrl).put("state", CrawlJournal.DOWNLOADED).put("hash", hash).put("simHash", simHash));
+        }
+
+        @Override
+        public void done(String file) {
+            Optional.ofNullable(files.get(file)).ifPresent(state -> state.put("state", CrawlJournal.DONE));
+        }
+
+        JsonObject get(String file) {
+            return files.get(file);
+        }
+
+        int size() {
+            return files.size();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.jmmo.crawler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CrawlMetricsTest {
+
+    @Test
+    public void testSnapshot() throws Exception {
+        final CrawlMetrics metrics = new CrawlMetrics();
+        final int[] downloads = {3};
+        final CrawlMetrics.Snapshot snapshot = metrics.snapshot("crawler_loader_downloads", () -> downloads[0]);
+
+        // the value is seen only after its owner publishes it
+        assertEquals(0, metrics.value("crawler_loader_downloads"));
+        snapshot.update();
+        downloads[0] = 5;
+        assertEquals(3, metrics.value("crawler_loader_downloads"));
+        snapshot.update();
+        assertEquals(5, metrics.value("crawler_loader_downloads"));
+    }
+
+    @Test
+    public void testPrometheus() throws Exception {
+        final CrawlMetrics metrics = new CrawlMetrics();
+        metrics.counter("crawler_responses_total", "status", "200").add(3);
+        metrics.counter("crawler_responses_total", "status", "404").inc();
+        metrics.gauge("crawler_loader_queued", () -> 2);
+        metrics.gauge("crawler_loader_queued", () -> 5);
+        metrics.histogram("crawler_ttfb_seconds", "host", "a.com").observe(0.02);
+        metrics.histogram("crawler_ttfb_seconds", "host", "b.com").observe(3);
+
+        assertEquals(4, metrics.value("crawler_responses_total"));
+        assertEquals(7, metrics.value("crawler_loader_queued"));
+        assertEquals(0.025, metrics.quantile("crawler_ttfb_seconds", 0.5), 0);
+        assertEquals(5, metrics.quantile("crawler_ttfb_seconds", 0.99), 0);
+
+        final String text = metrics.prometheus();
+        assertTrue(text.contains("# TYPE crawler_responses_total counter\n"));
+        assertTrue(text.contains("crawler_responses_total{status=\"200\"} 3\n"));
+        assertTrue(text.contains("crawler_loader_queued 7\n"));
+        assertTrue(text.contains("crawler_ttfb_seconds_bucket{host=\"a.com\",le=\"0.025\"} 1\n"));
+        assertTrue(text.contains("crawler_ttfb_seconds_bucket{host=\"b.com\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("crawler_ttfb_seconds_count{host=\"b.com\"} 1\n"));
+    }
+
+    @Test
+    public void testHostsLimit() throws Exception {
+        final CrawlMetrics metrics = new CrawlMetrics();
+        metrics.setHostsLimit(1);
+
+        assertEquals("a.com", metrics.host("a.com"));
+        assertEquals(CrawlMetrics.OTHER_HOSTS, metrics.host("b.com"));
+        assertEquals("a.com", metrics.host("a.com"));
+    }
+}
@@ -0,0 +1,70 @@
+package org.jmmo.crawler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CrawlStateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoad() throws Exception {
+        final Path dir = folder.getRoot().toPath().resolve(CrawlerVehicle.STATE_DIR);
+
+        final CrawlJournal journal = new CrawlJournal(dir, 1024 * 1024);
+        journal.open(false);
+        journal.append(CrawlJournal.queued("http://a.com", "a.html", 0));
+        journal.append(CrawlJournal.queued("http://a.com/b", "b.html", 2));
+        journal.append(CrawlJournal.queued("http://a.com/c", "c.html", 1));
+        journal.append(CrawlJournal.redirect("http://a.com/d", "b.html"));
+        journal.append(CrawlJournal.downloaded("a.html", "http://a.com", 1L, null));
+        journal.rotate();
+        CrawlJournal.compact(dir);
+        journal.append(CrawlJournal.done("a.html"));
+        journal.append(CrawlJournal.downloaded("c.html", "http://a.com/c", null, 3L));
+        journal.append(CrawlJournal.done("c.html"));
+        journal.append(CrawlJournal.level("b.html", 1, false));
+        journal.append(CrawlJournal.level("c.html", 0, true));
+        journal.close();
+
+        try (UrlStore urls = new UrlStore(folder.getRoot().toPath().resolve(CrawlerVehicle.URLS), 16, 0, 16)) {
+            final LongHashSet files = new LongHashSet();
+            final CrawlState state = new CrawlState(urls, files);
+            CrawlJournal.load(dir, state);
+
+            assertEquals(3, state.size());
+            assertTrue(files.contains(Fingerprint.of("b.html")));
+
+            final int a = state.find("a.html");
+            assertEquals(CrawlState.DONE, state.state(a));
+            assertEquals("http://a.com", urls.base(a));
+            assertEquals(1L, (long) state.hash(a));
+            assertNull(state.simHash(a));
+
+            final int b = state.find("b.html");
+            assertEquals(CrawlState.QUEUED, state.state(b));
+            assertEquals(1, urls.level(b));
+            assertEquals(b, urls.find("http://a.com/d"));
+
+            // the level lowered for parsing turns the finished page to the downloaded one
+            final int c = state.find("c.html");
+            assertEquals(CrawlState.DOWNLOADED, state.state(c));
+            assertEquals(0, urls.level(c));
+            assertEquals(3L, (long) state.simHash(c));
+
+            assertTrue(state.retryFailed("a.html"));
+            assertFalse(state.retryFailed("b.html"));
+            assertEquals(CrawlState.QUEUED, state.state(a));
+            assertTrue(state.isRetry(a));
+        }
+    }
+}
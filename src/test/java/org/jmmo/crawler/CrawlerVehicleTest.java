@@ -1,17 +1,31 @@
 package org.jmmo.crawler;
 
+import io.vertx.core.Vertx;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class CrawlerVehicleTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     CrawlerVehicle crawlerVehicle = new CrawlerVehicle();
 
     @Test
@@ -20,7 +34,7 @@ public class CrawlerVehicleTest {
 
         String file1 = crawlerVehicle.urlToPath(new URL(URLDecoder.decode("https://ru.wikipedia.org/w/index.php?title=%D0%96%D0%BE%D0%B7%D0%B5_%D0%A1%D0%B5%D1%80%D0%B6%D0%B8%D0%BE_%D0%93%D0%B0%D0%B1%D1%80%D0%B8%D0%B5%D0%BB%D0%BB%D0%B8&action=edit&redlink=1", "utf-8"))).toString();
         assertEquals("index.php.html", Paths.get(file1).getFileName().toString());
-        crawlerVehicle.files.put(file1, 0);
+        crawlerVehicle.addFile(file1);
 
         String file2 = crawlerVehicle.urlToPath(new URL(URLDecoder.decode("https://ru.wikipedia.org/w/index.php?title=%D0%96%D0%BE%D0%B7%D0%B5_%D0%A1%D0%B5%D1%80%D0%B6%D0%B8%D0%BE_%D0%93%D0%B0%D0%B1%D1%80%D0%B8%D0%B5%D0%BB%D0%BB%D0%B8&action=edit&redlink=1", "utf-8"))).toString();
         assertEquals("index.php_1.html", Paths.get(file2).getFileName().toString());
@@ -40,4 +54,74 @@ public class CrawlerVehicleTest {
         Path path3 = crawlerVehicle.urlToPath("http://sovavtomaty.ru/links.html").get();
         assertEquals("links.html", crawlerVehicle.fileToUrl(path3.toString(), path2.toString()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDedup() throws Exception {
+        final int port = TestSite.freePort();
+        final String site = "http://127.0.0.1:" + port;
+        final String duplicate = "<html><body><a href=\"" + site + "/p0.html\">home</a></body></html>";
+        final Vertx siteVertx = Vertx.vertx();
+        try {
+            final CompletableFuture<Void> listening = new CompletableFuture<>();
+            siteVertx.createHttpServer().requestHandler(request -> request.response().putHeader("Content-Type", "text/html")
+                    .end(request.path().equals("/p0.html") ? "<html><body><a href=\"" + site + "/a.html\">a</a><a href=\"" +
+                            site + "/b.html\">b</a></body></html>" : duplicate)).listen(port, "127.0.0.1", ar -> listening.complete(null));
+            listening.get(10, TimeUnit.SECONDS);
+
+            final Path output = folder.newFolder("output").toPath();
+            TestSite.crawl("crawl", "--dir=" + output, "--depth=2", "--delay=0", "--statsInterval=0", "--storeOriginals=true", site + "/p0.html");
+
+            final Path a = find(output, "a.html");
+            final Path b = find(output, "b.html");
+            // the duplicate shares the rewritten page and the backup keeps the downloaded one
+            assertTrue(Files.isSameFile(a, b));
+            assertNotEquals(duplicate, new String(Files.readAllBytes(a), StandardCharsets.UTF_8));
+            final Path backup = Files.exists(a.resolveSibling("a" + ParserVehicle.BACKUP_EXTENSION)) ?
+                    a.resolveSibling("a" + ParserVehicle.BACKUP_EXTENSION) : b.resolveSibling("b" + ParserVehicle.BACKUP_EXTENSION);
+            assertEquals(duplicate, new String(Files.readAllBytes(backup), StandardCharsets.UTF_8));
+        } finally {
+            siteVertx.close();
+        }
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        final int port = TestSite.freePort();
+        final String site = "http://127.0.0.1:" + port;
+        final Vertx siteVertx = Vertx.vertx();
+        try {
+            final CompletableFuture<Void> listening = new CompletableFuture<>();
+            siteVertx.createHttpServer().requestHandler(request -> {
+                if (TestSite.isPage(request.path())) {
+                    request.response().putHeader("Content-Type", "text/html").end(TestSite.page(site, request.path()));
+                } else {
+                    request.response().setStatusCode(404).end();
+                }
+            }).listen(port, "127.0.0.1", ar -> listening.complete(null));
+            listening.get(10, TimeUnit.SECONDS);
+
+            final Path output = folder.newFolder("output").toPath();
+            TestSite.crawl("crawl", "--dir=" + output, "--depth=2", "--delay=0", "--statsInterval=0", site + "/p0.html");
+            assertEquals(TestSite.pagesOf(2), TestSite.filesOf(output));
+            // the url store of the new crawling is not removed with the previous state
+            final Path stateDir = output.resolve(CrawlerVehicle.STATE_DIR);
+            assertTrue(Files.size(stateDir.resolve(CrawlerVehicle.URLS)) > 0);
+
+            // the page queued when the crawling stopped is downloaded with the pages it links
+            final String file = output.resolve("127.0.0.1").resolve("p100.html").toString();
+            Files.write(stateDir.resolve(CrawlJournal.JOURNAL), (CrawlJournal.queued(site + "/p100.html", file, 1).encode() + "\n")
+                    .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            TestSite.crawl("crawl", "--dir=" + output, "--depth=2", "--delay=0", "--statsInterval=0", "--resume", site + "/p0.html");
+            assertEquals(TestSite.pagesOf(2) + 1 + TestSite.FAN_OUT, TestSite.filesOf(output));
+            assertTrue(Files.size(stateDir.resolve(CrawlerVehicle.URLS)) > 0);
+        } finally {
+            siteVertx.close();
+        }
+    }
+
+    static Path find(Path dir, String name) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(file -> file.getFileName().toString().equals(name)).findFirst().get();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DnsCacheTest {
+
+    @Test
+    public void testResolve() throws Exception {
+        final StubResolver resolver = new StubResolver();
+        final TestCache cache = new TestCache(resolver, 10, 1000, 100);
+        final List<AsyncResult<InetAddress>> results = new ArrayList<>();
+
+        // the requests for a host being resolved share the lookup
+        cache.prefetch("a.com");
+        cache.resolve("a.com", results::add);
+        assertEquals(1, resolver.lookups);
+        assertEquals(0, results.size());
+
+        resolver.complete("a.com", InetAddress.getByAddress("a.com", new byte[] {10, 0, 0, 1}));
+        assertEquals(1, results.size());
+        assertEquals("10.0.0.1", results.get(0).result().getHostAddress());
+
+        cache.resolve("a.com", results::add);
+        assertEquals(1, resolver.lookups);
+        assertEquals(2, results.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.time = 1000;
+        cache.resolve("a.com", results::add);
+        assertEquals(2, resolver.lookups);
+    }
+
+    @Test
+    public void testNegative() throws Exception {
+        final StubResolver resolver = new StubResolver();
+        final TestCache cache = new TestCache(resolver, 10, 1000, 100);
+        final List<AsyncResult<InetAddress>> results = new ArrayList<>();
+
+        cache.resolve("missing.com", results::add);
+        resolver.fail("missing.com");
+        cache.resolve("missing.com", results::add);
+        assertEquals(1, resolver.lookups);
+        assertEquals(2, results.size());
+        assertTrue(results.get(1).cause() instanceof UnknownHostException);
+
+        cache.time = 100;
+        cache.resolve("missing.com", results::add);
+        assertEquals(2, resolver.lookups);
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        final StubResolver resolver = new StubResolver();
+        resolver.immediate = true;
+        final TestCache cache = new TestCache(resolver, 2, 1000, 100);
+
+        cache.prefetch("a.com");
+        cache.prefetch("b.com");
+        cache.prefetch("a.com");
+        cache.prefetch("c.com");
+        assertEquals(2, cache.size());
+        assertEquals(3, resolver.lookups);
+
+        // b.com is the least recently used one
+        cache.prefetch("a.com");
+        assertEquals(3, resolver.lookups);
+        cache.prefetch("b.com");
+        assertEquals(4, resolver.lookups);
+        assertNull(resolver.pending.get("b.com"));
+    }
+
+    static class TestCache extends DnsCache {
+        long time;
+
+        TestCache(Resolver resolver, int maxSize, long ttl, long negativeTtl) {
+            super(resolver, maxSize, ttl, negativeTtl);
+        }
+
+        @Override
+        protected long now() {
+            return time;
+        }
+    }
+
+    static class StubResolver implements DnsCache.Resolver {
+        final Map<String, Handler<AsyncResult<InetAddress>>> pending = new HashMap<>();
+        boolean immediate;
+        int lookups;
+
+        @Override
+        public void resolve(String host, Handler<AsyncResult<InetAddress>> handler) {
+            lookups++;
+            if (immediate) {
+                handler.handle(Future.succeededFuture(InetAddress.getLoopbackAddress()));
+            } else {
+                pending.put(host, handler);
+            }
+        }
+
+        void complete(String host, InetAddress address) {
+            pending.remove(host).handle(Future.succeededFuture(address));
+        }
+
+        void fail(String host) {
+            pending.remove(host).handle(Future.failedFuture(new UnknownHostException(host)));
+        }
+    }
+}
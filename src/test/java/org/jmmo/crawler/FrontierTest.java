@@ -0,0 +1,125 @@
+package org.jmmo.crawler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrontierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDepth() throws Exception {
+        final Frontier frontier = new Frontier(Frontier.DEPTH);
+        frontier.add(0, 2, "a");
+        frontier.add(1, 1, "a");
+        frontier.add(2, 2, "b");
+        frontier.add(3, 1, "b");
+        frontier.setLevel(2, 2, 0);
+
+        assertEquals(4, frontier.size());
+        assertEquals(2, frontier.poll());
+        assertEquals(1, frontier.poll());
+        assertEquals(3, frontier.poll());
+        assertEquals(0, frontier.poll());
+        assertEquals(-1, frontier.poll());
+        assertTrue(frontier.isEmpty());
+    }
+
+    @Test
+    public void testBfs() throws Exception {
+        final Frontier frontier = new Frontier(Frontier.BFS);
+        frontier.open(0, 0);
+        frontier.open(1, 1);
+        frontier.add(1, 1, "a");
+
+        // the next level waits for the previous one
+        assertEquals(-1, frontier.poll());
+        assertFalse(frontier.isFinal(2));
+        assertTrue(frontier.isFinal(1));
+
+        frontier.close(0, 0);
+        assertEquals(1, frontier.poll());
+        assertTrue(frontier.isFinal(2));
+        assertEquals(1, frontier.lowestOpenLevel());
+    }
+
+    @Test
+    public void testInlinks() throws Exception {
+        final Frontier frontier = new Frontier(Frontier.INLINKS);
+        for (int record = 0; record < 3000; record++) {
+            frontier.add(record, 1, "a");
+        }
+        for (int i = 0; i < 5000; i++) {
+            frontier.linked(2000 + i % 3);
+        }
+        frontier.linked(2002);
+        frontier.linked(2002);
+
+        assertEquals(2002, frontier.poll());
+        assertEquals(2000, frontier.poll());
+        assertEquals(2001, frontier.poll());
+        assertEquals(0, frontier.poll());
+        assertEquals(2996, frontier.size());
+    }
+
+    @Test
+    public void testHost() throws Exception {
+        final Frontier frontier = new Frontier(Frontier.HOST);
+        frontier.add(0, 1, "a");
+        frontier.add(1, 1, "a");
+        frontier.add(2, 1, "a");
+        frontier.add(3, 1, "b");
+        frontier.add(4, 1, "b");
+
+        assertEquals(0, frontier.poll());
+        assertEquals(3, frontier.poll());
+        assertEquals(1, frontier.poll());
+        assertEquals(4, frontier.poll());
+        assertEquals(2, frontier.poll());
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        final Path dir = folder.getRoot().toPath().resolve("frontier");
+        final Frontier frontier = new Frontier(Frontier.DEPTH, dir, 10);
+        for (int record = 0; record < 100; record++) {
+            frontier.add(record, 3 - record % 4, "a");
+        }
+        // the records move to the lower levels while they are on the disk
+        frontier.setLevel(96, 3, 0);
+        frontier.setLevel(97, 2, 0);
+
+        assertTrue(frontier.heapSize <= 10);
+        assertTrue(frontier.spilledBands() > 0);
+        assertEquals(100, frontier.size());
+
+        int previousLevel = 0;
+        int polled = 0;
+        int record;
+        while ((record = frontier.poll()) >= 0) {
+            final int level = record == 96 || record == 97 ? 0 : 3 - record % 4;
+            assertTrue(level >= previousLevel);
+            assertTrue(frontier.heapSize <= 10);
+            previousLevel = level;
+            polled++;
+        }
+        assertEquals(100, polled);
+        assertTrue(frontier.isEmpty());
+        assertEquals(0, frontier.spilledBands());
+
+        frontier.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
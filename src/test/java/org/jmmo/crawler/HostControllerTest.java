@@ -0,0 +1,78 @@
+package org.jmmo.crawler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HostControllerTest {
+
+    HostController controller = new HostController(8, 1000);
+
+    @Test
+    public void testIncreaseAndDecrease() throws Exception {
+        assertEquals(1, controller.concurrencyOf("a"));
+
+        // the slow start raises the window by every response while the latency is flat
+        for (int i = 0; i < 10; i++) {
+            controller.succeeded("a", controller.started("a"), 10);
+        }
+        assertEquals(8, controller.concurrencyOf("a"));
+
+        final int epoch = controller.started("a");
+        assertEquals(0, controller.failed("a", epoch, -1));
+        assertEquals(4, controller.concurrencyOf("a"));
+        // the requests started before the decrease do not decrease it again
+        controller.failed("a", epoch, -1);
+        assertEquals(4, controller.concurrencyOf("a"));
+
+        // the additive increase after the slow start
+        for (int i = 0; i < 5; i++) {
+            controller.succeeded("a", controller.started("a"), 10);
+        }
+        assertEquals(5, controller.concurrencyOf("a"));
+
+        // the rising latency decreases the window
+        for (int i = 0; i < 10 && controller.concurrencyOf("a") == 5; i++) {
+            controller.succeeded("a", controller.started("a"), 1000);
+        }
+        assertEquals(2, controller.concurrencyOf("a"));
+    }
+
+    @Test
+    public void testBackoff() throws Exception {
+        assertEquals(5000, controller.failed("a", controller.started("a"), 5000));
+        assertEquals(1000, controller.backoffOf("a"));
+        assertEquals(2000, controller.failed("a", controller.started("a"), -1));
+        assertEquals(2000, controller.backoffOf("a"));
+
+        controller.succeeded("a", controller.started("a"), 10);
+        assertEquals(1000, controller.backoffOf("a"));
+        assertEquals(1, controller.concurrencyOf("a"));
+    }
+
+    @Test
+    public void testRetryBudget() throws Exception {
+        final RetryBudget budget = new RetryBudget(0.5, 2);
+        assertTrue(budget.tryRetry("a"));
+        assertTrue(budget.tryRetry("a"));
+        assertFalse(budget.tryRetry("a"));
+        assertTrue(budget.tryRetry("b"));
+
+        budget.succeeded("a");
+        budget.succeeded("a");
+        assertTrue(budget.tryRetry("a"));
+        assertFalse(budget.tryRetry("a"));
+        assertEquals(3, budget.retriesOf("a"));
+    }
+
+    @Test
+    public void testRetryAfter() throws Exception {
+        assertEquals(-1, LoaderVehicle.retryAfter(null));
+        assertEquals(-1, LoaderVehicle.retryAfter("soon"));
+        assertEquals(120000, LoaderVehicle.retryAfter(" 120 "));
+        assertEquals(0, LoaderVehicle.retryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertTrue(LoaderVehicle.retryAfter("Fri, 31 Dec 2100 23:59:59 GMT") > 0);
+    }
+}
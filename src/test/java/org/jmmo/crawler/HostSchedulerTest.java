@@ -0,0 +1,106 @@
+package org.jmmo.crawler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HostSchedulerTest {
+
+    HostScheduler<String> scheduler = new HostScheduler<>(100, 1);
+
+    @Test
+    public void testDelayPerHost() throws Exception {
+        scheduler.add("a", "a1");
+        scheduler.add("a", "a2");
+        scheduler.add("b", "b1");
+
+        assertEquals("a1", scheduler.poll(0));
+        assertEquals("b1", scheduler.poll(0));
+        assertNull(scheduler.poll(0));
+
+        scheduler.release("a");
+        assertNull(scheduler.poll(50));
+        assertEquals(100, scheduler.nextTime());
+        assertEquals("a2", scheduler.poll(100));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void testConcurrencyPerHost() throws Exception {
+        scheduler.setDelay("a", 0);
+        scheduler.add("a", "a1");
+        scheduler.add("a", "a2");
+
+        assertEquals("a1", scheduler.poll(0));
+        assertNull(scheduler.poll(0));
+        assertEquals(-1, scheduler.nextTime());
+
+        scheduler.setConcurrency("a", 2);
+        assertEquals("a2", scheduler.poll(0));
+    }
+
+    @Test
+    public void testQueueDepthsAndPurge() throws Exception {
+        scheduler.add("a", "a1");
+        scheduler.add("a", "a2");
+        scheduler.add("b", "b1");
+        assertEquals("{a=2, b=1}", scheduler.queueDepths().toString());
+
+        scheduler.poll(0);
+        scheduler.poll(0);
+        scheduler.release("a");
+        scheduler.release("b");
+        scheduler.poll(100);
+        scheduler.release("a");
+
+        scheduler.purge(150);
+        assertEquals(1, scheduler.hosts());
+        scheduler.purge(200);
+        assertEquals(0, scheduler.hosts());
+    }
+
+    @Test
+    public void testPauseAndRetry() throws Exception {
+        scheduler.setDelay("a", 0);
+        scheduler.add("a", "a1");
+        scheduler.add("a", "a2");
+
+        assertEquals("a1", scheduler.poll(0));
+        scheduler.release("a");
+        scheduler.addFirst("a", "a1");
+        scheduler.pause("a", 500);
+        scheduler.setBackoff("a", 50);
+
+        assertNull(scheduler.poll(100));
+        assertEquals(500, scheduler.nextTime());
+        assertEquals("a1", scheduler.poll(500));
+        scheduler.release("a");
+        assertNull(scheduler.poll(520));
+        assertEquals("a2", scheduler.poll(550));
+    }
+
+    @Test
+    public void testSettingsPurge() throws Exception {
+        scheduler.setDelay("a", 500);
+        scheduler.setConcurrency("a", 2);
+        scheduler.setBackoff("a", 50);
+        scheduler.add("a", "a1");
+        scheduler.setDelay("b", 100);
+        scheduler.setConcurrency("b", 1);
+        assertEquals(3, scheduler.settings());
+
+        assertEquals("a1", scheduler.poll(0));
+        scheduler.release("a");
+        scheduler.setDelay("a", 100);
+        scheduler.setConcurrency("a", 1);
+        scheduler.setBackoff("a", 0);
+        assertEquals(0, scheduler.settings());
+
+        scheduler.setDelay("a", 200);
+        scheduler.purge(1000);
+        assertEquals(0, scheduler.hosts());
+        assertEquals(1, scheduler.settings());
+        assertEquals(200, scheduler.delayOf("a"));
+    }
+}
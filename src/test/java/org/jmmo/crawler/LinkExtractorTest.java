@@ -0,0 +1,41 @@
+package org.jmmo.crawler;
+
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class LinkExtractorTest {
+
+    static final String html = "<!DOCTYPE html><html><head><title>Test</title>" +
+            "<script>var s = '<a href=\"script.html\">';</script>" +
+            "<style>a > b { color: red }</style></head><body>" +
+            "<!-- <a href=\"comment.html\"> -- -->" +
+            "<a href=\"a.html\">a</a> <A HREF='b.html?x=1&amp;y=2'>b</A>" +
+            "<a class=x href=c.html>c</a><a href=\"#top\">top</a>" +
+            "<a href=\"javascript:void(0)\">js</a><a href=\"d.html\" rel=\"nofollow\">d</a>" +
+            "<a href=\"e.html\" download>e</a><a name=\"f\">f</a>" +
+            "<a title=\"1 > 0\" href=\"ф.html\">ф</a> 1 < 2 <a\nhref=\"/g.html\"\n>g</a>" +
+            "</body></html>";
+
+    @Test
+    public void testLinks() throws Exception {
+        final List<String> expected = Jsoup.parse(html).select("a[href]:not([href^=#]):not([href^=javascript]):not([rel=nofollow]):not([download])")
+                .stream().map(element -> element.attr("href")).collect(Collectors.toList());
+        assertEquals(Arrays.asList("a.html", "b.html?x=1&y=2", "c.html", "ф.html", "/g.html"), expected);
+
+        final byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        for (int chunk = 1; chunk <= bytes.length; chunk *= 2) {
+            final LinkExtractor extractor = new LinkExtractor();
+            for (int i = 0; i < bytes.length; i += chunk) {
+                extractor.feed(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + chunk)));
+            }
+            assertEquals("chunk " + chunk, expected, extractor.links());
+        }
+    }
+}
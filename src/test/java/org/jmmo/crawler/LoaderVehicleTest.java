@@ -0,0 +1,193 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.net.NetServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoaderVehicleTest {
+    static final int DEPTH = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Vertx siteVertx;
+
+    @Before
+    public void setUp() {
+        siteVertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown() {
+        siteVertx.close();
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        final int port = TestSite.freePort();
+        final String site = "http://127.0.0.1:" + port;
+        final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+        final HttpServer server = siteVertx.createHttpServer().requestHandler(request -> {
+            connections.add(request.remoteAddress().port());
+            if (TestSite.isPage(request.path())) {
+                request.response().putHeader("Content-Type", "text/html").end(TestSite.page(site, request.path()));
+            } else {
+                request.response().setStatusCode(404).end();
+            }
+        });
+        listen(server, port);
+
+        final TestSite.Crawl crawl = crawl(site);
+
+        assertEquals(TestSite.pagesOf(DEPTH), TestSite.filesOf(folder.getRoot().toPath()));
+        // sixteen downloads pipelined by eight go over two connections
+        assertTrue("Connections: " + connections.size(), connections.size() <= 2);
+        assertEquals(0, crawl.value("crawler_connection_fallbacks_total"));
+        assertEquals(0, crawl.value("crawler_download_failures_total"));
+    }
+
+    @Test
+    public void testGracefulClose() throws Exception {
+        final int port = TestSite.freePort();
+        final String site = "http://127.0.0.1:" + port;
+        // the server announces closing every connection after five responses as Apache MaxKeepAliveRequests does,
+        // it lingers for the client to close the connection and the requests pipelined after the fifth one are dropped
+        final NetServer server = siteVertx.createNetServer().connectHandler(socket -> {
+            final StringBuilder received = new StringBuilder();
+            final int[] responses = {0};
+            socket.handler(buffer -> {
+                received.append(buffer.toString(StandardCharsets.ISO_8859_1.name()));
+                int end;
+                while (responses[0] < 5 && (end = received.indexOf("\r\n\r\n")) != -1) {
+                    final String request = received.substring(0, end);
+                    received.delete(0, end + 4);
+                    socket.write(response(site, request, "HTTP/1.1", ++responses[0] == 5 ? "Connection: close\r\n" : ""));
+                }
+            });
+        });
+        listen(server, port);
+
+        final TestSite.Crawl crawl = crawl(site);
+
+        assertEquals(TestSite.pagesOf(DEPTH), TestSite.filesOf(folder.getRoot().toPath()));
+        assertEquals(0, crawl.value("crawler_connection_fallbacks_total"));
+        assertEquals(0, crawl.value("crawler_download_failures_total"));
+    }
+
+    @Test
+    public void testHttp10Fallback() throws Exception {
+        final int port = TestSite.freePort();
+        final String site = "http://127.0.0.1:" + port;
+        // the server answers only the first request of every connection by HTTP/1.0 and closes it
+        final NetServer server = siteVertx.createNetServer().connectHandler(socket -> {
+            final Buffer received = Buffer.buffer();
+            final boolean[] answered = {false};
+            socket.handler(buffer -> {
+                received.appendBuffer(buffer);
+                final String request = received.toString(StandardCharsets.ISO_8859_1.name());
+                if (answered[0] || !request.contains("\r\n\r\n")) {
+                    return;
+                }
+                answered[0] = true;
+                socket.write(response(site, request, "HTTP/1.0", ""));
+                socket.close();
+            });
+        });
+        listen(server, port);
+
+        final TestSite.Crawl crawl = crawl(site);
+
+        assertEquals(TestSite.pagesOf(DEPTH), TestSite.filesOf(folder.getRoot().toPath()));
+        assertTrue(crawl.value("crawler_connection_fallbacks_total") >= 1);
+        assertEquals(0, crawl.value("crawler_download_failures_total"));
+    }
+
+    @Test
+    public void testRobotsRedirect() throws Exception {
+        final int port = TestSite.freePort();
+        final String site = "http://127.0.0.1:" + port;
+        final HttpServer server = siteVertx.createHttpServer().requestHandler(request -> {
+            if (request.path().equals("/robots.txt")) {
+                request.response().setStatusCode(301).putHeader("Location", "/moved/robots.txt").end();
+            } else if (request.path().equals("/moved/robots.txt")) {
+                request.response().end("User-agent: *\nDisallow: /p1.html\n");
+            } else if (TestSite.isPage(request.path())) {
+                request.response().putHeader("Content-Type", "text/html").end(TestSite.page(site, request.path()));
+            } else {
+                request.response().setStatusCode(404).end();
+            }
+        });
+        listen(server, port);
+
+        crawl(site);
+
+        // the page disallowed by the redirected robots.txt is skipped with the pages found only through it
+        assertEquals(TestSite.pagesOf(DEPTH) - TestSite.pagesOf(DEPTH - 1), TestSite.filesOf(folder.getRoot().toPath()));
+    }
+
+    @Test
+    public void testRobotsServerError() throws Exception {
+        final int port = TestSite.freePort();
+        final String site = "http://127.0.0.1:" + port;
+        final HttpServer server = siteVertx.createHttpServer().requestHandler(request -> {
+            if (request.path().equals("/robots.txt")) {
+                request.response().setStatusCode(503).end();
+            } else if (TestSite.isPage(request.path())) {
+                request.response().putHeader("Content-Type", "text/html").end(TestSite.page(site, request.path()));
+            } else {
+                request.response().setStatusCode(404).end();
+            }
+        });
+        listen(server, port);
+
+        crawl(site);
+
+        // unreachable robots.txt disallows the whole host
+        assertEquals(0, TestSite.filesOf(folder.getRoot().toPath()));
+    }
+
+    // the request written in the same turn as the server closes the connection waits for the timeout and is retried
+    TestSite.Crawl crawl(String site) throws Exception {
+        final File conf = folder.newFile("crawler.json");
+        Files.write(conf.toPath(), "{\"requestTimeout\": 2}".getBytes(StandardCharsets.UTF_8));
+
+        return TestSite.crawl("crawl", "--conf=" + conf, "--dir=" + folder.newFolder("output"), "--depth=" + DEPTH, "--delay=0",
+                "--statsInterval=0", "--adaptive=false", "--downloads=16", "--streams=8", site + "/p0.html");
+    }
+
+    static Buffer response(String site, String request, String version, String headers) {
+        final String path = request.substring(request.indexOf(' ') + 1, request.indexOf(' ', request.indexOf(' ') + 1));
+        final byte[] body = (TestSite.isPage(path) ? TestSite.page(site, path) : "").getBytes(StandardCharsets.UTF_8);
+        return Buffer.buffer(version + (TestSite.isPage(path) ? " 200 OK\r\nContent-Type: text/html\r\n" : " 404 Not Found\r\n") +
+                headers + "Content-Length: " + body.length + "\r\n\r\n").appendBytes(body);
+    }
+
+    static void listen(HttpServer server, int port) throws Exception {
+        final CompletableFuture<Void> listening = new CompletableFuture<>();
+        server.listen(port, "127.0.0.1", ar -> listening.complete(null));
+        listening.get(10, TimeUnit.SECONDS);
+    }
+
+    static void listen(NetServer server, int port) throws Exception {
+        final CompletableFuture<Void> listening = new CompletableFuture<>();
+        server.listen(port, "127.0.0.1", ar -> listening.complete(null));
+        listening.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,60 @@
+package org.jmmo.crawler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RobotsRulesTest {
+
+    static final String ROBOTS =
+            "# comment\n" +
+            "User-agent: *\n" +
+            "Disallow: /w/\n" +
+            "Allow: /w/index.php?title=Main\n" +
+            "Disallow: /*.pdf$\n" +
+            "Disallow: /private*/data\n" +
+            "Crawl-delay: 1.5\n" +
+            "\n" +
+            "User-agent: BadBot\n" +
+            "User-agent: vertx-crawler-special\n" +
+            "Disallow: /\n";
+
+    @Test
+    public void testAnyAgent() throws Exception {
+        final RobotsRules rules = RobotsRules.parse(ROBOTS, "vertx-crawler");
+
+        assertTrue(rules.isAllowed("/wiki/Main"));
+        assertFalse(rules.isAllowed("/w/index.php?title=Other"));
+        assertTrue(rules.isAllowed("/w/index.php?title=Main_Page"));
+        assertFalse(rules.isAllowed("/docs/file.pdf"));
+        assertTrue(rules.isAllowed("/docs/file.pdf?download=1"));
+        assertFalse(rules.isAllowed("/private1/data/x"));
+        assertTrue(rules.isAllowed("/private1/info"));
+        assertEquals(1500, rules.getCrawlDelay());
+    }
+
+    @Test
+    public void testSpecificAgent() throws Exception {
+        final RobotsRules rules = RobotsRules.parse(ROBOTS, "BadBot/1.0");
+
+        assertFalse(rules.isAllowed("/wiki/Main"));
+        assertEquals(-1, rules.getCrawlDelay());
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        final RobotsCache cache = new RobotsCache(2, 100);
+        cache.put("http://a", RobotsRules.ALLOW_ALL, 0);
+        cache.put("http://b", RobotsRules.ALLOW_ALL, 0);
+        cache.get("http://a", 10);
+        cache.put("http://c", RobotsRules.ALLOW_ALL, 10);
+
+        assertNull(cache.get("http://b", 10));
+        assertEquals(RobotsRules.ALLOW_ALL, cache.get("http://a", 50));
+        assertNull(cache.get("http://a", 100));
+        assertEquals(1, cache.size());
+    }
+}
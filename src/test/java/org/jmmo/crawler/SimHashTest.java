@@ -0,0 +1,43 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimHashTest {
+
+    static final String TEXT = "Async multi-threaded Web Crawler based on Vert.x framework contains two main commands: " +
+            "crawl for crawling the Web and find for multi-threaded searching word in directory recursively. " +
+            "It crawls only HTML files and only UTF-8 encoding is supported for searching too.";
+
+    @Test
+    public void testSimHash() throws Exception {
+        final long page = simHash("<html><body><p>" + TEXT + "</p></body></html>", 7);
+        assertEquals(page, simHash("<html><body><div class=\"x\">" + TEXT + "</div></body></html>", 3));
+        assertTrue(SimHash.distance(page, simHash("<p>" + TEXT + " Session 12345</p>", 5)) <= 8);
+        assertTrue(SimHash.distance(page, simHash("<p>Completely different page about something else entirely</p>", 5)) > 10);
+    }
+
+    @Test
+    public void testSimHashIndex() throws Exception {
+        final SimHashIndex index = new SimHashIndex();
+        index.add(0x0123456789abcdefL, 1);
+        index.add(0xfedcba9876543210L, 2);
+
+        assertEquals(1, index.find(0x0123456789abcdefL ^ 0x0001000100010000L, 3));
+        assertEquals(2, index.find(0xfedcba9876543210L ^ 0x8000000000000001L, 3));
+        assertEquals(-1, index.find(0x0123456789abcdefL ^ 0x0001000100010001L, 3));
+        assertEquals(-1, index.find(0x0123456789abcdefL ^ 0x0000000000000003L, 1));
+    }
+
+    static long simHash(String html, int chunk) {
+        final SimHash simHash = new SimHash();
+        final Buffer buffer = Buffer.buffer(html);
+        for (int i = 0; i < buffer.length(); i += chunk) {
+            simHash.feed(buffer.getBuffer(i, Math.min(buffer.length(), i + chunk)));
+        }
+        return simHash.value();
+    }
+}
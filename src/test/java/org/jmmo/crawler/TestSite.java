@@ -0,0 +1,84 @@
+package org.jmmo.crawler;
+
+import io.vertx.core.Launcher;
+import io.vertx.core.Vertx;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class TestSite {
+    public static final int FAN_OUT = 3;
+
+    // every page links the next FAN_OUT pages of the tree
+    public static String page(String site, String path) {
+        final int number = Integer.parseInt(path.substring(2, path.length() - ".html".length()));
+        final StringBuilder page = new StringBuilder("<html><body>");
+        for (int i = 1; i <= FAN_OUT; i++) {
+            page.append("<a href=\"").append(site).append("/p").append(number * FAN_OUT + i).append(".html\">page</a>");
+        }
+        return page.append("</body></html>").toString();
+    }
+
+    public static boolean isPage(String path) {
+        return path.matches("/p\\d+\\.html");
+    }
+
+    public static int pagesOf(int depth) {
+        int pages = 0;
+        for (int level = 0, width = 1; level <= depth; level++, width *= FAN_OUT) {
+            pages += width;
+        }
+        return pages;
+    }
+
+    public static long filesOf(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(file -> file.getFileName().toString().matches("p\\d+\\.html")).count();
+        }
+    }
+
+    public static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // runs the crawl command as the launcher does and waits till all jobs are done
+    public static Crawl crawl(String... args) throws Exception {
+        return start(args).await();
+    }
+
+    public static Crawl start(String... args) {
+        final Crawl crawl = new Crawl();
+        crawl.dispatch(args);
+        return crawl;
+    }
+
+    public static class Crawl extends Launcher {
+        protected final CountDownLatch done = new CountDownLatch(1);
+        protected volatile CrawlMetrics metrics;
+
+        @Override
+        public void afterStartingVertx(Vertx vertx) {
+            super.afterStartingVertx(vertx);
+            metrics = CrawlMetrics.of(vertx);
+            vertx.eventBus().consumer(CrawlMessages.DONE, message -> done.countDown());
+        }
+
+        public Crawl await() throws InterruptedException {
+            if (!done.await(60, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The crawl is not done in time");
+            }
+            return this;
+        }
+
+        public long value(String metric) {
+            return metrics.value(metric);
+        }
+    }
+}
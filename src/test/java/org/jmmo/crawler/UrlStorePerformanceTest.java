@@ -0,0 +1,92 @@
+package org.jmmo.crawler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class UrlStorePerformanceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMillion() throws Exception {
+        measureMap(1_000_000);
+        measureStore(1_000_000, 0);
+        measureStore(1_000_000, 1_000_000);
+    }
+
+    @Test
+    public void testTenMillions() throws Exception {
+        measureStore(10_000_000, 0);
+        measureStore(10_000_000, 10_000_000);
+    }
+
+    protected void measureMap(int count) {
+        final long before = usedMemory();
+        final long start = System.nanoTime();
+
+        final Map<String, String> urls = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            urls.put(url(i), file(i));
+        }
+        final long added = System.nanoTime();
+
+        int found = 0;
+        for (int i = 0; i < count * 2; i++) {
+            if (urls.containsKey(url(i))) {
+                found++;
+            }
+        }
+        final long checked = System.nanoTime();
+
+        report("HashMap", count, 0, before, start, added, checked, found);
+        urls.clear();
+    }
+
+    protected void measureStore(int count, int bloomFilter) throws Exception {
+        final long before = usedMemory();
+        final long start = System.nanoTime();
+
+        try (UrlStore store = new UrlStore(folder.newFolder().toPath().resolve(CrawlerVehicle.URLS), 65536, bloomFilter, 10000)) {
+            for (int i = 0; i < count; i++) {
+                store.add(url(i), file(i), 1);
+            }
+            final long added = System.nanoTime();
+
+            int found = 0;
+            for (int i = 0; i < count * 2; i++) {
+                if (store.find(url(i)) >= 0) {
+                    found++;
+                }
+            }
+            final long checked = System.nanoTime();
+
+            report("UrlStore", count, bloomFilter, before, start, added, checked, found);
+        }
+    }
+
+    protected void report(String name, int count, int bloomFilter, long before, long start, long added, long checked, int found) {
+        System.out.println(String.format("%s %,d urls (bloom filter %,d): memory %,d MB, add %,.0f urls/s, check %,.0f urls/s, found %,d",
+                name, count, bloomFilter, (usedMemory() - before) / 1024 / 1024,
+                count / ((added - start) / 1e9), count * 2 / ((checked - added) / 1e9), found));
+    }
+
+    protected String url(int i) {
+        return "https://ru.wikipedia.org/wiki/%D0%A1%D1%82%D0%B0%D1%82%D1%8C%D1%8F_" + i;
+    }
+
+    protected String file(int i) {
+        return "/home/crawler/output/ru.wikipedia.org/wiki/Статья_" + i + ".html";
+    }
+
+    protected long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+}
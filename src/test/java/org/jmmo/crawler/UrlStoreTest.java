@@ -0,0 +1,52 @@
+package org.jmmo.crawler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class UrlStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStore() throws Exception {
+        try (UrlStore store = new UrlStore(folder.getRoot().toPath().resolve(CrawlerVehicle.URLS), 4, 100, 1)) {
+            assertEquals(-1, store.find("http://a.com"));
+
+            final int record = store.add("http://a.com", "/out/a.com.html", 2);
+            store.alias("http://www.a.com", record);
+            final int other = store.add("http://b.com", "/out/b.com.html", 1);
+
+            assertEquals(record, store.find("http://www.a.com"));
+            assertEquals(other, store.find("http://b.com"));
+            assertEquals(2, store.level(record));
+            assertEquals("/out/a.com.html", store.file(record));
+            assertEquals("/out/b.com.html", store.file(other));
+            assertEquals("http://a.com", store.url(record));
+            assertNull(store.base(record));
+
+            store.setBase(record, "http://www.a.com/");
+            store.setLevel(record, 0);
+            assertEquals("http://www.a.com/", store.base(record));
+            assertEquals("/out/a.com.html", store.file(record));
+            assertEquals(0, store.level(record));
+            assertEquals(3, store.urls());
+            assertEquals(2, store.records());
+        }
+    }
+
+    @Test
+    public void testLongHashSet() throws Exception {
+        final LongHashSet set = new LongHashSet(2);
+        for (long i = -1000; i < 1000; i++) {
+            assertTrue(set.add(i * 31));
+        }
+        assertFalse(set.add(0));
+        assertEquals(2000, set.size());
+        assertTrue(set.contains(-31));
+        assertFalse(set.contains(1));
+    }
+}
@@ -0,0 +1,38 @@
+package org.jmmo.crawler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ValidatorStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndReopen() throws Exception {
+        final Path dir = folder.getRoot().toPath().resolve(CrawlerVehicle.VALIDATORS_DIR);
+        final Path page = Files.write(folder.getRoot().toPath().resolve("a.html"), new byte[] {1});
+
+        try (ValidatorStore validators = new ValidatorStore(dir)) {
+            validators.open();
+            validators.put("http://a.com", new ValidatorStore.Validator(page.toString(), "\"1\"", null, 1L));
+            validators.put("http://a.com/b", new ValidatorStore.Validator(folder.getRoot().toPath().resolve("b.html").toString(), null, "Sun, 18 Oct 2026 07:49:32 GMT", 2L));
+            validators.put("http://a.com", new ValidatorStore.Validator(page.toString(), "\"2\"", null, 3L));
+        }
+
+        try (ValidatorStore validators = new ValidatorStore(dir)) {
+            validators.open();
+            assertEquals(1, validators.size());
+            assertEquals("\"2\"", validators.get("http://a.com").getEtag());
+            assertEquals(3L, (long) validators.get("http://a.com").getHash());
+            assertNull(validators.get("http://a.com/b"));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.jmmo.crawler.search;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirWalkerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWalk() throws Exception {
+        final Path dir = folder.getRoot().toPath();
+        for (int i = 0; i < 10; i++) {
+            final Path sub = Files.createDirectories(dir.resolve("d" + i % 3).resolve("s" + i));
+            for (int j = 0; j < 100; j++) {
+                Files.write(sub.resolve("f" + j + (j % 2 == 0 ? ".txt" : ".html")), new byte[] {1});
+            }
+        }
+        final Path skip = Files.createDirectories(dir.resolve(SearchIndex.INDEX_DIR));
+        Files.write(skip.resolve("skipped.txt"), new byte[] {1});
+
+        // the small queue holds the walk until the batches are taken
+        final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(1);
+        final AtomicInteger notified = new AtomicInteger();
+        final List<String> files = new ArrayList<>();
+        final Thread consumer = new Thread(() -> {
+            try {
+                while (true) {
+                    final List<String> batch = queue.take();
+                    assertTrue(batch.size() <= DirWalker.BATCH_FILES);
+                    files.addAll(batch);
+                }
+            } catch (InterruptedException e) {
+                // done
+            }
+        });
+        consumer.start();
+
+        try (DirWalker walker = new DirWalker(4, queue, Optional.of(Pattern.compile("\\.txt$")), skip.toAbsolutePath(), notified::incrementAndGet)) {
+            assertEquals(500, walker.walk(dir));
+        }
+
+        while (!queue.isEmpty()) {
+            Thread.sleep(10);
+        }
+        consumer.interrupt();
+        consumer.join();
+
+        assertEquals(500, files.size());
+        assertEquals(500, files.stream().distinct().count());
+        assertFalse(files.stream().anyMatch(file -> file.contains(SearchIndex.INDEX_DIR)));
+        assertTrue(notified.get() >= 2);
+    }
+}
@@ -0,0 +1,73 @@
+package org.jmmo.crawler.search;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MultiWordMatcherTest {
+
+    @Test
+    public void testCountsAsRegex() throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("Crawler crawls, the CRAWLER_bot crawler\n aaaa Привет,ПРИВЕТ приветствие ΣΊΣΥΦΟΣ σίσυφος ſ ");
+        }
+        final String text = builder.toString();
+        final FinderVehicle finderVehicle = new FinderVehicle();
+
+        final List<String> words = Arrays.asList("crawler", "Crawler", "craw", "aa", "a", "Привет", "привет", "σίσυφος", "the CRAWLER", ", ", "s");
+        for (boolean sensitive : Arrays.asList(false, true)) {
+            for (boolean whole : Arrays.asList(false, true)) {
+                final MultiWordMatcher multiMatcher = MultiWordMatcher.of(words, sensitive, whole);
+                // the small buffer makes code points cross the refills
+                for (int bufferSize : Arrays.asList(7, 1000)) {
+                    final int[] counts = multiMatcher.count(
+                            Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), ByteBuffer.allocate(bufferSize));
+
+                    for (int i = 0; i < words.size(); i++) {
+                        final Matcher matcher = finderVehicle.patternFor(words.get(i), sensitive, whole).matcher(text);
+                        int expected = 0;
+                        while (matcher.find()) {
+                            expected++;
+                        }
+                        assertEquals(words.get(i) + " " + sensitive + " " + whole + " " + bufferSize, expected, counts[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        final FindQuery query = new FindQuery("crawler (vertx OR \"event bus\") NOT spider");
+        assertEquals(Arrays.asList("crawler", "vertx", "event bus", "spider"), query.words());
+
+        final Set<String> found = new HashSet<>(Arrays.asList("crawler", "event bus"));
+        assertTrue(query.test(found::contains));
+        found.add("spider");
+        assertFalse(query.test(found::contains));
+        found.remove("crawler");
+        assertTrue(new FindQuery("crawler OR spider AND NOT vertx").test(found::contains));
+
+        for (String wrong : Arrays.asList("", "a AND", "(a OR b", "a OR OR b", "\"a")) {
+            try {
+                new FindQuery(wrong);
+                throw new AssertionError(wrong);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
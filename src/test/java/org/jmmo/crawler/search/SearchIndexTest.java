@@ -0,0 +1,89 @@
+package org.jmmo.crawler.search;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCountsAsScanning() throws Exception {
+        final Path dir = folder.getRoot().toPath();
+        Files.write(dir.resolve("a.txt"), "Crawler crawls the web, the crawler_bot\nCRAWLER aaaa Привет мир".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(dir.resolve("sub"));
+        Files.write(dir.resolve("sub").resolve("b.html"), "<p>привет, ПРИВЕТ crawler</p>\nhello world".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("sub").resolve("c.txt"), "nothing here".getBytes(StandardCharsets.UTF_8));
+
+        SearchIndex.build(dir, dir.resolve(SearchIndex.INDEX_DIR), 3);
+
+        final FinderVehicle finderVehicle = new FinderVehicle();
+        try (SearchIndex index = new SearchIndex(dir.resolve(SearchIndex.INDEX_DIR))) {
+            final List<SearchIndex.IndexedFile> files = index.files();
+            assertEquals(3, files.size());
+
+            for (String word : Arrays.asList("crawler", "Crawler", "craw", "aa", "Привет", "ПРИВ", "the", "bot", "absent")) {
+                for (boolean sensitive : Arrays.asList(false, true)) {
+                    for (boolean whole : Arrays.asList(false, true)) {
+                        final Map<Integer, Integer> counts = index.count(word, sensitive, whole).get();
+                        for (int i = 0; i < files.size(); i++) {
+                            final Path file = dir.resolve(files.get(i).getPath());
+                            assertEquals(word + " " + sensitive + " " + whole + " " + file,
+                                    finderVehicle.count(file, finderVehicle.patternFor(word, sensitive, whole)), (int) counts.getOrDefault(i, 0));
+                        }
+                    }
+                }
+            }
+
+            assertFalse(index.count("hello world", false, false).isPresent());
+            final Optional<Set<Integer>> candidates = index.candidates("hello world", false);
+            assertEquals(1, candidates.get().size());
+            assertTrue(files.get(candidates.get().iterator().next()).getPath().endsWith("b.html"));
+        }
+    }
+
+    @Test
+    public void testUndecodableFiles() throws Exception {
+        final Path dir = folder.getRoot().toPath();
+        final Path latin = dir.resolve("latin.txt");
+        Files.write(latin, "Café crawler\nnaïve crawler web".getBytes(StandardCharsets.ISO_8859_1));
+        Files.write(dir.resolve("broken.html.gz"), "not gzipped crawler".getBytes(StandardCharsets.UTF_8));
+
+        SearchIndex.build(dir, dir.resolve(SearchIndex.INDEX_DIR));
+
+        final ByteBuffer buffer = ByteBuffer.allocate(WordMatcher.BUFFER_SIZE);
+        try (SearchIndex index = new SearchIndex(dir.resolve(SearchIndex.INDEX_DIR))) {
+            final List<SearchIndex.IndexedFile> files = index.files();
+            assertEquals(2, files.size());
+
+            // the malformed bytes split the words as the scanning does
+            final int latinId = files.get(0).getPath().endsWith("latin.txt") ? 0 : 1;
+            assertTrue(files.get(latinId).isIndexed());
+            for (String word : Arrays.asList("crawler", "Caf", "na", "ve", "web")) {
+                assertEquals(word, WordMatcher.of(word, false, true).get().count(latin, buffer, null),
+                        (int) index.count(word, false, true).get().getOrDefault(latinId, 0));
+            }
+
+            // the file which cannot be read is left to the scanning
+            assertFalse(files.get(1 - latinId).isIndexed());
+            assertFalse(files.get(1 - latinId).isSame(Files.readAttributes(dir.resolve("broken.html.gz"), BasicFileAttributes.class)));
+        }
+    }
+}
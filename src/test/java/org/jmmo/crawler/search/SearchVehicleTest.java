@@ -0,0 +1,146 @@
+package org.jmmo.crawler.search;
+
+import io.vertx.core.Launcher;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchVehicleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTop() throws Exception {
+        final Path dir = counted();
+        final List<String> lines = find("--dir=" + dir, "--top=2", "crawler");
+
+        // the most entries go first and the files with the same count by name
+        assertEquals(3, lines.size());
+        assertEquals("5 a.txt", entry(lines.get(0)));
+        assertEquals("3 b.txt", entry(lines.get(1)));
+        assertEquals("Total: 12 entries in 4 files", lines.get(2));
+    }
+
+    @Test
+    public void testMaxHits() throws Exception {
+        final Path dir = folder.newFolder("many").toPath();
+        for (int i = 0; i < 50; i++) {
+            Files.write(dir.resolve("f" + i + ".txt"), "the crawler".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // the files found in the same batch after the cancel are not reported
+        final List<String> lines = find("--dir=" + dir, "--maxHits=7", "crawler");
+        assertEquals(8, lines.size());
+        for (String line : lines.subList(0, 7)) {
+            assertTrue(line, line.startsWith("1 "));
+        }
+        assertEquals("Total: 7 entries in 7 files", lines.get(7));
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        final Path dir = folder.newFolder("lines").toPath();
+        final String text = "first line\nthe Crawler and crawler\nПривет crawler";
+        Files.write(dir.resolve("a.txt"), text.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("b.txt"), "nothing here".getBytes(StandardCharsets.UTF_8));
+
+        final List<String> lines = find("--dir=" + dir, "--format=jsonl", "--lines", "crawler");
+        assertEquals(2, lines.size());
+
+        final JsonObject file = new JsonObject(lines.get(0));
+        assertEquals("a.txt", Paths.get(file.getString("file")).getFileName().toString());
+        assertEquals(3, (int) file.getInteger("count"));
+
+        final Matcher matcher = Pattern.compile("(?i)crawler").matcher(text);
+        final JsonArray hits = file.getJsonArray("hits");
+        final int[] expectedLines = {2, 2, 3};
+        for (int i = 0; i < expectedLines.length; i++) {
+            assertTrue(matcher.find());
+            final JsonObject hit = hits.getJsonObject(i);
+            assertEquals("crawler", hit.getString("word"));
+            assertEquals(expectedLines[i], (int) hit.getInteger("line"));
+            assertEquals(text.substring(0, matcher.start()).getBytes(StandardCharsets.UTF_8).length, (long) hit.getLong("offset"));
+            assertEquals(text.split("\n")[expectedLines[i] - 1], hit.getString("snippet"));
+        }
+        assertEquals(3, hits.size());
+
+        assertEquals(new JsonObject().put("files", 1).put("total", 3), new JsonObject(lines.get(1)));
+    }
+
+    @Test
+    public void testFilesWithMatches() throws Exception {
+        final Path dir = counted();
+        final List<String> lines = find("--dir=" + dir, "--filesWithMatches", "crawler");
+
+        assertEquals(5, lines.size());
+        final HashSet<String> files = new HashSet<>();
+        for (String line : lines.subList(0, 4)) {
+            files.add(Paths.get(line).getFileName().toString());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("a.txt", "b.txt", "c.txt", "d.txt")), files);
+        assertEquals("Total: 4 files", lines.get(4));
+    }
+
+    // the files have different counts of the word and two of them the same
+    Path counted() throws Exception {
+        final Path dir = folder.newFolder("counted").toPath();
+        final int[] counts = {5, 3, 1, 3, 0};
+        for (int i = 0; i < counts.length; i++) {
+            final StringBuilder text = new StringBuilder("text\n");
+            for (int j = 0; j < counts[i]; j++) {
+                text.append("the crawler crawls\n");
+            }
+            Files.write(dir.resolve((char) ('a' + i) + ".txt"), text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return dir;
+    }
+
+    // the count and the name of the file without its directory
+    static String entry(String line) {
+        final String[] parts = line.split(" ", 2);
+        return parts[0] + " " + Paths.get(parts[1]).getFileName();
+    }
+
+    // runs the find command as the launcher does and reads its output file when the search is done
+    List<String> find(String... args) throws Exception {
+        final Path output = folder.newFile().toPath();
+        final Find find = new Find();
+        final String[] command = Arrays.copyOf(new String[] {"find", "--output=" + output}, args.length + 2);
+        System.arraycopy(args, 0, command, 2, args.length);
+        find.dispatch(command);
+
+        if (!find.done.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The search is not done in time");
+        }
+        return Files.readAllLines(output, StandardCharsets.UTF_8);
+    }
+
+    static class Find extends Launcher {
+        protected final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void afterStartingVertx(Vertx vertx) {
+            super.afterStartingVertx(vertx);
+            vertx.eventBus().consumer(SearchMessages.DONE, message -> done.countDown());
+        }
+    }
+}
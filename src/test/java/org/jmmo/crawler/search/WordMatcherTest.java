@@ -0,0 +1,138 @@
+package org.jmmo.crawler.search;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WordMatcherTest {
+
+    @Test
+    public void testCountsAsRegex() throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("Crawler crawls, the CRAWLER_bot crawler\n aaaa Привет,ПРИВЕТ приветствие ΣΊΣΥΦΟΣ σίσυφος ");
+        }
+        final String text = builder.toString();
+        final FinderVehicle finderVehicle = new FinderVehicle();
+
+        for (String word : Arrays.asList("crawler", "Crawler", "craw", "aa", "a", "Привет", "привет", "σίσυφος", "the CRAWLER", ", ")) {
+            for (boolean sensitive : Arrays.asList(false, true)) {
+                for (boolean whole : Arrays.asList(false, true)) {
+                    final Matcher matcher = finderVehicle.patternFor(word, sensitive, whole).matcher(text);
+                    int expected = 0;
+                    while (matcher.find()) {
+                        expected++;
+                    }
+
+                    // the small buffer makes matches cross the refills
+                    for (int bufferSize : Arrays.asList(64, 1000, WordMatcher.BUFFER_SIZE)) {
+                        assertEquals(word + " " + sensitive + " " + whole + " " + bufferSize, expected, count(word, sensitive, whole, text, bufferSize));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOffsets() throws Exception {
+        final String text = "Привет crawler,\nthe CRAWLER_bot crawler Привет";
+        final List<Long> expected = new ArrayList<>();
+        final Matcher matcher = new FinderVehicle().patternFor("crawler", false, true).matcher(text);
+        while (matcher.find()) {
+            expected.add((long) text.substring(0, matcher.start()).getBytes(StandardCharsets.UTF_8).length);
+        }
+        assertEquals(2, expected.size());
+
+        final List<Long> offsets = new ArrayList<>();
+        assertEquals(2, WordMatcher.of("crawler", false, true).get().count(Channels.newChannel(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), ByteBuffer.allocate(8), (word, offset) -> offsets.add(offset)));
+        assertEquals(expected, offsets);
+
+        offsets.clear();
+        final int[] counts = MultiWordMatcher.of(Arrays.asList("crawler", "привет"), false, true).count(Channels.newChannel(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), ByteBuffer.allocate(8), (word, offset) -> word != 0 || offsets.add(offset));
+        assertEquals(2, counts[0]);
+        assertEquals(2, counts[1]);
+        assertEquals(expected, offsets);
+
+        // the search is left at the first match
+        assertEquals(1, WordMatcher.of("crawler", false, false).get().count(Channels.newChannel(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), ByteBuffer.allocate(8), (word, offset) -> false));
+        assertEquals(1, MultiWordMatcher.of(Arrays.asList("crawler", "привет"), false, false).count(Channels.newChannel(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), ByteBuffer.allocate(8), (word, offset) -> false)[1]);
+    }
+
+    @Test
+    public void testLocate() throws Exception {
+        final Path file = Files.createTempFile("locate", ".txt");
+        try {
+            Files.write(file, "first line\nПривет crawler\n\nlast crawler".getBytes(StandardCharsets.UTF_8));
+            final List<LineLocator.Location> locations = LineLocator.locate(file, new long[] {0, 24, 37});
+            assertEquals(3, locations.size());
+            assertEquals(1, locations.get(0).getLine());
+            assertEquals("first line", locations.get(0).getSnippet());
+            assertEquals(2, locations.get(1).getLine());
+            assertEquals(24, locations.get(1).getOffset());
+            assertEquals("Привет crawler", locations.get(1).getSnippet());
+            assertEquals(4, locations.get(2).getLine());
+            assertEquals("last crawler", locations.get(2).getSnippet());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRegexFallback() throws Exception {
+        // the upper case of long s has the different length in UTF-8
+        assertFalse(WordMatcher.of("ſ", false, false).isPresent());
+    }
+
+    @Test
+    public void testFoldClosure() throws Exception {
+        final String text = "Kelvin \u212Aelvin kelvin, σοφος ΣΟΦΟΣ σοφοσ, ſun Sun sun";
+        final FinderVehicle finderVehicle = new FinderVehicle();
+
+        // the final sigma has the same length as the others, KELVIN SIGN and long s are left to the automaton
+        assertTrue(WordMatcher.of("σοφοσ", false, false).isPresent());
+        assertFalse(WordMatcher.of("kelvin", false, false).isPresent());
+        assertFalse(WordMatcher.of("sun", false, false).isPresent());
+
+        for (String word : Arrays.asList("kelvin", "\u212Aelvin", "σοφος", "σοφοσ", "ΣΟΦΟΣ", "sun", "ſun")) {
+            for (boolean whole : Arrays.asList(false, true)) {
+                final Matcher matcher = finderVehicle.patternFor(word, false, whole).matcher(text);
+                int expected = 0;
+                while (matcher.find()) {
+                    expected++;
+                }
+                assertEquals(3, expected);
+
+                assertEquals(word + " " + whole, expected, count(word, false, whole, text, 64));
+            }
+        }
+    }
+
+    // the word is counted as the finder does, by the automaton if the case variants have different lengths
+    static int count(String word, boolean sensitive, boolean whole, String text, int bufferSize) throws IOException {
+        final Optional<WordMatcher> wordMatcher = WordMatcher.of(word, sensitive, whole);
+        final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        return wordMatcher.isPresent() ? wordMatcher.get().count(channel, ByteBuffer.allocate(bufferSize))
+                : MultiWordMatcher.of(Collections.singletonList(word), sensitive, whole).count(channel, ByteBuffer.allocate(bufferSize))[0];
+    }
+}